@@ -0,0 +1,32 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mã dùng một lần (OTP, token đặt lại mật khẩu) dùng chung giữa các node khi chạy JdbcTokenStore.
+ * Chỉ lưu băm SHA-256 của mã, không lưu mã gốc.
+ */
+@Entity
+@Table(name = "auth_tokens", indexes = {
+        @Index(name = "idx_auth_tokens_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthToken {
+
+    // "<loại>:<email>"
+    @Id
+    @Column(name = "token_id", length = 255)
+    private String tokenId;
+
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
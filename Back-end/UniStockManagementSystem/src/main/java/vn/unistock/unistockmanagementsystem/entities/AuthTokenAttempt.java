@@ -0,0 +1,32 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số lần nhập sai mã của một email khi chạy JdbcTokenStore. Tách khỏi auth_tokens để việc cấp lại mã
+ * không đặt lại bộ đếm; dòng hết hạn sau cửa sổ đếm (token-store.attempt-window).
+ */
+@Entity
+@Table(name = "auth_token_attempts", indexes = {
+        @Index(name = "idx_auth_token_attempts_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthTokenAttempt {
+
+    // "<loại>:<email>", cùng khóa với auth_tokens
+    @Id
+    @Column(name = "token_id", length = 255)
+    private String tokenId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
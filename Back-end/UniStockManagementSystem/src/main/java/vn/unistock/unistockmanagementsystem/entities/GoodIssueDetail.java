@@ -2,6 +2,7 @@ package vn.unistock.unistockmanagementsystem.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import vn.unistock.unistockmanagementsystem.utils.IdGeneratorInitializer;
 
 import java.time.LocalDateTime;
 
@@ -15,7 +16,10 @@ import java.time.LocalDateTime;
 public class GoodIssueDetail {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "good_issue_details_id")
+    @TableGenerator(name = "good_issue_details_id", table = IdGeneratorInitializer.TABLE,
+            pkColumnName = IdGeneratorInitializer.PK_COLUMN, valueColumnName = IdGeneratorInitializer.VALUE_COLUMN,
+            pkColumnValue = "good_issue_details", allocationSize = IdGeneratorInitializer.ALLOCATION_SIZE)
     private Long ginDetailsId;
 
     @ManyToOne
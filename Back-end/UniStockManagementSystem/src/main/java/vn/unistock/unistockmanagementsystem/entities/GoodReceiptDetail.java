@@ -3,6 +3,7 @@ package vn.unistock.unistockmanagementsystem.entities;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import vn.unistock.unistockmanagementsystem.utils.IdGeneratorInitializer;
 
 @Entity
 @Table(name = "good_receipt_detail")
@@ -14,7 +15,10 @@ import lombok.*;
 public class GoodReceiptDetail {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "good_receipt_detail_id")
+    @TableGenerator(name = "good_receipt_detail_id", table = IdGeneratorInitializer.TABLE,
+            pkColumnName = IdGeneratorInitializer.PK_COLUMN, valueColumnName = IdGeneratorInitializer.VALUE_COLUMN,
+            pkColumnValue = "good_receipt_detail", allocationSize = IdGeneratorInitializer.ALLOCATION_SIZE)
     private Long grnDetailsId;
 
     @JsonIgnore
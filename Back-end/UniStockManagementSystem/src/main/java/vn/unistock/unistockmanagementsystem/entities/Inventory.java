@@ -2,16 +2,22 @@ package vn.unistock.unistockmanagementsystem.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryBalanceListener;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "inventory")
+// Khóa duy nhất uk_inventory_row (kho, vật tư, sản phẩm, trạng thái, đơn hàng) do InventoryUniqueKeyInitializer tạo,
+// InventoryUpsertRepository dựa vào nó để cộng dồn số lượng bằng upsert
+@Table(name = "inventory", indexes = {
+        @Index(name = "idx_inventory_order_status", columnList = "order_id, status")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@EntityListeners(InventoryBalanceListener.class)
 public class Inventory {
 
     @Id
@@ -42,6 +48,24 @@ public class Inventory {
 
     @Column(name = "last_updated", columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
     private LocalDateTime lastUpdated;
+
+    // Các câu UPDATE/upsert bằng JDBC cũng tăng cột này để entity đang giữ bản cũ bị từ chối khi ghi đè
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long version;
+
+    // Trạng thái đã đồng bộ vào inventory_balance lần gần nhất, dùng để tính phần chênh lệch khi cập nhật/xóa
+    @Transient
+    private InventoryBalanceKey balanceKeySnapshot;
+
+    @Transient
+    private Double balanceQuantitySnapshot;
+
+    public void captureBalanceSnapshot() {
+        this.balanceKeySnapshot = InventoryBalanceKey.of(this);
+        this.balanceQuantitySnapshot = quantity;
+    }
+
     public enum InventoryStatus {
         AVAILABLE,
         RESERVED
@@ -0,0 +1,34 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số dư tồn kho đã cộng dồn theo (hàng hóa, kho, trạng thái).
+ * Được cập nhật cùng transaction với mọi thay đổi trên bảng inventory, nên đọc tồn khả dụng
+ * chỉ cần tra theo khóa chính thay vì SUM trên toàn bộ các dòng inventory.
+ */
+@Entity
+@Table(name = "inventory_balance")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryBalance {
+
+    @EmbeddedId
+    private InventoryBalanceKey id;
+
+    @Column(nullable = false)
+    private Double quantity = 0.0;
+
+    @Column(name = "last_updated")
+    private LocalDateTime lastUpdated;
+
+    public enum ItemType {
+        MATERIAL,
+        PRODUCT
+    }
+}
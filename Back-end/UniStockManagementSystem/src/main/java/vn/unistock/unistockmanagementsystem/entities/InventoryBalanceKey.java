@@ -0,0 +1,53 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Embeddable
+public class InventoryBalanceKey implements Serializable {
+    @Enumerated(EnumType.STRING)
+    @Column(name = "item_type", length = 16)
+    private InventoryBalance.ItemType itemType;
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "warehouse_id")
+    private Long warehouseId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16)
+    private Inventory.InventoryStatus status;
+
+    /**
+     * Khóa balance của một dòng inventory, hoặc null nếu dòng đó chưa đủ thông tin (thiếu hàng hóa/kho/trạng thái).
+     */
+    public static InventoryBalanceKey of(Inventory inventory) {
+        if (inventory.getWarehouse() == null || inventory.getStatus() == null) {
+            return null;
+        }
+        if (inventory.getMaterial() != null) {
+            return new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, inventory.getMaterial().getMaterialId(),
+                    inventory.getWarehouse().getWarehouseId(), inventory.getStatus());
+        }
+        if (inventory.getProduct() != null) {
+            return new InventoryBalanceKey(InventoryBalance.ItemType.PRODUCT, inventory.getProduct().getProductId(),
+                    inventory.getWarehouse().getWarehouseId(), inventory.getStatus());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Tồn cuối kỳ (cuối tháng) của từng hàng hóa, cộng dồn từ toàn bộ inventory_transaction
+ * có transactionDate trước ngày đầu kỳ kế tiếp. Dùng làm điểm xuất phát cho tồn đầu kỳ của báo cáo xuất nhập tồn.
+ */
+@Entity
+@Table(name = "inventory_closing_balance", indexes = {
+        @Index(name = "idx_closing_balance_period_end", columnList = "period_end")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryClosingBalance {
+
+    @EmbeddedId
+    private InventoryClosingBalanceKey id;
+
+    @Column(nullable = false)
+    private Double quantity = 0.0;
+}
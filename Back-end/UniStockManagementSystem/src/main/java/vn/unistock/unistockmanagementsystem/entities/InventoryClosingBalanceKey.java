@@ -0,0 +1,32 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+@Embeddable
+public class InventoryClosingBalanceKey implements Serializable {
+    @Column(name = "period_end")
+    private LocalDate periodEnd;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "item_type", length = 16)
+    private InventoryBalance.ItemType itemType;
+
+    @Column(name = "item_id")
+    private Long itemId;
+}
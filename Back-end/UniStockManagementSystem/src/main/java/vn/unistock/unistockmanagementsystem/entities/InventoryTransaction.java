@@ -3,20 +3,28 @@ package vn.unistock.unistockmanagementsystem.entities;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryClosingBalanceListener;
+import vn.unistock.unistockmanagementsystem.utils.IdGeneratorInitializer;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "inventory_transaction")
+@Table(name = "inventory_transaction", indexes = {
+        @Index(name = "idx_inventory_transaction_date", columnList = "transaction_date")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@EntityListeners(InventoryClosingBalanceListener.class)
 public class InventoryTransaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "inventory_transaction_id")
+    @TableGenerator(name = "inventory_transaction_id", table = IdGeneratorInitializer.TABLE,
+            pkColumnName = IdGeneratorInitializer.PK_COLUMN, valueColumnName = IdGeneratorInitializer.VALUE_COLUMN,
+            pkColumnValue = "inventory_transaction", allocationSize = IdGeneratorInitializer.ALLOCATION_SIZE)
     private Long transactionId;
 
     @ManyToOne
@@ -31,6 +39,7 @@ public class InventoryTransaction {
     @JoinColumn(name = "product_id")
     private Product product;
 
+    @Column(name = "transaction_date")
     private LocalDateTime transactionDate;
 
     @Enumerated(EnumType.STRING)
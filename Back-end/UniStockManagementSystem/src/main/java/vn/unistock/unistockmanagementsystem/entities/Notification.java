@@ -23,6 +23,7 @@ public class Notification {
     @Enumerated(EnumType.STRING)
     private NotificationType type;
 
+    // Cảnh báo đã hết hiệu lực (vd tồn kho đã hồi phục); trạng thái đã đọc của từng user nằm ở NotificationRecipient
     @Column(nullable = false)
     private Boolean isRead = false;
 
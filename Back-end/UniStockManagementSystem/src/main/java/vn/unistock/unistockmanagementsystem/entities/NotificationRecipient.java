@@ -0,0 +1,49 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Thông báo của từng người nhận: trạng thái đã đọc tính riêng cho mỗi user. Chỉ mục inbox phục vụ phân trang
+ * keyset (user_id, is_read, created_at) và đếm số chưa đọc.
+ */
+@Entity
+@Table(name = "notification_recipient",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_notification_recipient", columnNames = {"notification_id", "user_id"})
+        },
+        indexes = {
+                @Index(name = "idx_notification_recipient_inbox", columnList = "user_id, is_read, created_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationRecipient {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "recipient_id")
+    private Long recipientId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "notification_id", nullable = false)
+    private Notification notification;
+
+    // Đọc trực tiếp khóa ngoại cho các câu lệnh cập nhật hàng loạt
+    @Column(name = "notification_id", insertable = false, updatable = false)
+    private Long notificationId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "is_read", nullable = false)
+    private Boolean isRead = false;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "read_at")
+    private LocalDateTime readAt;
+}
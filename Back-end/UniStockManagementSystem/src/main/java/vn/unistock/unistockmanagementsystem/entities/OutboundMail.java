@@ -0,0 +1,70 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email chờ gửi. Request chỉ ghi dòng PENDING rồi trả về; MailQueueWorker nhận từng lô, gửi qua SMTP
+ * và lùi lịch gửi lại (next_attempt_at) khi lỗi. Khi đã gửi, body được xóa trắng; dòng SENT/FAILED cũ bị dọn định kỳ.
+ */
+@Entity
+@Table(name = "outbound_mail", indexes = {
+        @Index(name = "idx_outbound_mail_status_next", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbound_mail_claim", columnList = "claim_id"),
+        @Index(name = "idx_outbound_mail_status_created", columnList = "status, created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboundMail {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "mail_id")
+    private Long mailId;
+
+    @Column(name = "to_email", nullable = false)
+    private String toEmail;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private MailStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Lô đang giữ dòng này khi status = SENDING
+    @Column(name = "claim_id", length = 36)
+    private String claimId;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public enum MailStatus {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED
+    }
+}
@@ -0,0 +1,24 @@
+package vn.unistock.unistockmanagementsystem.features.admin.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalCache;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/unistock/admin/cache")
+@RequiredArgsConstructor
+public class CacheStatsController {
+
+    private final UserPrincipalCache userPrincipalCache;
+
+    // 🟢 API: Thống kê hit/miss/eviction của cache principal
+    @GetMapping("/principals")
+    public ResponseEntity<Map<String, Object>> getPrincipalCacheStats() {
+        return ResponseEntity.ok(userPrincipalCache.getStats());
+    }
+}
@@ -0,0 +1,72 @@
+package vn.unistock.unistockmanagementsystem.features.admin.logging;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đổi mức log theo package khi đang chạy, không cần khởi động lại. Ví dụ bật log SQL:
+ * PUT /api/unistock/admin/logging/org.hibernate.SQL?level=DEBUG (tham số bind: org.hibernate.orm.jdbc.bind=TRACE);
+ * gửi level=RESET để trả về mức trong cấu hình.
+ */
+@RestController
+@RequestMapping("/api/unistock/admin/logging")
+@RequiredArgsConstructor
+public class LoggingLevelController {
+
+    // Các logger hay cần bật khi điều tra, luôn có trong kết quả GET
+    private static final List<String> WATCHED_LOGGERS = List.of(
+            "org.hibernate.SQL",
+            "org.hibernate.orm.jdbc.bind",
+            "org.springframework.jdbc.core",
+            "vn.unistock.unistockmanagementsystem"
+    );
+
+    private final LoggingSystem loggingSystem;
+
+    // 🟢 API: Xem mức log hiện tại của các logger theo dõi và các logger đã được đặt riêng
+    @GetMapping
+    public ResponseEntity<Map<String, String>> getLevels() {
+        Map<String, String> levels = new LinkedHashMap<>();
+        for (String name : WATCHED_LOGGERS) {
+            levels.put(name, effectiveLevel(name));
+        }
+        for (LoggerConfiguration configuration : loggingSystem.getLoggerConfigurations()) {
+            if (configuration.getConfiguredLevel() != null) {
+                levels.putIfAbsent(configuration.getName(), configuration.getConfiguredLevel().name());
+            }
+        }
+        return ResponseEntity.ok(levels);
+    }
+
+    // 🟢 API: Đặt mức log cho một package/logger
+    @PutMapping("/{loggerName}")
+    public ResponseEntity<Map<String, String>> setLevel(@PathVariable String loggerName, @RequestParam String level) {
+        LogLevel logLevel = null;
+        if (!"RESET".equalsIgnoreCase(level)) {
+            try {
+                logLevel = LogLevel.valueOf(level.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Mức log không hợp lệ: " + level);
+            }
+        }
+        loggingSystem.setLogLevel(loggerName, logLevel);
+        return ResponseEntity.ok(Map.of(loggerName, effectiveLevel(loggerName)));
+    }
+
+    private String effectiveLevel(String name) {
+        LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(name);
+        return configuration != null && configuration.getEffectiveLevel() != null
+                ? configuration.getEffectiveLevel().name()
+                : "INHERITED";
+    }
+}
@@ -1,8 +1,11 @@
 package vn.unistock.unistockmanagementsystem.features.admin.permission;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.Permission;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -13,4 +16,7 @@ public interface PermissionRepository extends JpaRepository<Permission, Long> {
     List<Permission> findByUrlPatternStartingWith(String urlPattern);
 
     List<Permission> findByPermissionNameIn(Set<String> permissionNames);
+
+    @Query("SELECT DISTINCT rp.permission FROM RolePermission rp WHERE rp.role.roleId IN :roleIds")
+    List<Permission> findByRoleIds(@Param("roleIds") Collection<Long> roleIds);
 }
@@ -1,13 +1,22 @@
 package vn.unistock.unistockmanagementsystem.features.admin.role;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.Role;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
     boolean existsByRoleName(String roleName);
     Optional<Role> findByRoleName(String roleName);
+
+    @Query("""
+      SELECT DISTINCT r FROM Role r
+        LEFT JOIN FETCH r.rolePermissions rp
+        LEFT JOIN FETCH rp.permission
+    """)
+    List<Role> findAllWithPermissions();
 }
@@ -1,13 +1,14 @@
 package vn.unistock.unistockmanagementsystem.features.admin.role;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import vn.unistock.unistockmanagementsystem.entities.Permission;
 import vn.unistock.unistockmanagementsystem.entities.Role;
 import vn.unistock.unistockmanagementsystem.entities.RolePermission;
 import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionHierarchy;
 import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionRepository;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalChangedEvent;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,13 +25,14 @@ public class RoleService {
     private RoleMapper roleMapper;
     @Autowired
     private PermissionRepository permissionRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     public List<RoleDTO> getAllRoles() {
         return roleRepository.findAll().stream()
                 .map(roleMapper::toDTO)
                 .collect(Collectors.toList());
     }
-    @CacheEvict(value = "users", allEntries = true)
     public RoleDTO createRole(RoleDTO dto) {
         if (roleRepository.existsByRoleName(dto.getName())) {
             throw new IllegalArgumentException("DUPLICATE_ROLE");
@@ -66,6 +68,8 @@ public class RoleService {
         }
 
         entity = roleRepository.save(entity);
+        // Quyền của role đổi => principal và matcher của mọi user có role này đều cũ
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.all());
         return roleMapper.toDTO(entity);
     }
 
@@ -76,9 +80,10 @@ public class RoleService {
 
         existingRole.setIsActive(isActive);
         existingRole = roleRepository.save(existingRole);
+        // Quyền của role đổi => principal và matcher của mọi user có role này đều cũ
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.all());
         return roleMapper.toDTO(existingRole);
     }
-    @CacheEvict(value = "users", allEntries = true)
     public RoleDTO updateRole(Long id, RoleDTO dto) {
         Role existingRole = roleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy vai trò"));
@@ -117,6 +122,8 @@ public class RoleService {
 
         // Lưu lại
         existingRole = roleRepository.save(existingRole);
+        // Quyền của role đổi => principal và matcher của mọi user có role này đều cũ
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.all());
         return roleMapper.toDTO(existingRole);
     }
 
@@ -126,6 +133,8 @@ public class RoleService {
                 .orElseThrow(() -> new RuntimeException("Vai trò không tồn tại"));
 
         roleRepository.delete(role);
+        // Quyền của role đổi => principal và matcher của mọi user có role này đều cũ
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.all());
     }
 
     public Role getRoleById(Long id) {
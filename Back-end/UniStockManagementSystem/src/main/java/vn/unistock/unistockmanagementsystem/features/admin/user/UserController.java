@@ -25,7 +25,6 @@ public class UserController {
     @GetMapping("/check-email")
     public ResponseEntity<Boolean> checkEmailExists(@RequestParam String email) {
         boolean exists = userService.checkEmailExists(email);
-        System.out.println("📢 API kiểm tra email: " + email + " - Kết quả: " + exists);
         return ResponseEntity.ok(exists);
     }
 
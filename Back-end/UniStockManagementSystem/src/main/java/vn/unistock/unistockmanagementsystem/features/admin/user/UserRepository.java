@@ -1,6 +1,7 @@
 package vn.unistock.unistockmanagementsystem.features.admin.user;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.Role;
 import vn.unistock.unistockmanagementsystem.entities.User;
@@ -14,4 +15,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     User findByUsername(String username);
     List<User> findByRolesContaining(Role role);
     User findByEmail(String email);
+
+    @Query("SELECT u.userId FROM User u WHERE u.isActive = true")
+    List<Long> findActiveUserIds();
 }
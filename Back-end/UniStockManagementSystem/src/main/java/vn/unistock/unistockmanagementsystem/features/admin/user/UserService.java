@@ -1,7 +1,7 @@
 package vn.unistock.unistockmanagementsystem.features.admin.user;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -11,18 +11,18 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.Role;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.entities.UserDetail;
 import vn.unistock.unistockmanagementsystem.features.admin.role.RoleRepository;
-import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
+import vn.unistock.unistockmanagementsystem.security.PasswordHasher;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalChangedEvent;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -33,9 +33,9 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final UserDetailRepository userDetailRepository;
-    private final LoginService loginService;
+    private final ApplicationEventPublisher eventPublisher;
     private final UserMapper userMapper = UserMapper.INSTANCE;
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHasher passwordHasher;
     private final UserDetailsService userDetailsService;
 
     public UserDTO createUser(UserDTO userDTO) {
@@ -49,7 +49,7 @@ public class UserService {
 
         // 3) Mã hóa mật khẩu trước khi lưu
         if (userDTO.getPassword() != null && !userDTO.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(userDTO.getPassword())); // ✅ Mã hóa mật khẩu
+            user.setPassword(passwordHasher.encode(userDTO.getPassword())); // ✅ Mã hóa mật khẩu
         }
 
         // 4) **Lấy role `USER` (Nếu chưa có thì tạo mới)**
@@ -107,11 +107,12 @@ public class UserService {
             SecurityContextHolder.getContext().setAuthentication(newAuth);
         }
     }
-    @CacheEvict(value = "users", allEntries = true)
     public UserDTO updateUser(Long userId, UserDTO updatedUserDTO) {
         // 1️⃣ Kiểm tra User có tồn tại không
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User không tồn tại!"));
+        // Principal được cache theo email nên phải nhớ email cũ trước khi đổi
+        String oldEmail = user.getEmail();
 
         // 2️⃣ Cập nhật email nếu có thay đổi
         if (updatedUserDTO.getEmail() != null && !updatedUserDTO.getEmail().isEmpty()) {
@@ -120,7 +121,7 @@ public class UserService {
 
         // 3️⃣ Cập nhật mật khẩu nếu có thay đổi
         if (updatedUserDTO.getPassword() != null && !updatedUserDTO.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(updatedUserDTO.getPassword()));
+            user.setPassword(passwordHasher.encode(updatedUserDTO.getPassword()));
         }
 
         // 4️⃣ Cập nhật trạng thái kích hoạt (isActive)
@@ -152,7 +153,11 @@ public class UserService {
 
         // 6️⃣ Lưu user sau khi cập nhật
         user = userRepository.save(user);
-        loginService.evictUserCache(user.getEmail());
+        // Xóa principal theo cả email cũ lẫn email mới (nếu email vừa được đổi)
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.of(oldEmail));
+        if (!Objects.equals(oldEmail, user.getEmail())) {
+            eventPublisher.publishEvent(UserPrincipalChangedEvent.of(user.getEmail()));
+        }
         refreshAuthentication(user.getEmail());
         // 7️⃣ Trả về DTO (ẩn mật khẩu)
         UserDTO responseDTO = userMapper.toDTO(user);
@@ -166,7 +171,6 @@ public class UserService {
         Page<User> userPage = userRepository.findAll(pageable);
         return userPage.map(userMapper::toDTO);
     }
-    @CacheEvict(value = "users", allEntries = true)
     public UserDTO updateUserStatus(Long id, Boolean isActive) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("User không tồn tại"));
@@ -174,7 +178,7 @@ public class UserService {
         user.setIsActive(isActive);
         userRepository.save(user);
 
-        loginService.evictUserCache(user.getEmail());
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.of(user.getEmail()));
         return userMapper.toDTO(user);
     }
 
@@ -194,12 +198,7 @@ public class UserService {
         return userDTO;
     }
     public boolean checkEmailExists(String email) {
-        System.out.println("📢 Kiểm tra email tồn tại trong DB: " + email);
-
-        boolean exists = userRepository.existsByEmail(email); // 🟢 Sử dụng IgnoreCase
-
-        System.out.println("📢 Kết quả tìm kiếm email: " + email + " - " + exists);
-        return exists;
+        return userRepository.existsByEmail(email); // 🟢 Sử dụng IgnoreCase
     }
 
 
@@ -1,26 +1,30 @@
 package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+
+import java.time.Duration;
 
 @Service
+@RequiredArgsConstructor
 public class EphemeralService {
-    private final Map<String, String> ephemeralMap = new ConcurrentHashMap<>();
+    // Thời gian để người dùng nhập mật khẩu mới sau khi xác thực OTP
+    private static final Duration EPHEMERAL_TTL = Duration.ofMinutes(15);
+
+    private final TokenStore tokenStore;
 
     // Lưu token tạm, gắn với email
     public void storeEphemeralToken(String email, String token) {
-        ephemeralMap.put(email, token);
+        tokenStore.save(TokenStore.TokenType.EPHEMERAL, email, token, EPHEMERAL_TTL);
     }
 
     // Kiểm tra token
     public boolean validateEphemeralToken(String email, String token) {
-        String storedToken = ephemeralMap.get(email);
-        return token != null && token.equals(storedToken);
+        return token != null && tokenStore.verify(TokenStore.TokenType.EPHEMERAL, email, token, false);
     }
 
     // Xoá token sau khi dùng xong
     public void removeEphemeralToken(String email) {
-        ephemeralMap.remove(email);
+        tokenStore.remove(TokenStore.TokenType.EPHEMERAL, email);
     }
 }
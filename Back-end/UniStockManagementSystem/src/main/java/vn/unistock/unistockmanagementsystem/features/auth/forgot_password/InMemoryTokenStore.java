@@ -0,0 +1,145 @@
+package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TokenStore trong bộ nhớ của một node. Mã hết hạn được quét định kỳ, số mã giữ cùng lúc bị chặn bởi
+ * token-store.max-entries để lượng yêu cầu quên mật khẩu không làm phình heap.
+ * Số lần nhập sai được giữ riêng theo email trong token-store.attempt-window, nên xin cấp lại mã không xóa nó.
+ */
+@Component
+@ConditionalOnProperty(name = "token-store.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryTokenStore implements TokenStore {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryTokenStore.class);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final int maxAttempts;
+    private final Duration attemptWindow;
+
+    public InMemoryTokenStore(@Value("${token-store.max-entries:10000}") int maxEntries,
+                              @Value("${token-store.max-attempts:5}") int maxAttempts,
+                              @Value("${token-store.attempt-window:15m}") Duration attemptWindow) {
+        this.maxEntries = maxEntries;
+        this.maxAttempts = maxAttempts;
+        this.attemptWindow = attemptWindow;
+    }
+
+    private static class Entry {
+        private final String token;
+        private final long expiresAt;
+
+        private Entry(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    // Bộ đếm sai của một email, tính từ lần sai đầu tiên và hết hạn sau attemptWindow
+    private static class Attempts {
+        private final int count;
+        private final long expiresAt;
+
+        private Attempts(int count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    @Override
+    public void save(TokenType type, String email, String token, Duration ttl) {
+        String id = id(type, email);
+        if (entries.size() >= maxEntries && !entries.containsKey(id)) {
+            evictExpired();
+            if (entries.size() >= maxEntries) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Hệ thống đang nhận quá nhiều yêu cầu, vui lòng thử lại sau");
+            }
+        }
+        entries.put(id, new Entry(token, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    @Override
+    public boolean verify(TokenType type, String email, String token, boolean consume) {
+        String id = id(type, email);
+        long now = System.currentTimeMillis();
+        if (isLocked(id, now)) {
+            entries.remove(id);
+            return false;
+        }
+        boolean[] matched = {false};
+        boolean[] wrong = {false};
+        entries.computeIfPresent(id, (key, entry) -> {
+            if (entry.isExpired(now)) {
+                return null;
+            }
+            if (entry.token.equals(token)) {
+                matched[0] = true;
+                return consume ? null : entry;
+            }
+            wrong[0] = true;
+            return entry;
+        });
+        if (matched[0]) {
+            attempts.remove(id);
+        } else if (wrong[0] && recordFailure(id, now) >= maxAttempts) {
+            entries.remove(id);
+        }
+        return matched[0];
+    }
+
+    @Override
+    public void remove(TokenType type, String email) {
+        entries.remove(id(type, email));
+    }
+
+    private boolean isLocked(String id, long now) {
+        Attempts current = attempts.get(id);
+        return current != null && !current.isExpired(now) && current.count >= maxAttempts;
+    }
+
+    private int recordFailure(String id, long now) {
+        return attempts.merge(id, new Attempts(1, now + attemptWindow.toMillis()),
+                (current, first) -> current.isExpired(now) ? first : new Attempts(current.count + 1, current.expiresAt)).count;
+    }
+
+    @Scheduled(fixedDelayString = "${token-store.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        attempts.values().removeIf(counter -> counter.isExpired(now));
+        int removed = before - entries.size();
+        if (removed > 0) {
+            logger.debug("Evicted {} expired tokens", removed);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String id(TokenType type, String email) {
+        return type.name() + ":" + email;
+    }
+}
@@ -0,0 +1,140 @@
+package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+
+/**
+ * TokenStore dùng bảng auth_tokens, cho nhiều node dùng chung và giữ được mã qua lần khởi động lại.
+ * Số lần nhập sai nằm ở bảng auth_token_attempts với hạn riêng, nên lưu mã mới không đặt lại bộ đếm.
+ * Mỗi câu lệnh là một upsert hoặc xóa có điều kiện nên không cần khóa hay transaction riêng.
+ */
+@Component
+@ConditionalOnProperty(name = "token-store.type", havingValue = "jdbc")
+public class JdbcTokenStore implements TokenStore {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcTokenStore.class);
+
+    private static final String SAVE_SQL = """
+            INSERT INTO auth_tokens (token_id, token_hash, expires_at) VALUES (?, ?, ?)
+            ON DUPLICATE KEY UPDATE token_hash = VALUES(token_hash), expires_at = VALUES(expires_at)
+            """;
+    // Lần sai đầu tiên, hoặc lần sai sau khi cửa sổ cũ hết hạn, mở cửa sổ mới.
+    // attempts được gán trước expires_at nên cả hai CASE đều so với expires_at cũ.
+    private static final String FAILURE_SQL = """
+            INSERT INTO auth_token_attempts (token_id, attempts, expires_at) VALUES (?, 1, ?)
+            ON DUPLICATE KEY UPDATE
+                attempts = CASE WHEN expires_at <= ? THEN 1 ELSE attempts + 1 END,
+                expires_at = CASE WHEN expires_at <= ? THEN VALUES(expires_at) ELSE expires_at END
+            """;
+    private static final String ATTEMPTS_SQL =
+            "SELECT COALESCE(MAX(attempts), 0) FROM auth_token_attempts WHERE token_id = ? AND expires_at > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxAttempts;
+    private final Duration attemptWindow;
+
+    public JdbcTokenStore(JdbcTemplate jdbcTemplate,
+                          @Value("${token-store.max-attempts:5}") int maxAttempts,
+                          @Value("${token-store.attempt-window:15m}") Duration attemptWindow) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxAttempts = maxAttempts;
+        this.attemptWindow = attemptWindow;
+    }
+
+    @Override
+    public void save(TokenType type, String email, String token, Duration ttl) {
+        jdbcTemplate.update(SAVE_SQL, id(type, email), hash(token),
+                Timestamp.valueOf(LocalDateTime.now().plus(ttl)));
+    }
+
+    @Override
+    public boolean verify(TokenType type, String email, String token, boolean consume) {
+        if (token == null) {
+            return false;
+        }
+        String id = id(type, email);
+        LocalDateTime clock = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(clock);
+        String tokenHash = hash(token);
+
+        // Đã sai đủ số lần trong cửa sổ: từ chối cả mã vừa được cấp lại
+        if (attempts(id, now) >= maxAttempts) {
+            jdbcTemplate.update("DELETE FROM auth_tokens WHERE token_id = ?", id);
+            return false;
+        }
+
+        int matched;
+        if (consume) {
+            matched = jdbcTemplate.update(
+                    "DELETE FROM auth_tokens WHERE token_id = ? AND token_hash = ? AND expires_at > ?",
+                    id, tokenHash, now);
+        } else {
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM auth_tokens WHERE token_id = ? AND token_hash = ? AND expires_at > ?",
+                    Integer.class, id, tokenHash, now);
+            matched = count != null ? count : 0;
+        }
+        if (matched > 0) {
+            jdbcTemplate.update("DELETE FROM auth_token_attempts WHERE token_id = ?", id);
+            return true;
+        }
+
+        // Chỉ đếm lần sai khi email đang có mã còn hạn; mã đã hết hạn thì hủy luôn
+        Integer pending = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM auth_tokens WHERE token_id = ? AND expires_at > ?", Integer.class, id, now);
+        if (pending == null || pending == 0) {
+            jdbcTemplate.update("DELETE FROM auth_tokens WHERE token_id = ?", id);
+            return false;
+        }
+        jdbcTemplate.update(FAILURE_SQL, id, Timestamp.valueOf(clock.plus(attemptWindow)), now, now);
+        if (attempts(id, now) >= maxAttempts) {
+            jdbcTemplate.update("DELETE FROM auth_tokens WHERE token_id = ?", id);
+        }
+        return false;
+    }
+
+    @Override
+    public void remove(TokenType type, String email) {
+        jdbcTemplate.update("DELETE FROM auth_tokens WHERE token_id = ?", id(type, email));
+    }
+
+    @Scheduled(fixedDelayString = "${token-store.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int removed = jdbcTemplate.update("DELETE FROM auth_tokens WHERE expires_at <= ?", now);
+        jdbcTemplate.update("DELETE FROM auth_token_attempts WHERE expires_at <= ?", now);
+        if (removed > 0) {
+            logger.debug("Evicted {} expired tokens", removed);
+        }
+    }
+
+    private int attempts(String id, Timestamp now) {
+        Integer attempts = jdbcTemplate.queryForObject(ATTEMPTS_SQL, Integer.class, id, now);
+        return attempts != null ? attempts : 0;
+    }
+
+    private static String id(TokenType type, String email) {
+        return type.name() + ":" + email;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
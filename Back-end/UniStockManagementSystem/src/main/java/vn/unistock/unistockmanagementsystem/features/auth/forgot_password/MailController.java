@@ -3,7 +3,6 @@ package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -11,6 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
 import vn.unistock.unistockmanagementsystem.security.Jwt;
+import vn.unistock.unistockmanagementsystem.security.PasswordHasher;
 
 import java.util.Map;
 
@@ -21,7 +21,7 @@ public class MailController {
     private final MailService mailService;
     private final OtpService otpService;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final EphemeralService ephemeralService;
 
     @PostMapping("/forgot-password")
@@ -42,7 +42,7 @@ public class MailController {
                 + "<p>It is valid for 5 minutes.</p>"
                 + "</body></html>";
 
-        // Gửi email
+        // Đưa email vào hàng đợi, worker gửi sau
         mailService.send(email, subject, htmlBody);
 
         return ResponseEntity.ok("OTP sent successfully to " + email);
@@ -95,7 +95,7 @@ public class MailController {
         }
 
         // Đặt mật khẩu mới
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHasher.encode(newPassword));
         userRepository.save(user);
 
         // Xoá token sau khi dùng
@@ -1,55 +1,35 @@
 package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
 
-import java.util.Date;
-import java.util.Properties;
-import jakarta.mail.Authenticator;
-import jakarta.mail.Message;
-import jakarta.mail.PasswordAuthentication;
-import jakarta.mail.Session;
-import jakarta.mail.Transport;
-import jakarta.mail.internet.InternetAddress;
-import jakarta.mail.internet.MimeMessage;
-import org.springframework.beans.factory.annotation.Value;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import vn.unistock.unistockmanagementsystem.entities.OutboundMail;
+import vn.unistock.unistockmanagementsystem.utils.mail.MailEnqueuedEvent;
+import vn.unistock.unistockmanagementsystem.utils.mail.OutboundMailRepository;
 
+import java.time.LocalDateTime;
+
+/**
+ * Đưa email vào hàng đợi outbound_mail; việc gửi qua SMTP do MailQueueWorker đảm nhận nên request không phải chờ SMTP.
+ */
 @Service
+@RequiredArgsConstructor
 public class MailService {
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
-
-    @Value("${spring.mail.password}")
-    private String password;
+    private final OutboundMailRepository outboundMailRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public void send(String toEmail, String subject, String body) {
-        try {
-            Properties props = new Properties();
-            props.put("mail.smtp.host", "smtp.gmail.com"); // SMTP Host
-            props.put("mail.smtp.port", "587"); // TLS Port
-            props.put("mail.smtp.auth", "true"); // enable authentication
-            props.put("mail.smtp.starttls.enable", "true"); // enable STARTTLS
-
-            Authenticator auth = new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(fromEmail, password);
-                }
-            };
-
-            Session session = Session.getInstance(props, auth);
-            MimeMessage msg = new MimeMessage(session);
-            msg.addHeader("Content-type", "text/HTML; charset=UTF-8");
-            msg.addHeader("format", "flowed");
-            msg.addHeader("Content-Transfer-Encoding", "8bit");
-            msg.setFrom(new InternetAddress(fromEmail, "UniStock"));
-            msg.setReplyTo(InternetAddress.parse(fromEmail, false));
-            msg.setSubject(subject, "UTF-8");
-            msg.setContent(body, "text/html; charset=UTF-8");
-            msg.setSentDate(new Date());
-            msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail, false));
-            Transport.send(msg);
-        } catch (Exception ex) {
-            System.out.println("Error sending email: " + ex.getMessage());
-        }
+        LocalDateTime now = LocalDateTime.now();
+        outboundMailRepository.save(OutboundMail.builder()
+                .toEmail(toEmail)
+                .subject(subject)
+                .body(body)
+                .status(OutboundMail.MailStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+        eventPublisher.publishEvent(new MailEnqueuedEvent());
     }
 }
@@ -0,0 +1,29 @@
+package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
+
+import java.time.Duration;
+
+/**
+ * Kho mã dùng một lần gắn với email (OTP, ephemeral token), có hạn dùng và giới hạn số lần nhập sai.
+ * Mặc định dùng {@link InMemoryTokenStore}; đặt token-store.type=jdbc để dùng bảng auth_tokens chung cho nhiều node.
+ */
+public interface TokenStore {
+
+    enum TokenType {
+        OTP,
+        EPHEMERAL
+    }
+
+    /**
+     * Lưu (hoặc thay) mã của email. Bộ đếm số lần nhập sai không bị đặt lại.
+     */
+    void save(TokenType type, String email, String token, Duration ttl);
+
+    /**
+     * Kiểm tra mã còn hạn và khớp. Nếu consume = true thì mã bị xóa khi khớp. Mỗi lần sai được đếm theo email
+     * (token-store.attempt-window), đủ số lần cho phép thì mã bị hủy và mọi mã của email đó bị từ chối tới hết cửa sổ.
+     * Nhập đúng thì bộ đếm được xóa.
+     */
+    boolean verify(TokenType type, String email, String token, boolean consume);
+
+    void remove(TokenType type, String email);
+}
@@ -1,20 +1,28 @@
 package vn.unistock.unistockmanagementsystem.features.auth.login;
 
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
-import vn.unistock.unistockmanagementsystem.entities.Permission;
 import vn.unistock.unistockmanagementsystem.entities.Role;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.security.Jwt;
+import vn.unistock.unistockmanagementsystem.security.PasswordHasher;
+import vn.unistock.unistockmanagementsystem.security.PermissionRegistry;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalCache;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 
@@ -22,47 +30,77 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/unistock/auth")
 @RequiredArgsConstructor
 public class LoginController {
+    private static final Logger logger = LoggerFactory.getLogger(LoginController.class);
+
     private final Jwt jwtUtil;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final LoginService loginService;
+    private final PermissionRegistry permissionRegistry;
+    private final UserPrincipalCache userPrincipalCache;
 
 
+    /**
+     * So khớp mật khẩu chạy trên pool của PasswordHasher và trả về bất đồng bộ, nên luồng Tomcat được nhả ra
+     * trong lúc băm. Mọi dữ liệu lazy của user được đọc trước khi rời luồng request.
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginDTO request) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginDTO request) {
         try {
+            // Lấy version trước khi đọc user: nếu quyền đổi trong lúc đăng nhập, token sẽ mang version cũ và được đọc lại từ DB
+            long permissionVersion = permissionRegistry.currentVersion();
             User user = loginService.loadUserByEmail(request.getEmail());
 
             // Nếu user không tồn tại, trả về thông báo "Sai email hoặc mật khẩu!"
             if (user == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body("Sai email hoặc mật khẩu!");
-            }
-
-            // Kiểm tra mật khẩu
-            if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body("Sai email hoặc mật khẩu!");
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("Sai email hoặc mật khẩu!"));
             }
 
-            // Kiểm tra trạng thái active của user; sử dụng Boolean.TRUE.equals để tránh NullPointerException
-            if (user.getIsActive() == null || !user.getIsActive()) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body("Tài khoản đã bị khóa!");
-            }
-
-
+            boolean active = Boolean.TRUE.equals(user.getIsActive());
             List<String> roles = user.getRoles().stream()
                     .map(Role::getRoleName)
                     .collect(Collectors.toList());
+            String permissionSetId = PermissionRegistry.permissionSetId(
+                    user.getRoles().stream().map(Role::getRoleId).collect(Collectors.toList()));
+            Long userId = user.getUserId();
+            String email = user.getEmail();
+            String username = user.getUsername();
 
-            String token = jwtUtil.generateToken(user.getUserId(), user.getEmail(), roles);
-
-            return ResponseEntity.ok(new LoginDTO(token, roles, user.getEmail()));
+            // Kiểm tra mật khẩu
+            return passwordHasher.matchesAsync(request.getPassword(), user.getPassword())
+                    .<ResponseEntity<?>>thenApply(matched -> {
+                        if (!matched) {
+                            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                    .body("Sai email hoặc mật khẩu!");
+                        }
+
+                        // Kiểm tra trạng thái active của user
+                        if (!active) {
+                            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                    .body("Tài khoản đã bị khóa!");
+                        }
+
+                        String token = jwtUtil.generateToken(userId, email, username, roles,
+                                permissionSetId, permissionVersion);
+                        return ResponseEntity.ok(new LoginDTO(token, roles, email));
+                    })
+                    .exceptionally(LoginController::loginFailed);
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body("Lỗi: " + e.getMessage());
+            return CompletableFuture.completedFuture(loginFailed(e));
+        }
+    }
+
+    private static ResponseEntity<?> loginFailed(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof ResponseStatusException busy && busy.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+            // Hàng đợi băm mật khẩu đầy
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(busy.getReason());
         }
+        logger.warn("Đăng nhập thất bại: {}", cause.getMessage(), cause);
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body("Lỗi: " + cause.getMessage());
     }
 
 
@@ -77,21 +115,19 @@ public class LoginController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        User user = userDetails.getUser();
+        // Principal dựng từ token không có avatar nên /me luôn lấy bản đầy đủ
+        UserPrincipal user = userPrincipalCache.get(userDetails.getPrincipal().getEmail());
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
 
-        List<String> roles = user.getRoles().stream()
-                .map(Role::getRoleName)
-                .collect(Collectors.toList());
+        List<String> roles = user.getRoleNames();
 
-        List<String> permissions = userDetails.getAllPermissions().stream()
-                .map(Permission::getPermissionName)
+        List<String> permissions = user.getPermissions().stream()
+                .map(UserPrincipal.PermissionGrant::getPermissionName)
                 .collect(Collectors.toList());
 
-        // Lấy avatar từ UserDetail (nếu có)
-        String avatar = null;
-        if (user.getUserDetail() != null) {
-            avatar = user.getUserDetail().getProfilePicture();
-        }
+        String avatar = user.getAvatar();
 
         // Tạo MeDTO với avatar
         MeDTO meDto = new MeDTO(
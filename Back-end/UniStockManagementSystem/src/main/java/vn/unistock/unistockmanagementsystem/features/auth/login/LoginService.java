@@ -1,9 +1,9 @@
 package vn.unistock.unistockmanagementsystem.features.auth.login;
 
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
 
 @Service
 public class LoginService {
@@ -13,14 +13,18 @@ public class LoginService {
         this.loginRepository = loginRepository;
     }
 
-    @Cacheable("users")
+    // Dùng cho đăng nhập: luôn đọc từ DB vì cần mật khẩu và trạng thái mới nhất
     public User loadUserByEmail(String email) {
         return loginRepository.findByEmailFetchAll(email)
                 .orElse(null);
     }
-    @CacheEvict(value = "users", key = "#email")
-    public void evictUserCache(String email) {
-        // Phương thức này chỉ xóa cache, không cần thực hiện gì khác.
+
+    // Dùng cho UserPrincipalCache: đọc user kèm roles/permissions rồi chụp lại thành principal
+    @Transactional(readOnly = true)
+    public UserPrincipal loadPrincipalByEmail(String email) {
+        return loginRepository.findByEmailFetchAll(email)
+                .map(UserPrincipal::from)
+                .orElse(null);
     }
 
 }
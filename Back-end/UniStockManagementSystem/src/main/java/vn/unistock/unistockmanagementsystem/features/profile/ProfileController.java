@@ -10,7 +10,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
-import vn.unistock.unistockmanagementsystem.security.Jwt;
+import vn.unistock.unistockmanagementsystem.security.VerifiedTokenCache;
 
 import java.io.IOException;
 import java.util.Map;
@@ -21,7 +21,7 @@ import java.util.Map;
 public class ProfileController {
 
     private final ProfileService profileService;
-    private final Jwt jwt;
+    private final VerifiedTokenCache verifiedTokenCache;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
@@ -32,7 +32,7 @@ public class ProfileController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         String token = authHeader.substring(7);
-        String email = jwt.extractEmail(token);
+        String email = verifiedTokenCache.verify(token).getEmail();
         if(email == null || email.isEmpty()){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
@@ -47,7 +47,7 @@ public class ProfileController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         String token = authHeader.substring(7);
-        String email = jwt.extractEmail(token);
+        String email = verifiedTokenCache.verify(token).getEmail();
         if(email == null || email.isEmpty()){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
@@ -64,7 +64,7 @@ public class ProfileController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         String token = authHeader.substring(7);
-        String email = jwt.extractEmail(token);
+        String email = verifiedTokenCache.verify(token).getEmail();
         if(email == null || email.isEmpty()){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
@@ -80,7 +80,7 @@ public class ProfileController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         String token = authHeader.substring(7);
-        String email = jwt.extractEmail(token);
+        String email = verifiedTokenCache.verify(token).getEmail();
         if(email == null || email.isEmpty()){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
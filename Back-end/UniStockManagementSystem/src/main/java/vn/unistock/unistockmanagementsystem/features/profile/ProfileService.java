@@ -1,14 +1,15 @@
 package vn.unistock.unistockmanagementsystem.features.profile;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.entities.UserDetail;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
-import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
+import vn.unistock.unistockmanagementsystem.security.PasswordHasher;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalChangedEvent;
 import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
 
 import java.io.IOException;
@@ -23,8 +24,8 @@ public class ProfileService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
-    private final PasswordEncoder passwordEncoder;
-    private final LoginService loginService;
+    private final PasswordHasher passwordHasher;
+    private final ApplicationEventPublisher eventPublisher;
     private final AzureBlobService azureBlobService;
 
     // Lấy thông tin profile dựa trên email truyền vào
@@ -64,14 +65,14 @@ public class ProfileService {
         if (user == null) {
             throw new UsernameNotFoundException("User not found with email: " + email);
         }
-        if (!passwordEncoder.matches(dto.getCurrentPassword(), user.getPassword())) {
+        if (!passwordHasher.matches(dto.getCurrentPassword(), user.getPassword())) {
             throw new IllegalArgumentException("Mật khẩu hiện tại không chính xác");
         }
-        user.setPassword(passwordEncoder.encode(dto.getNewPassword()));
+        user.setPassword(passwordHasher.encode(dto.getNewPassword()));
         userRepository.save(user);
 
         // Xóa cache của user sau khi cập nhật mật khẩu
-        loginService.evictUserCache(email);
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.of(email));
     }
 
     // Upload ảnh đại diện
@@ -99,6 +100,9 @@ public class ProfileService {
         user.setUserDetail(userDetail);
         userRepository.save(user);
 
+        // Ảnh đại diện nằm trong principal (/auth/me)
+        eventPublisher.publishEvent(UserPrincipalChangedEvent.of(email));
+
         // Xóa ảnh cũ nếu có
         if (oldAvatarUrl != null && !oldAvatarUrl.isEmpty()) {
             azureBlobService.deleteFile(oldAvatarUrl);
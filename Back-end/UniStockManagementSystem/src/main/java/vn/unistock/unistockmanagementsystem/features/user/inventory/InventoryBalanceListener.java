@@ -0,0 +1,67 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalanceKey;
+
+import java.util.Objects;
+
+/**
+ * Đẩy mọi thay đổi số lượng trên {@link Inventory} sang inventory_balance ngay trong lúc flush,
+ * nhờ vậy các service nhập/xuất/giữ hàng không phải tự cập nhật bảng tổng.
+ */
+@Component
+public class InventoryBalanceListener {
+    private final InventoryBalanceService inventoryBalanceService;
+
+    public InventoryBalanceListener(@Lazy InventoryBalanceService inventoryBalanceService) {
+        this.inventoryBalanceService = inventoryBalanceService;
+    }
+
+    @PostLoad
+    public void onLoad(Inventory inventory) {
+        inventory.captureBalanceSnapshot();
+    }
+
+    @PostPersist
+    public void onPersist(Inventory inventory) {
+        inventoryBalanceService.applyDelta(InventoryBalanceKey.of(inventory), quantityOf(inventory.getQuantity()));
+        inventory.captureBalanceSnapshot();
+    }
+
+    @PostUpdate
+    public void onUpdate(Inventory inventory) {
+        InventoryBalanceKey oldKey = inventory.getBalanceKeySnapshot();
+        double oldQuantity = quantityOf(inventory.getBalanceQuantitySnapshot());
+        InventoryBalanceKey newKey = InventoryBalanceKey.of(inventory);
+        double newQuantity = quantityOf(inventory.getQuantity());
+
+        if (Objects.equals(oldKey, newKey)) {
+            inventoryBalanceService.applyDelta(newKey, newQuantity - oldQuantity);
+        } else {
+            inventoryBalanceService.applyDelta(oldKey, -oldQuantity);
+            inventoryBalanceService.applyDelta(newKey, newQuantity);
+        }
+        inventory.captureBalanceSnapshot();
+    }
+
+    @PostRemove
+    public void onRemove(Inventory inventory) {
+        if (inventory.getBalanceKeySnapshot() != null) {
+            inventoryBalanceService.applyDelta(inventory.getBalanceKeySnapshot(), -quantityOf(inventory.getBalanceQuantitySnapshot()));
+        } else {
+            inventoryBalanceService.applyDelta(InventoryBalanceKey.of(inventory), -quantityOf(inventory.getQuantity()));
+        }
+        inventory.setBalanceKeySnapshot(null);
+        inventory.setBalanceQuantitySnapshot(null);
+    }
+
+    private static double quantityOf(Double quantity) {
+        return quantity != null ? quantity : 0.0;
+    }
+}
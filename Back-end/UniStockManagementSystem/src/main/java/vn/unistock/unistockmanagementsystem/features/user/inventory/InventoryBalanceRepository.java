@@ -0,0 +1,56 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalance;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalanceKey;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface InventoryBalanceRepository extends JpaRepository<InventoryBalance, InventoryBalanceKey> {
+
+    @Query("""
+    SELECT COALESCE(SUM(b.quantity), 0)
+    FROM InventoryBalance b
+    WHERE b.id.itemType = :itemType
+      AND b.id.itemId = :itemId
+      AND b.id.status = :status
+    """)
+    Double sumQuantity(@Param("itemType") InventoryBalance.ItemType itemType,
+                       @Param("itemId") Long itemId,
+                       @Param("status") Inventory.InventoryStatus status);
+
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryByWarehouseDTO(
+        w.warehouseId,
+        w.warehouseName,
+        b.quantity
+    )
+    FROM InventoryBalance b
+    JOIN Warehouse w ON w.warehouseId = b.id.warehouseId
+    WHERE b.id.itemType = :itemType
+      AND b.id.itemId = :itemId
+      AND b.id.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE
+      AND b.quantity > 0
+      AND w.warehouseId <> 3
+    """)
+    List<InventoryByWarehouseDTO> findAvailableByWarehouse(@Param("itemType") InventoryBalance.ItemType itemType,
+                                                           @Param("itemId") Long itemId);
+
+    @Query("""
+    SELECT b.id.itemId, SUM(b.quantity)
+    FROM InventoryBalance b
+    WHERE b.id.itemType = :itemType
+      AND b.id.itemId IN :itemIds
+      AND b.id.status = :status
+    GROUP BY b.id.itemId
+    """)
+    List<Object[]> sumQuantityByItem(@Param("itemType") InventoryBalance.ItemType itemType,
+                                     @Param("itemIds") Collection<Long> itemIds,
+                                     @Param("status") Inventory.InventoryStatus status);
+}
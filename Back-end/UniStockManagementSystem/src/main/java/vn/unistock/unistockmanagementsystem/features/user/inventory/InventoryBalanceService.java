@@ -0,0 +1,166 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalance;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalanceKey;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+public class InventoryBalanceService {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryBalanceService.class);
+    private static final double EPSILON = 1e-6;
+    private static final int BATCH_SIZE = 100;
+
+    private static final String UPSERT_DELTA_SQL = """
+            INSERT INTO inventory_balance (item_type, item_id, warehouse_id, status, quantity, last_updated)
+            VALUES (?, ?, ?, ?, ?, NOW())
+            ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), last_updated = NOW()
+            """;
+
+    private static final String EXPECTED_BALANCE_SQL = """
+            SELECT CASE WHEN i.material_id IS NOT NULL THEN 'MATERIAL' ELSE 'PRODUCT' END AS item_type,
+                   COALESCE(i.material_id, i.product_id) AS item_id,
+                   i.warehouse_id,
+                   i.status,
+                   SUM(i.quantity) AS quantity
+            FROM inventory i
+            WHERE i.status IS NOT NULL
+              AND (i.material_id IS NOT NULL OR i.product_id IS NOT NULL)
+            GROUP BY item_type, item_id, i.warehouse_id, i.status
+            """;
+
+    private static final String ACTUAL_BALANCE_SQL =
+            "SELECT item_type, item_id, warehouse_id, status, quantity FROM inventory_balance";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryBalanceRepository inventoryBalanceRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Cộng dồn chênh lệch vào inventory_balance; chạy trên cùng connection/transaction với thay đổi inventory.
+     */
+    public void applyDelta(InventoryBalanceKey key, double delta) {
+        if (key == null || Math.abs(delta) < EPSILON) {
+            return;
+        }
+        jdbcTemplate.update(UPSERT_DELTA_SQL,
+                key.getItemType().name(), key.getItemId(), key.getWarehouseId(), key.getStatus().name(), delta);
+        publishAvailableChanges(List.of(key));
+    }
+
+    /**
+     * Ghi nhiều chênh lệch một lần bằng JDBC batch, dùng cho các luồng ghi kho hàng loạt.
+     */
+    public void applyDeltas(Map<InventoryBalanceKey, Double> deltas) {
+        List<Map.Entry<InventoryBalanceKey, Double>> changes = deltas.entrySet().stream()
+                .filter(e -> e.getKey() != null && Math.abs(e.getValue()) >= EPSILON)
+                .toList();
+        if (changes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_DELTA_SQL, changes, BATCH_SIZE, (ps, change) -> {
+            InventoryBalanceKey key = change.getKey();
+            ps.setString(1, key.getItemType().name());
+            ps.setLong(2, key.getItemId());
+            ps.setLong(3, key.getWarehouseId());
+            ps.setString(4, key.getStatus().name());
+            ps.setDouble(5, change.getValue());
+        });
+        publishAvailableChanges(changes.stream().map(Map.Entry::getKey).toList());
+    }
+
+    // Mọi thay đổi tồn kho đều đi qua đây nên đây là nơi duy nhất báo vật tư đổi tồn khả dụng cho việc cảnh báo tồn thấp
+    private void publishAvailableChanges(List<InventoryBalanceKey> keys) {
+        Set<Long> materialIds = new HashSet<>();
+        for (InventoryBalanceKey key : keys) {
+            if (key.getItemType() == InventoryBalance.ItemType.MATERIAL && key.getStatus() == Inventory.InventoryStatus.AVAILABLE) {
+                materialIds.add(key.getItemId());
+            }
+        }
+        if (!materialIds.isEmpty()) {
+            eventPublisher.publishEvent(new InventoryChangedEvent(materialIds));
+        }
+    }
+
+    public Double getAvailableQuantity(InventoryBalance.ItemType itemType, Long itemId) {
+        return inventoryBalanceRepository.sumQuantity(itemType, itemId, Inventory.InventoryStatus.AVAILABLE);
+    }
+
+    public Double getQuantity(InventoryBalance.ItemType itemType, Long itemId, Inventory.InventoryStatus status) {
+        return inventoryBalanceRepository.sumQuantity(itemType, itemId, status);
+    }
+
+    public List<InventoryByWarehouseDTO> getAvailableByWarehouse(InventoryBalance.ItemType itemType, Long itemId) {
+        return inventoryBalanceRepository.findAvailableByWarehouse(itemType, itemId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        // Gọi reconcile() từ trong bean sẽ bỏ qua proxy @Transactional, nên tự mở transaction cùng mức cô lập
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        transaction.executeWithoutResult(status -> reconcile());
+    }
+
+    /**
+     * Đối chiếu inventory_balance với tổng thực tế trên bảng inventory và bù phần lệch.
+     * Phần bù được cộng dưới dạng chênh lệch nên không ghi đè các thay đổi commit song song.
+     * Hai câu đọc tổng kỳ vọng và số dư hiện có phải thấy cùng một snapshot, nên chạy ở REPEATABLE_READ.
+     */
+    @Scheduled(cron = "${app.inventory.balance.reconcile-cron:0 30 2 * * *}")
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public int reconcile() {
+        Map<InventoryBalanceKey, Double> expected = loadBalances(EXPECTED_BALANCE_SQL);
+        Map<InventoryBalanceKey, Double> actual = loadBalances(ACTUAL_BALANCE_SQL);
+
+        Set<InventoryBalanceKey> keys = new HashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+
+        int drifted = 0;
+        for (InventoryBalanceKey key : keys) {
+            double diff = expected.getOrDefault(key, 0.0) - actual.getOrDefault(key, 0.0);
+            if (Math.abs(diff) >= EPSILON) {
+                drifted++;
+                logger.warn("inventory_balance lệch tại {} {} kho {} [{}]: bù {}",
+                        key.getItemType(), key.getItemId(), key.getWarehouseId(), key.getStatus(), diff);
+                applyDelta(key, diff);
+            }
+        }
+        logger.info("Đối chiếu inventory_balance xong: {} khóa, {} khóa lệch đã được bù", keys.size(), drifted);
+        return drifted;
+    }
+
+    private Map<InventoryBalanceKey, Double> loadBalances(String sql) {
+        Map<InventoryBalanceKey, Double> balances = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            InventoryBalanceKey key = new InventoryBalanceKey(
+                    InventoryBalance.ItemType.valueOf(rs.getString("item_type")),
+                    rs.getLong("item_id"),
+                    rs.getLong("warehouse_id"),
+                    Inventory.InventoryStatus.valueOf(rs.getString("status")));
+            balances.merge(key, rs.getDouble("quantity"), Double::sum);
+        });
+        return balances;
+    }
+}
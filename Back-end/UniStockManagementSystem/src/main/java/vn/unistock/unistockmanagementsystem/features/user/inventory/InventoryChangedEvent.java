@@ -0,0 +1,17 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Tồn khả dụng (hoặc ngưỡng tồn thấp) của các vật tư đã đổi. Được xử lý sau khi transaction commit.
+ */
+@Getter
+public class InventoryChangedEvent {
+    private final Set<Long> materialIds;
+
+    public InventoryChangedEvent(Set<Long> materialIds) {
+        this.materialIds = Set.copyOf(materialIds);
+    }
+}
@@ -0,0 +1,30 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.InventoryTransaction;
+
+/**
+ * Phiếu nhập/xuất ghi lùi ngày làm các snapshot tồn cuối kỳ từ ngày đó trở đi không còn đúng,
+ * nên các snapshot này bị hủy để job dựng lại.
+ */
+@Component
+public class InventoryClosingBalanceListener {
+    private final InventoryClosingBalanceService inventoryClosingBalanceService;
+
+    public InventoryClosingBalanceListener(@Lazy InventoryClosingBalanceService inventoryClosingBalanceService) {
+        this.inventoryClosingBalanceService = inventoryClosingBalanceService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(InventoryTransaction transaction) {
+        if (transaction.getTransactionDate() != null) {
+            inventoryClosingBalanceService.invalidateFrom(transaction.getTransactionDate().toLocalDate());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Quản lý snapshot tồn cuối tháng (inventory_closing_balance).
+ * Tồn đầu kỳ = snapshot gần nhất trước ngày bắt đầu + phần giao dịch phát sinh từ sau snapshot đó,
+ * nên chi phí chỉ phụ thuộc vào số giao dịch trong khoảng ngắn này chứ không phải toàn bộ lịch sử.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryClosingBalanceService {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryClosingBalanceService.class);
+
+    private static final String SIGNED_TRANSACTIONS_SQL = """
+            SELECT CASE WHEN t.material_id IS NOT NULL THEN 'MATERIAL' ELSE 'PRODUCT' END AS item_type,
+                   COALESCE(t.material_id, t.product_id) AS item_id,
+                   CASE WHEN t.transaction_type = 'IMPORT' THEN t.quantity ELSE -t.quantity END AS quantity
+            FROM inventory_transaction t
+            WHERE (t.material_id IS NOT NULL OR t.product_id IS NOT NULL)
+              AND (? IS NULL OR t.transaction_date >= ?)
+              AND t.transaction_date < ?
+            """;
+
+    private static final String OPENING_BALANCE_SQL = """
+            SELECT x.item_type, x.item_id, SUM(x.quantity) AS quantity
+            FROM (
+                SELECT c.item_type, c.item_id, c.quantity
+                FROM inventory_closing_balance c
+                WHERE c.period_end = ?
+                UNION ALL
+            """ + SIGNED_TRANSACTIONS_SQL + """
+            ) x
+            GROUP BY x.item_type, x.item_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    // Kỳ snapshot mới nhất đã dựng; null = chưa đọc từ DB, LocalDate.MIN = chưa có snapshot nào
+    private final AtomicReference<LocalDate> latestPeriodEnd = new AtomicReference<>();
+
+    /**
+     * Kỳ snapshot gần nhất có thể dùng cho tồn đầu kỳ tại {@code startDate}, hoặc null nếu chưa có.
+     * Snapshot kỳ D bao gồm mọi giao dịch trước 00:00 ngày D+1.
+     */
+    public LocalDate findSnapshotBefore(LocalDateTime startDate) {
+        return jdbcTemplate.queryForObject(
+                "SELECT MAX(period_end) FROM inventory_closing_balance WHERE period_end < ?",
+                LocalDate.class, Date.valueOf(startDate.toLocalDate()));
+    }
+
+    /**
+     * Thời điểm bắt đầu quét giao dịch phát sinh sau snapshot {@code periodEnd}.
+     */
+    public static LocalDateTime deltaStart(LocalDate periodEnd) {
+        return periodEnd != null ? periodEnd.plusDays(1).atStartOfDay() : null;
+    }
+
+    /**
+     * Subquery (item_type, item_id, quantity) cho tồn đầu kỳ trước {@code startDate}; đi kèm {@link #openingBalanceArgs}.
+     */
+    public String openingBalanceSql() {
+        return OPENING_BALANCE_SQL;
+    }
+
+    public Object[] openingBalanceArgs(LocalDateTime startDate) {
+        LocalDate snapshot = findSnapshotBefore(startDate);
+        Timestamp from = snapshot != null ? Timestamp.valueOf(deltaStart(snapshot)) : null;
+        return new Object[]{
+                snapshot != null ? Date.valueOf(snapshot) : null,
+                from, from, Timestamp.valueOf(startDate)
+        };
+    }
+
+    /**
+     * Hủy các snapshot từ kỳ chứa {@code date} trở đi; gọi khi có giao dịch ghi lùi ngày.
+     */
+    public void invalidateFrom(LocalDate date) {
+        LocalDate latest = latestPeriodEnd();
+        if (latest.isBefore(date)) {
+            return;
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM inventory_closing_balance WHERE period_end >= ?", Date.valueOf(date));
+        latestPeriodEnd.set(null);
+        logger.info("Giao dịch ghi lùi ngày {}: đã hủy {} dòng snapshot tồn cuối kỳ", date, deleted);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        // Gọi buildMissingSnapshots() từ trong bean sẽ bỏ qua proxy @Transactional, nên tự mở transaction
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> buildMissingSnapshots());
+    }
+
+    /**
+     * Dựng snapshot cho mọi tháng đã kết thúc mà chưa có snapshot.
+     */
+    @Scheduled(cron = "${app.inventory.closing-balance.cron:0 15 1 * * *}")
+    @Transactional
+    public void buildMissingSnapshots() {
+        LocalDate lastClosedPeriod = LocalDate.now().withDayOfMonth(1).minusDays(1);
+        LocalDate previous = latestPeriodEnd();
+        LocalDate period;
+        if (previous.equals(LocalDate.MIN)) {
+            previous = null;
+            LocalDateTime first = jdbcTemplate.queryForObject(
+                    "SELECT MIN(transaction_date) FROM inventory_transaction", LocalDateTime.class);
+            if (first == null) {
+                return;
+            }
+            period = first.toLocalDate().withDayOfMonth(first.toLocalDate().lengthOfMonth());
+        } else {
+            period = previous.plusDays(1);
+            period = period.withDayOfMonth(period.lengthOfMonth());
+        }
+
+        int built = 0;
+        while (!period.isAfter(lastClosedPeriod)) {
+            buildSnapshot(previous, period);
+            previous = period;
+            period = period.plusDays(1);
+            period = period.withDayOfMonth(period.lengthOfMonth());
+            built++;
+        }
+        latestPeriodEnd.set(null);
+        if (built > 0) {
+            logger.info("Đã dựng {} kỳ snapshot tồn cuối kỳ, kỳ mới nhất {}", built, previous);
+        }
+    }
+
+    private void buildSnapshot(LocalDate previous, LocalDate periodEnd) {
+        Timestamp from = previous != null ? Timestamp.valueOf(deltaStart(previous)) : null;
+        jdbcTemplate.update("DELETE FROM inventory_closing_balance WHERE period_end = ?", Date.valueOf(periodEnd));
+        jdbcTemplate.update(
+                "INSERT INTO inventory_closing_balance (period_end, item_type, item_id, quantity) " +
+                        "SELECT ?, o.item_type, o.item_id, o.quantity FROM (" + OPENING_BALANCE_SQL + ") o",
+                Date.valueOf(periodEnd),
+                previous != null ? Date.valueOf(previous) : null,
+                from, from, Timestamp.valueOf(deltaStart(periodEnd)));
+    }
+
+    private LocalDate latestPeriodEnd() {
+        LocalDate cached = latestPeriodEnd.get();
+        if (cached != null) {
+            return cached;
+        }
+        LocalDate latest = jdbcTemplate.queryForObject(
+                "SELECT MAX(period_end) FROM inventory_closing_balance", LocalDate.class);
+        LocalDate value = latest != null ? latest : LocalDate.MIN;
+        latestPeriodEnd.set(value);
+        return value;
+    }
+}
@@ -0,0 +1,272 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Ghi kho theo lô cho cả một phiếu: khóa tất cả dòng inventory liên quan bằng một câu SELECT ... FOR UPDATE,
+ * kiểm tra và trừ số lượng trong bộ nhớ, rồi cập nhật inventory và inventory_balance bằng JDBC batch; phiếu nhập
+ * cộng dồn thẳng bằng upsert. Thẻ kho được persist qua JPA để lấy ID từ id_generator, Hibernate gom INSERT theo
+ * hibernate.jdbc.batch_size.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryDeltaEngine {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryDeltaEngine.class);
+    private static final int BATCH_SIZE = 100;
+
+    private static final String UPDATE_INVENTORY_SQL =
+            "UPDATE inventory SET quantity = ?, last_updated = ?, version = version + 1 WHERE inventory_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final InventoryBalanceService inventoryBalanceService;
+    private final InventoryUpsertRepository inventoryUpsertRepository;
+
+    @Getter
+    @AllArgsConstructor
+    public static class ExportLine {
+        private Long warehouseId;
+        private Long materialId;
+        private Long productId;
+        private double quantity;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ImportLine {
+        private Long warehouseId;
+        private Long materialId;
+        private Long productId;
+        private double quantity;
+        private Inventory.InventoryStatus status;
+        private Long salesOrderId; // chỉ có giá trị khi status = RESERVED
+    }
+
+    /**
+     * Xuất kho cho toàn bộ dòng của phiếu xuất. Nếu phiếu gắn với đơn hàng thì ưu tiên trừ vào hàng đã giữ (RESERVED)
+     * của đơn đó, không đủ thì trừ vào hàng AVAILABLE, giống thứ tự xử lý từng dòng trước đây.
+     */
+    public void postExport(GoodIssueNote issueNote, List<ExportLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Long salesOrderId = issueNote.getSalesOrder() != null ? issueNote.getSalesOrder().getOrderId() : null;
+        Set<List<Long>> materialPairs = new LinkedHashSet<>();
+        Set<List<Long>> productPairs = new LinkedHashSet<>();
+        for (ExportLine line : lines) {
+            addPair(materialPairs, productPairs, line.getWarehouseId(), line.getMaterialId(), line.getProductId());
+        }
+        List<Object> statusArgs = new ArrayList<>();
+        String statusCondition = "status = 'AVAILABLE'";
+        if (salesOrderId != null) {
+            statusCondition = "(status = 'AVAILABLE' OR (status = 'RESERVED' AND order_id = ?))";
+            statusArgs.add(salesOrderId);
+        }
+        List<InventoryRow> rows = lockRows(materialPairs, productPairs, statusCondition, statusArgs);
+
+        Map<String, InventoryRow> reservedRows = new HashMap<>();
+        Map<String, InventoryRow> availableRows = new HashMap<>();
+        for (InventoryRow row : rows) {
+            String key = itemKey(row.warehouseId, row.materialId, row.productId);
+            if (row.status == Inventory.InventoryStatus.RESERVED) {
+                reservedRows.putIfAbsent(key, row);
+            } else {
+                availableRows.putIfAbsent(key, row);
+            }
+        }
+
+        List<LedgerRow> ledger = new ArrayList<>(lines.size());
+        for (ExportLine line : lines) {
+            boolean isMaterial = line.getMaterialId() != null;
+            String itemLabel = isMaterial ? "vật tư có ID: " + line.getMaterialId() : "sản phẩm có ID: " + line.getProductId();
+            String key = itemKey(line.getWarehouseId(), line.getMaterialId(), line.getProductId());
+            double quantity = line.getQuantity();
+
+            InventoryRow row = null;
+            Inventory.InventoryStatus status = Inventory.InventoryStatus.AVAILABLE;
+            if (salesOrderId != null) {
+                row = reservedRows.get(key);
+                if (row != null && row.quantity >= quantity) {
+                    status = Inventory.InventoryStatus.RESERVED;
+                } else {
+                    row = null;
+                }
+            }
+            if (row == null) {
+                row = availableRows.get(key);
+                if (row == null) {
+                    throw new RuntimeException("Không tìm thấy tồn kho AVAILABLE cho " + itemLabel);
+                }
+            }
+            if (row.quantity < quantity) {
+                throw new RuntimeException("Không đủ số lượng tồn kho " + status + " cho " + itemLabel);
+            }
+
+            row.quantity -= quantity;
+            row.lastUpdated = isMaterial ? issueNote.getIssueDate() : LocalDateTime.now();
+            row.dirty = true;
+
+            ledger.add(new LedgerRow(line.getWarehouseId(), line.getMaterialId(), line.getProductId(),
+                    InventoryTransaction.TransactionType.EXPORT, quantity, issueNote.getIssueDate(),
+                    null, issueNote.getGinId(), InventoryTransaction.NoteType.GOOD_ISSUE_NOTE));
+        }
+
+        flushRows(rows);
+        persistLedger(ledger);
+        logger.info("Posted {} export lines for issue note {} ({} inventory rows locked)",
+                lines.size(), issueNote.getGinCode(), rows.size());
+    }
+
+    /**
+     * Nhập kho cho toàn bộ dòng của phiếu nhập: mỗi dòng là một lần cộng dồn theo khóa duy nhất của inventory
+     * (upsert), không cần đọc hay khóa trước, rồi ghi thẻ kho theo lô.
+     */
+    public void postImport(GoodReceiptNote receiptNote, List<ImportLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<InventoryUpsertRepository.Delta> deltas = new ArrayList<>(lines.size());
+        List<LedgerRow> ledger = new ArrayList<>(lines.size());
+        for (ImportLine line : lines) {
+            boolean isMaterial = line.getMaterialId() != null;
+            Long salesOrderId = line.getStatus() == Inventory.InventoryStatus.RESERVED ? line.getSalesOrderId() : null;
+            deltas.add(new InventoryUpsertRepository.Delta(line.getWarehouseId(), line.getMaterialId(), line.getProductId(),
+                    line.getStatus(), salesOrderId, line.getQuantity(),
+                    isMaterial ? receiptNote.getReceiptDate() : LocalDateTime.now()));
+
+            ledger.add(new LedgerRow(line.getWarehouseId(), line.getMaterialId(), line.getProductId(),
+                    InventoryTransaction.TransactionType.IMPORT, line.getQuantity(), receiptNote.getReceiptDate(),
+                    receiptNote.getGrnId(), null, InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE));
+        }
+
+        inventoryUpsertRepository.addQuantities(deltas);
+        persistLedger(ledger);
+        logger.info("Posted {} import lines for receipt note {}", lines.size(), receiptNote.getGrnCode());
+    }
+
+    private List<InventoryRow> lockRows(Set<List<Long>> materialPairs, Set<List<Long>> productPairs,
+                                        String statusCondition, List<Object> statusArgs) {
+        List<Object> args = new ArrayList<>();
+        List<String> itemConditions = new ArrayList<>();
+        if (!materialPairs.isEmpty()) {
+            itemConditions.add("(warehouse_id, material_id) IN (" + pairPlaceholders(materialPairs.size()) + ")");
+            materialPairs.forEach(args::addAll);
+        }
+        if (!productPairs.isEmpty()) {
+            itemConditions.add("(warehouse_id, product_id) IN (" + pairPlaceholders(productPairs.size()) + ")");
+            productPairs.forEach(args::addAll);
+        }
+        args.addAll(statusArgs);
+
+        // Khóa theo thứ tự khóa chính để các phiếu chạy song song không deadlock lẫn nhau
+        String sql = "SELECT inventory_id, warehouse_id, material_id, product_id, status, order_id, quantity FROM inventory" +
+                " WHERE (" + String.join(" OR ", itemConditions) + ") AND " + statusCondition +
+                " ORDER BY inventory_id FOR UPDATE";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            InventoryRow row = new InventoryRow();
+            row.inventoryId = rs.getLong("inventory_id");
+            row.warehouseId = rs.getLong("warehouse_id");
+            row.materialId = rs.getObject("material_id", Long.class);
+            row.productId = rs.getObject("product_id", Long.class);
+            row.status = Inventory.InventoryStatus.valueOf(rs.getString("status"));
+            row.salesOrderId = rs.getObject("order_id", Long.class);
+            row.quantity = rs.getDouble("quantity");
+            row.originalQuantity = row.quantity;
+            return row;
+        }, args.toArray());
+    }
+
+    private void flushRows(List<InventoryRow> rows) {
+        List<InventoryRow> dirtyRows = rows.stream().filter(r -> r.dirty).toList();
+        if (dirtyRows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_INVENTORY_SQL, dirtyRows, BATCH_SIZE, (ps, row) -> {
+            ps.setDouble(1, row.quantity);
+            ps.setTimestamp(2, row.lastUpdated != null ? Timestamp.valueOf(row.lastUpdated) : null);
+            ps.setLong(3, row.inventoryId);
+        });
+
+        Map<InventoryBalanceKey, Double> deltas = new HashMap<>();
+        for (InventoryRow row : dirtyRows) {
+            InventoryBalanceKey key = row.materialId != null
+                    ? new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, row.materialId, row.warehouseId, row.status)
+                    : new InventoryBalanceKey(InventoryBalance.ItemType.PRODUCT, row.productId, row.warehouseId, row.status);
+            deltas.merge(key, row.quantity - row.originalQuantity, Double::sum);
+        }
+        inventoryBalanceService.applyDeltas(deltas);
+    }
+
+    // InventoryClosingBalanceListener hủy snapshot tồn cuối kỳ theo ngày chứng từ khi các dòng này được flush
+    private void persistLedger(List<LedgerRow> ledger) {
+        for (LedgerRow row : ledger) {
+            entityManager.persist(InventoryTransaction.builder()
+                    .warehouse(entityManager.getReference(Warehouse.class, row.warehouseId))
+                    .material(row.materialId != null ? entityManager.getReference(Material.class, row.materialId) : null)
+                    .product(row.productId != null ? entityManager.getReference(Product.class, row.productId) : null)
+                    .transactionType(row.transactionType)
+                    .quantity(row.quantity)
+                    .transactionDate(row.transactionDate)
+                    .goodReceiptNote(row.grnId != null ? entityManager.getReference(GoodReceiptNote.class, row.grnId) : null)
+                    .goodIssueNote(row.ginId != null ? entityManager.getReference(GoodIssueNote.class, row.ginId) : null)
+                    .referenceType(row.referenceType)
+                    .build());
+        }
+    }
+
+    private static String pairPlaceholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "(?, ?)"));
+    }
+
+    private static void addPair(Set<List<Long>> materialPairs, Set<List<Long>> productPairs,
+                                Long warehouseId, Long materialId, Long productId) {
+        if (materialId != null) {
+            materialPairs.add(List.of(warehouseId, materialId));
+        } else {
+            productPairs.add(List.of(warehouseId, productId));
+        }
+    }
+
+    private static String itemKey(Long warehouseId, Long materialId, Long productId) {
+        return warehouseId + (materialId != null ? ":M" + materialId : ":P" + productId);
+    }
+
+    private static class InventoryRow {
+        private long inventoryId;
+        private long warehouseId;
+        private Long materialId;
+        private Long productId;
+        private Inventory.InventoryStatus status;
+        private Long salesOrderId;
+        private double quantity;
+        private double originalQuantity;
+        private LocalDateTime lastUpdated;
+        private boolean dirty;
+    }
+
+    @AllArgsConstructor
+    private static class LedgerRow {
+        private Long warehouseId;
+        private Long materialId;
+        private Long productId;
+        private InventoryTransaction.TransactionType transactionType;
+        private double quantity;
+        private LocalDateTime transactionDate;
+        private Long grnId;
+        private Long ginId;
+        private InventoryTransaction.NoteType referenceType;
+    }
+}
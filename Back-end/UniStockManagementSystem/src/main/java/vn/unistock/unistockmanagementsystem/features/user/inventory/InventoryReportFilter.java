@@ -0,0 +1,25 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryReportFilter {
+    private String search;
+    private List<Long> warehouseIds;
+    private List<Boolean> statuses;
+    private Double minAvailable;
+    private Double maxAvailable;
+    private Double minReserved;
+    private Double maxReserved;
+    private Double minTotal;
+    private Double maxTotal;
+    private String itemType; // "PRODUCT" hoặc "MATERIAL"
+    private List<Long> productTypeIds;
+    private List<Long> materialTypeIds;
+}
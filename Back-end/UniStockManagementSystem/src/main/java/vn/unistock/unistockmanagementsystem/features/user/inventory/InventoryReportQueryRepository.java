@@ -0,0 +1,172 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.utils.SqlLike;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Báo cáo tồn kho theo (hàng hóa × kho): toàn bộ bộ lọc, đếm và phân trang đều chạy trong SQL,
+ * chỉ các dòng thuộc trang được yêu cầu mới được đọc lên JVM.
+ */
+@Repository
+public class InventoryReportQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private static final String SELECT_COLUMNS = """
+            SELECT COALESCE(m.material_code, p.product_code) AS itemCode,
+                   COALESCE(m.material_name, p.product_name) AS itemName,
+                   CASE WHEN m.material_id IS NOT NULL THEN m.is_using_active ELSE p.is_production_active END AS isActive,
+                   CASE WHEN m.material_id IS NOT NULL THEN u1.unit_name ELSE u2.unit_name END AS unitName,
+                   SUM(CASE WHEN i.status = 'AVAILABLE' THEN i.quantity ELSE 0 END) AS availableQuantity,
+                   SUM(CASE WHEN i.status = 'RESERVED' THEN i.quantity ELSE 0 END) AS reservedQuantity,
+                   SUM(i.quantity) AS totalQuantity,
+                   w.warehouse_code AS warehouseCode,
+                   w.warehouse_name AS warehouseName,
+                   w.warehouse_id AS warehouseId,
+                   CASE WHEN m.material_id IS NOT NULL THEN 'MATERIAL' ELSE 'PRODUCT' END AS itemType,
+                   p.type_id AS productTypeId,
+                   m.type_id AS materialTypeId
+            FROM inventory i
+            JOIN warehouse w ON w.warehouse_id = i.warehouse_id
+            LEFT JOIN materials m ON m.material_id = i.material_id
+            LEFT JOIN products p ON p.product_id = i.product_id
+            LEFT JOIN units u1 ON u1.unit_id = m.unit_id
+            LEFT JOIN units u2 ON u2.unit_id = p.unit_id
+            WHERE 1 = 1
+            """;
+
+    private static final String GROUP_BY = """
+            GROUP BY itemCode, itemName, isActive, unitName,
+                     warehouseCode, warehouseName, warehouseId,
+                     itemType, productTypeId, materialTypeId
+            """;
+
+    public Page<InventoryReportDTO> findReport(InventoryReportFilter filter, Pageable pageable) {
+        Map<String, Object> params = new HashMap<>();
+        String groupedSql = buildGroupedSql(filter, params);
+
+        Query countQuery = entityManager.createNativeQuery("SELECT COUNT(*) FROM (" + groupedSql + ") r");
+        params.forEach(countQuery::setParameter);
+        long total = ((Number) countQuery.getSingleResult()).longValue();
+        if (total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+
+        Query pageQuery = entityManager.createNativeQuery(groupedSql + " ORDER BY itemCode, warehouseId LIMIT :limit OFFSET :offset");
+        params.forEach(pageQuery::setParameter);
+        pageQuery.setParameter("limit", pageable.getPageSize());
+        pageQuery.setParameter("offset", pageable.getOffset());
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = pageQuery.getResultList();
+        List<InventoryReportDTO> content = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            content.add(toDTO(row));
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private String buildGroupedSql(InventoryReportFilter filter, Map<String, Object> params) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS);
+
+        if (filter.getSearch() != null && !filter.getSearch().isBlank()) {
+            sql.append(" AND (LOWER(COALESCE(m.material_code, p.product_code)) LIKE :search").append(SqlLike.ESCAPE)
+                    .append(" OR LOWER(COALESCE(m.material_name, p.product_name)) LIKE :search").append(SqlLike.ESCAPE).append(")");
+            params.put("search", SqlLike.contains(filter.getSearch().toLowerCase()));
+        }
+        if (isPresent(filter.getWarehouseIds())) {
+            sql.append(" AND w.warehouse_id IN (:warehouseIds)");
+            params.put("warehouseIds", filter.getWarehouseIds());
+        }
+        if (isPresent(filter.getStatuses())) {
+            sql.append(" AND (CASE WHEN m.material_id IS NOT NULL THEN m.is_using_active ELSE p.is_production_active END) IN (:statuses)");
+            params.put("statuses", filter.getStatuses());
+        }
+        if ("MATERIAL".equalsIgnoreCase(filter.getItemType())) {
+            sql.append(" AND m.material_id IS NOT NULL");
+        } else if ("PRODUCT".equalsIgnoreCase(filter.getItemType())) {
+            sql.append(" AND m.material_id IS NULL");
+        }
+        // Lọc theo loại chỉ áp dụng cho đúng nhóm hàng tương ứng
+        if (isPresent(filter.getProductTypeIds())) {
+            sql.append(" AND (m.material_id IS NOT NULL OR p.type_id IN (:productTypeIds))");
+            params.put("productTypeIds", filter.getProductTypeIds());
+        }
+        if (isPresent(filter.getMaterialTypeIds())) {
+            sql.append(" AND (m.material_id IS NULL OR m.type_id IN (:materialTypeIds))");
+            params.put("materialTypeIds", filter.getMaterialTypeIds());
+        }
+
+        // Điều kiện cuối có thể kết thúc bằng "IS NULL", phải cách ra trước GROUP BY
+        sql.append(' ').append(GROUP_BY);
+
+        List<String> having = new ArrayList<>();
+        addRange(having, params, "availableQuantity", filter.getMinAvailable(), filter.getMaxAvailable());
+        addRange(having, params, "reservedQuantity", filter.getMinReserved(), filter.getMaxReserved());
+        addRange(having, params, "totalQuantity", filter.getMinTotal(), filter.getMaxTotal());
+        if (!having.isEmpty()) {
+            sql.append(" HAVING ").append(String.join(" AND ", having));
+        }
+        return sql.toString();
+    }
+
+    private void addRange(List<String> having, Map<String, Object> params, String column, Double min, Double max) {
+        if (min != null) {
+            having.add(column + " >= :min_" + column);
+            params.put("min_" + column, min);
+        }
+        if (max != null) {
+            having.add(column + " <= :max_" + column);
+            params.put("max_" + column, max);
+        }
+    }
+
+    private boolean isPresent(List<?> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    private InventoryReportDTO toDTO(Object[] row) {
+        return new InventoryReportDTO(
+                (String) row[0],
+                (String) row[1],
+                toBoolean(row[2]),
+                (String) row[3],
+                toDouble(row[4]),
+                toDouble(row[5]),
+                toDouble(row[6]),
+                (String) row[7],
+                (String) row[8],
+                toLong(row[9]),
+                (String) row[10],
+                toLong(row[11]),
+                toLong(row[12])
+        );
+    }
+
+    private static Double toDouble(Object value) {
+        return value == null ? 0.0 : ((Number) value).doubleValue();
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value == null) return null;
+        if (value instanceof Boolean b) return b;
+        if (value instanceof byte[] bytes) return bytes.length > 0 && bytes[0] != 0;
+        return ((Number) value).intValue() != 0;
+    }
+}
@@ -0,0 +1,79 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Tạo khóa duy nhất uk_inventory_row cho bảng inventory để mỗi (kho, vật tư, sản phẩm, trạng thái, đơn hàng) chỉ có
+ * một dòng. MySQL coi các giá trị NULL là khác nhau trong unique index nên khóa được dựng trên các cột sinh
+ * COALESCE(..., 0) thay vì trực tiếp trên material_id/product_id/order_id. Các dòng trùng có sẵn được gộp trước khi tạo khóa.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class InventoryUniqueKeyInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryUniqueKeyInitializer.class);
+
+    public static final String UNIQUE_KEY = "uk_inventory_row";
+
+    // cột sinh -> cột gốc
+    private static final Map<String, String> KEY_COLUMNS = Map.of(
+            "material_key", "material_id",
+            "product_key", "product_id",
+            "order_key", "order_id"
+    );
+
+    private static final String KEY_GROUP = "warehouse_id, material_key, product_key, status, order_key";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void ensureUniqueKey() {
+        KEY_COLUMNS.forEach((keyColumn, sourceColumn) -> {
+            if (!columnExists(keyColumn)) {
+                jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN " + keyColumn
+                        + " BIGINT GENERATED ALWAYS AS (COALESCE(" + sourceColumn + ", 0)) STORED");
+            }
+        });
+        if (indexExists()) {
+            return;
+        }
+
+        // Dồn số lượng của các dòng trùng vào dòng có inventory_id nhỏ nhất rồi xóa phần còn lại
+        int merged = jdbcTemplate.update("UPDATE inventory i JOIN ("
+                + " SELECT MIN(inventory_id) AS keep_id, SUM(quantity) AS total FROM inventory"
+                + " GROUP BY " + KEY_GROUP + " HAVING COUNT(*) > 1) d ON i.inventory_id = d.keep_id"
+                + " SET i.quantity = d.total");
+        int removed = jdbcTemplate.update("DELETE i FROM inventory i JOIN ("
+                + " SELECT " + KEY_GROUP + ", MIN(inventory_id) AS keep_id FROM inventory"
+                + " GROUP BY " + KEY_GROUP + " HAVING COUNT(*) > 1) d"
+                + " ON i.warehouse_id = d.warehouse_id AND i.material_key = d.material_key AND i.product_key = d.product_key"
+                + " AND i.status <=> d.status AND i.order_key = d.order_key AND i.inventory_id <> d.keep_id");
+
+        jdbcTemplate.execute("ALTER TABLE inventory ADD UNIQUE KEY " + UNIQUE_KEY + " (" + KEY_GROUP + ")");
+        logger.info("Created {} after merging {} duplicated inventory keys ({} rows removed)", UNIQUE_KEY, merged, removed);
+    }
+
+    private boolean columnExists(String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns"
+                        + " WHERE table_schema = DATABASE() AND table_name = 'inventory' AND column_name = ?",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+
+    private boolean indexExists() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.statistics"
+                        + " WHERE table_schema = DATABASE() AND table_name = 'inventory' AND index_name = ?",
+                Integer.class, UNIQUE_KEY);
+        return count != null && count > 0;
+    }
+}
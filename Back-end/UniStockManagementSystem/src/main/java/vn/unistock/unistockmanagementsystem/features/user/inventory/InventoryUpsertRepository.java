@@ -0,0 +1,97 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalance;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalanceKey;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Cộng số lượng vào dòng inventory theo khóa duy nhất uk_inventory_row (kho, vật tư, sản phẩm, trạng thái, đơn hàng)
+ * bằng INSERT ... ON DUPLICATE KEY UPDATE: dòng chưa có thì được tạo, đã có thì cộng dồn, không cần đọc trước.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryUpsertRepository {
+    private static final int BATCH_SIZE = 100;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO inventory (warehouse_id, material_id, product_id, status, order_id, quantity, last_updated)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), last_updated = VALUES(last_updated),
+                version = version + 1
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryBalanceService inventoryBalanceService;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Delta {
+        private Long warehouseId;
+        private Long materialId;
+        private Long productId;
+        private Inventory.InventoryStatus status;
+        private Long salesOrderId; // chỉ có giá trị khi status = RESERVED
+        private double quantity;
+        private LocalDateTime lastUpdated;
+    }
+
+    /**
+     * Ghi toàn bộ thay đổi trong một batch; các thay đổi cùng khóa được gộp trước để mỗi dòng chỉ bị ghi một lần.
+     */
+    public void addQuantities(Collection<Delta> deltas) {
+        Map<List<Object>, Delta> merged = new LinkedHashMap<>();
+        for (Delta delta : deltas) {
+            List<Object> key = Arrays.asList(delta.warehouseId, delta.materialId, delta.productId, delta.status, delta.salesOrderId);
+            merged.merge(key, delta, (a, b) -> new Delta(a.warehouseId, a.materialId, a.productId, a.status, a.salesOrderId,
+                    a.quantity + b.quantity, latest(a.lastUpdated, b.lastUpdated)));
+        }
+        if (merged.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_SQL, merged.values(), BATCH_SIZE, (ps, delta) -> {
+            ps.setLong(1, delta.warehouseId);
+            setNullableLong(ps, 2, delta.materialId);
+            setNullableLong(ps, 3, delta.productId);
+            ps.setString(4, delta.status.name());
+            setNullableLong(ps, 5, delta.salesOrderId);
+            ps.setDouble(6, delta.quantity);
+            ps.setTimestamp(7, Timestamp.valueOf(delta.lastUpdated != null ? delta.lastUpdated : LocalDateTime.now()));
+        });
+
+        Map<InventoryBalanceKey, Double> balanceDeltas = new HashMap<>();
+        for (Delta delta : merged.values()) {
+            InventoryBalanceKey key = delta.materialId != null
+                    ? new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, delta.materialId, delta.warehouseId, delta.status)
+                    : new InventoryBalanceKey(InventoryBalance.ItemType.PRODUCT, delta.productId, delta.warehouseId, delta.status);
+            balanceDeltas.merge(key, delta.quantity, Double::sum);
+        }
+        inventoryBalanceService.applyDeltas(balanceDeltas);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
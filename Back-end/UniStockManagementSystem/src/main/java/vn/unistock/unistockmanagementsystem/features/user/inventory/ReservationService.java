@@ -0,0 +1,243 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.EntityManager;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.unistock.unistockmanagementsystem.entities.*;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflict;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Giữ hàng và nhả hàng theo đơn bán. Các dòng RESERVED được tra theo order_id (idx_inventory_order_status) nên chỉ
+ * đụng tới hàng giữ của đúng đơn đó. Mọi lần cộng số lượng vào dòng đích đều đi qua upsert theo khóa duy nhất
+ * của inventory, nên không còn cảnh xóa dòng về 0 rồi tạo lại.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReservationService {
+    private static final Logger logger = LoggerFactory.getLogger(ReservationService.class);
+    private static final int BATCH_SIZE = 100;
+
+    private static final String TAKE_AVAILABLE_SQL =
+            "UPDATE inventory SET quantity = quantity - ?, last_updated = ?, version = version + 1 WHERE inventory_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final InventoryBalanceService inventoryBalanceService;
+    private final InventoryUpsertRepository inventoryUpsertRepository;
+
+    @Getter
+    public static class ReserveLine {
+        private final Long warehouseId; // null: lấy lần lượt từ mọi kho theo thứ tự dòng tồn cũ nhất
+        private final Long materialId;
+        private final Long productId;
+        private final double quantity;
+        private double reservedQuantity;
+
+        public ReserveLine(Long warehouseId, Long materialId, Long productId, double quantity) {
+            this.warehouseId = warehouseId;
+            this.materialId = materialId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public double getShortfall() {
+            return quantity - reservedQuantity;
+        }
+    }
+
+    /**
+     * Giữ hàng cho đơn: khóa một lần mọi dòng AVAILABLE của các hàng hóa liên quan, chia số lượng trong bộ nhớ,
+     * trừ AVAILABLE bằng một batch UPDATE và cộng vào RESERVED của đơn bằng một batch upsert.
+     * Phần không giữ được được trả về qua {@link ReserveLine#getShortfall()} để nơi gọi tự quyết định có báo lỗi không.
+     */
+    @RetryOnConflict
+    @Transactional
+    public void reserve(Long salesOrderId, List<ReserveLine> lines) {
+        if (salesOrderId == null || lines.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+
+        Set<Long> materialIds = new LinkedHashSet<>();
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (ReserveLine line : lines) {
+            if (line.materialId != null) {
+                materialIds.add(line.materialId);
+            } else {
+                productIds.add(line.productId);
+            }
+        }
+        List<Object> args = new ArrayList<>();
+        List<String> itemConditions = new ArrayList<>();
+        if (!materialIds.isEmpty()) {
+            itemConditions.add("material_id IN (" + placeholders(materialIds.size()) + ")");
+            args.addAll(materialIds);
+        }
+        if (!productIds.isEmpty()) {
+            itemConditions.add("product_id IN (" + placeholders(productIds.size()) + ")");
+            args.addAll(productIds);
+        }
+
+        List<InventoryRow> availableRows = jdbcTemplate.query(
+                "SELECT inventory_id, warehouse_id, material_id, product_id, quantity FROM inventory"
+                        + " WHERE status = 'AVAILABLE' AND order_id IS NULL AND quantity > 0"
+                        + " AND (" + String.join(" OR ", itemConditions) + ")"
+                        + " ORDER BY inventory_id FOR UPDATE",
+                (rs, rowNum) -> new InventoryRow(
+                        rs.getLong("inventory_id"),
+                        rs.getLong("warehouse_id"),
+                        rs.getObject("material_id", Long.class),
+                        rs.getObject("product_id", Long.class),
+                        rs.getDouble("quantity")),
+                args.toArray());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<InventoryUpsertRepository.Delta> reserved = new ArrayList<>();
+        for (ReserveLine line : lines) {
+            double remaining = line.quantity;
+            for (InventoryRow row : availableRows) {
+                if (remaining <= 0) break;
+                if (!Objects.equals(row.materialId, line.materialId) || !Objects.equals(row.productId, line.productId)) continue;
+                if (line.warehouseId != null && row.warehouseId != line.warehouseId) continue;
+
+                double take = Math.min(row.quantity, remaining);
+                if (take <= 0) continue;
+                row.quantity -= take;
+                row.taken += take;
+                remaining -= take;
+                reserved.add(new InventoryUpsertRepository.Delta(row.warehouseId, row.materialId, row.productId,
+                        Inventory.InventoryStatus.RESERVED, salesOrderId, take, now));
+            }
+            line.reservedQuantity = line.quantity - remaining;
+        }
+
+        List<InventoryRow> takenRows = availableRows.stream().filter(r -> r.taken > 0).toList();
+        jdbcTemplate.batchUpdate(TAKE_AVAILABLE_SQL, takenRows, BATCH_SIZE, (ps, row) -> {
+            ps.setDouble(1, row.taken);
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            ps.setLong(3, row.inventoryId);
+        });
+        Map<InventoryBalanceKey, Double> deltas = new HashMap<>();
+        for (InventoryRow row : takenRows) {
+            deltas.merge(balanceKey(itemKey(row), Inventory.InventoryStatus.AVAILABLE), -row.taken, Double::sum);
+        }
+        inventoryBalanceService.applyDeltas(deltas);
+        inventoryUpsertRepository.addQuantities(reserved);
+
+        logger.info("Reserved {} lines for sales order {} from {} available rows", lines.size(), salesOrderId, takenRows.size());
+    }
+
+    /**
+     * Nhả toàn bộ sản phẩm và vật tư đang giữ cho đơn hàng.
+     */
+    @RetryOnConflict
+    @Transactional
+    public void releaseAll(Long salesOrderId) {
+        release(salesOrderId, "1 = 1", List.of());
+    }
+
+    /**
+     * Nhả toàn bộ sản phẩm đang giữ cho đơn hàng.
+     */
+    @RetryOnConflict
+    @Transactional
+    public void releaseProducts(Long salesOrderId) {
+        release(salesOrderId, "product_id IS NOT NULL", List.of());
+    }
+
+    /**
+     * Nhả vật tư đang giữ cho đơn hàng, chỉ trong danh sách materialIds nếu được truyền vào.
+     */
+    @RetryOnConflict
+    @Transactional
+    public void releaseMaterials(Long salesOrderId, Collection<Long> materialIds) {
+        if (materialIds == null) {
+            release(salesOrderId, "material_id IS NOT NULL", List.of());
+        } else if (!materialIds.isEmpty()) {
+            release(salesOrderId, "material_id IN (" + placeholders(materialIds.size()) + ")", new ArrayList<>(materialIds));
+        }
+    }
+
+    private void release(Long salesOrderId, String itemCondition, List<Object> itemArgs) {
+        if (salesOrderId == null) {
+            return;
+        }
+        // Đẩy các thay đổi inventory đang chờ trong persistence context xuống trước khi thao tác bằng JDBC
+        entityManager.flush();
+
+        List<Object> args = new ArrayList<>();
+        args.add(salesOrderId);
+        args.addAll(itemArgs);
+        String reservedCondition = "order_id = ? AND status = 'RESERVED' AND " + itemCondition;
+
+        List<InventoryRow> reservedRows = jdbcTemplate.query(
+                "SELECT inventory_id, warehouse_id, material_id, product_id, quantity FROM inventory WHERE "
+                        + reservedCondition + " ORDER BY inventory_id FOR UPDATE",
+                (rs, rowNum) -> new InventoryRow(
+                        rs.getLong("inventory_id"),
+                        rs.getLong("warehouse_id"),
+                        rs.getObject("material_id", Long.class),
+                        rs.getObject("product_id", Long.class),
+                        rs.getDouble("quantity")),
+                args.toArray());
+        if (reservedRows.isEmpty()) {
+            return;
+        }
+
+        int deleted = jdbcTemplate.update("DELETE FROM inventory WHERE " + reservedCondition, args.toArray());
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<InventoryBalanceKey, Double> deltas = new HashMap<>();
+        List<InventoryUpsertRepository.Delta> available = new ArrayList<>();
+        for (InventoryRow row : reservedRows) {
+            deltas.merge(balanceKey(itemKey(row), Inventory.InventoryStatus.RESERVED), -row.quantity, Double::sum);
+            available.add(new InventoryUpsertRepository.Delta(row.warehouseId, row.materialId, row.productId,
+                    Inventory.InventoryStatus.AVAILABLE, null, row.quantity, now));
+        }
+        inventoryBalanceService.applyDeltas(deltas);
+        // Cộng dồn vào AVAILABLE cùng kho bằng upsert, dòng chưa có thì được tạo mới
+        inventoryUpsertRepository.addQuantities(available);
+
+        logger.info("Released {} reserved inventory rows of sales order {}", deleted, salesOrderId);
+    }
+
+    private static List<Long> itemKey(InventoryRow row) {
+        return Arrays.asList(row.warehouseId, row.materialId, row.productId);
+    }
+
+    private static InventoryBalanceKey balanceKey(List<Long> itemKey, Inventory.InventoryStatus status) {
+        return itemKey.get(1) != null
+                ? new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, itemKey.get(1), itemKey.get(0), status)
+                : new InventoryBalanceKey(InventoryBalance.ItemType.PRODUCT, itemKey.get(2), itemKey.get(0), status);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static class InventoryRow {
+        private final long inventoryId;
+        private final long warehouseId;
+        private final Long materialId;
+        private final Long productId;
+        private double quantity;
+        private double taken;
+
+        private InventoryRow(long inventoryId, long warehouseId, Long materialId, Long productId, double quantity) {
+            this.inventoryId = inventoryId;
+            this.warehouseId = warehouseId;
+            this.materialId = materialId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockMovementReportFilter {
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    private String itemType; // "PRODUCT" hoặc "MATERIAL"
+    private Boolean hasMovementOnly;
+    private String search;
+    private Double minBegin;
+    private Double maxBegin;
+    private Double minIn;
+    private Double maxIn;
+    private Double minOut;
+    private Double maxOut;
+    private Double minEnd;
+    private Double maxEnd;
+}
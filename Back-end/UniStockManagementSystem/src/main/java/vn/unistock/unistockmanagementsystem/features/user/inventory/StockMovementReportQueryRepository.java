@@ -0,0 +1,143 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.utils.SqlLike;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Báo cáo xuất nhập tồn dạng set-based: ghép danh mục hàng hóa với tồn đầu kỳ và phát sinh trong kỳ,
+ * lọc và phân trang ngay trong SQL nên chỉ các dòng của trang hiện tại được đọc lên.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockMovementReportQueryRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryClosingBalanceService inventoryClosingBalanceService;
+
+    private static final String PRODUCT_ITEMS_SQL = """
+            SELECT 'PRODUCT' AS item_type, p.product_id AS item_id, p.product_code AS item_code,
+                   p.product_name AS item_name, u.unit_name AS unit_name
+            FROM products p
+            LEFT JOIN units u ON u.unit_id = p.unit_id
+            """;
+
+    private static final String MATERIAL_ITEMS_SQL = """
+            SELECT 'MATERIAL' AS item_type, m.material_id AS item_id, m.material_code AS item_code,
+                   m.material_name AS item_name, u.unit_name AS unit_name
+            FROM materials m
+            LEFT JOIN units u ON u.unit_id = m.unit_id
+            """;
+
+    private static final String MOVEMENT_SQL = """
+            SELECT CASE WHEN t.product_id IS NOT NULL THEN 'PRODUCT' ELSE 'MATERIAL' END AS item_type,
+                   COALESCE(t.product_id, t.material_id) AS item_id,
+                   SUM(CASE WHEN t.transaction_type = 'IMPORT' THEN t.quantity ELSE 0 END) AS in_qty,
+                   SUM(CASE WHEN t.transaction_type = 'IMPORT' THEN 0 ELSE t.quantity END) AS out_qty
+            FROM inventory_transaction t
+            WHERE (t.product_id IS NOT NULL OR t.material_id IS NOT NULL)
+              AND (? IS NULL OR t.transaction_date >= ?)
+              AND (? IS NULL OR t.transaction_date <= ?)
+            GROUP BY item_type, item_id
+            """;
+
+    private static final String NO_OPENING_SQL =
+            "SELECT 'PRODUCT' AS item_type, 0 AS item_id, 0 AS quantity FROM DUAL WHERE 1 = 0";
+
+    public Page<StockMovementReportDTO> findReport(StockMovementReportFilter filter, Pageable pageable) {
+        List<Object> args = new ArrayList<>();
+        String reportSql = buildReportSql(filter, args);
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (" + reportSql + ") c", Long.class, args.toArray());
+        if (total == null || total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total != null ? total : 0);
+        }
+
+        args.add(pageable.getPageSize());
+        args.add(pageable.getOffset());
+        List<StockMovementReportDTO> content = jdbcTemplate.query(
+                reportSql + " ORDER BY r.item_type DESC, r.item_id LIMIT ? OFFSET ?",
+                (rs, rowNum) -> new StockMovementReportDTO(
+                        rs.getString("item_code"),
+                        rs.getString("item_name"),
+                        rs.getString("unit_name"),
+                        rs.getString("item_type"),
+                        rs.getDouble("begin_qty"),
+                        rs.getDouble("in_qty"),
+                        rs.getDouble("out_qty"),
+                        rs.getDouble("end_qty")),
+                args.toArray());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private String buildReportSql(StockMovementReportFilter filter, List<Object> args) {
+        String itemsSql;
+        if ("MATERIAL".equalsIgnoreCase(filter.getItemType())) {
+            itemsSql = MATERIAL_ITEMS_SQL;
+        } else if ("PRODUCT".equalsIgnoreCase(filter.getItemType())) {
+            itemsSql = PRODUCT_ITEMS_SQL;
+        } else {
+            itemsSql = PRODUCT_ITEMS_SQL + " UNION ALL " + MATERIAL_ITEMS_SQL;
+        }
+
+        String openingSql;
+        if (filter.getStartDate() != null) {
+            openingSql = inventoryClosingBalanceService.openingBalanceSql();
+            args.addAll(Arrays.asList(inventoryClosingBalanceService.openingBalanceArgs(filter.getStartDate())));
+        } else {
+            openingSql = NO_OPENING_SQL;
+        }
+
+        Timestamp start = filter.getStartDate() != null ? Timestamp.valueOf(filter.getStartDate()) : null;
+        Timestamp end = filter.getEndDate() != null ? Timestamp.valueOf(filter.getEndDate()) : null;
+        args.addAll(Arrays.asList(start, start, end, end));
+
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT r.* FROM (")
+                .append(" SELECT i.item_type, i.item_id, i.item_code, i.item_name, i.unit_name,")
+                .append(" COALESCE(b.quantity, 0) AS begin_qty,")
+                .append(" COALESCE(mv.in_qty, 0) AS in_qty,")
+                .append(" COALESCE(mv.out_qty, 0) AS out_qty,")
+                .append(" COALESCE(b.quantity, 0) + COALESCE(mv.in_qty, 0) - COALESCE(mv.out_qty, 0) AS end_qty")
+                .append(" FROM (").append(itemsSql).append(") i")
+                .append(" LEFT JOIN (").append(openingSql).append(") b ON b.item_type = i.item_type AND b.item_id = i.item_id")
+                .append(" LEFT JOIN (").append(MOVEMENT_SQL).append(") mv ON mv.item_type = i.item_type AND mv.item_id = i.item_id");
+
+        if (filter.getSearch() != null && !filter.getSearch().isEmpty()) {
+            String pattern = SqlLike.contains(filter.getSearch().toLowerCase());
+            sql.append(" WHERE (LOWER(i.item_code) LIKE ?").append(SqlLike.ESCAPE)
+                    .append(" OR LOWER(i.item_name) LIKE ?").append(SqlLike.ESCAPE).append(")");
+            args.add(pattern);
+            args.add(pattern);
+        }
+        sql.append(") r WHERE 1 = 1");
+
+        if (Boolean.TRUE.equals(filter.getHasMovementOnly())) {
+            sql.append(" AND (r.in_qty > 0 OR r.out_qty > 0)");
+        }
+        addRange(sql, args, "r.begin_qty", filter.getMinBegin(), filter.getMaxBegin());
+        addRange(sql, args, "r.in_qty", filter.getMinIn(), filter.getMaxIn());
+        addRange(sql, args, "r.out_qty", filter.getMinOut(), filter.getMaxOut());
+        addRange(sql, args, "r.end_qty", filter.getMinEnd(), filter.getMaxEnd());
+        return sql.toString();
+    }
+
+    private void addRange(StringBuilder sql, List<Object> args, String column, Double min, Double max) {
+        if (min != null) {
+            sql.append(" AND ").append(column).append(" >= ?");
+            args.add(min);
+        }
+        if (max != null) {
+            sql.append(" AND ").append(column).append(" <= ?");
+            args.add(max);
+        }
+    }
+}
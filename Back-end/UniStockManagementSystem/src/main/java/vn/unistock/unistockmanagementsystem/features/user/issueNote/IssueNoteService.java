@@ -16,17 +16,19 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryTransactionRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryDeltaEngine;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.ReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
-import vn.unistock.unistockmanagementsystem.features.user.notification.NotificationService;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.receiptnote.PaperEvidenceRepository;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
 import vn.unistock.unistockmanagementsystem.features.user.warehouse.WarehouseRepository;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.IdCollections;
 import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflict;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflictAspect;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -34,6 +36,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,9 +45,6 @@ import java.util.stream.Collectors;
 public class IssueNoteService {
     private static final Logger logger = LoggerFactory.getLogger(IssueNoteService.class);
 
-    @Autowired
-    private NotificationService notificationService;
-
     @Autowired
     private IssueNoteRepository issueNoteRepository;
 
@@ -51,10 +52,10 @@ public class IssueNoteService {
     private IssueNoteDetailRepository issueNoteDetailRepository;
 
     @Autowired
-    private InventoryRepository inventoryRepository;
+    private InventoryDeltaEngine inventoryDeltaEngine;
 
     @Autowired
-    private InventoryTransactionRepository inventoryTransactionRepository;
+    private ReservationService reservationService;
 
     @Autowired
     private WarehouseRepository warehouseRepository;
@@ -106,6 +107,7 @@ public class IssueNoteService {
         return notes.map(issueNoteMapper::toDTO);
     }
 
+    @RetryOnConflict
     @Transactional
     public IssueNoteDTO createGoodIssue(IssueNoteDTO issueNoteDto) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -146,15 +148,29 @@ public class IssueNoteService {
 
             issueNote = issueNoteRepository.save(issueNote);
 
-            for (IssueNoteDetailDTO detailDto : issueNoteDto.getDetails()) {
-                logger.info("⏳ Processing export detail: {}", detailDto);
+            // Nạp một lần toàn bộ kho, đơn vị, vật tư, sản phẩm được tham chiếu trong phiếu
+            List<IssueNoteDetailDTO> detailDtos = issueNoteDto.getDetails();
+            Map<Long, Warehouse> warehouses = warehouseRepository.findAllById(IdCollections.idsOf(detailDtos, IssueNoteDetailDTO::getWarehouseId))
+                    .stream().collect(Collectors.toMap(Warehouse::getWarehouseId, Function.identity()));
+            Map<Long, Unit> units = unitRepository.findAllById(IdCollections.idsOf(detailDtos, IssueNoteDetailDTO::getUnitId))
+                    .stream().collect(Collectors.toMap(Unit::getUnitId, Function.identity()));
+            Map<Long, Material> materials = materialRepository.findAllById(IdCollections.idsOf(detailDtos, IssueNoteDetailDTO::getMaterialId))
+                    .stream().collect(Collectors.toMap(Material::getMaterialId, Function.identity()));
+            Map<Long, Product> products = productRepository.findAllById(IdCollections.idsOf(detailDtos, IssueNoteDetailDTO::getProductId))
+                    .stream().collect(Collectors.toMap(Product::getProductId, Function.identity()));
+
+            List<InventoryDeltaEngine.ExportLine> exportLines = new ArrayList<>();
+            for (IssueNoteDetailDTO detailDto : detailDtos) {
+                logger.debug("⏳ Processing export detail: {}", detailDto);
 
                 if (detailDto.getWarehouseId() == null) {
                     throw new RuntimeException("warehouseId is required");
                 }
 
-                Warehouse warehouse = warehouseRepository.findById(detailDto.getWarehouseId())
-                        .orElseThrow(() -> new RuntimeException("Warehouse not found with ID: " + detailDto.getWarehouseId()));
+                Warehouse warehouse = warehouses.get(detailDto.getWarehouseId());
+                if (warehouse == null) {
+                    throw new RuntimeException("Warehouse not found with ID: " + detailDto.getWarehouseId());
+                }
 
                 GoodIssueDetail detail = GoodIssueDetail.builder()
                         .warehouse(warehouse)
@@ -163,29 +179,35 @@ public class IssueNoteService {
                         .build();
 
                 if (detailDto.getUnitId() != null) {
-                    Unit unit = unitRepository.findById(detailDto.getUnitId())
-                            .orElseThrow(() -> new RuntimeException("Unit not found with ID: " + detailDto.getUnitId()));
+                    Unit unit = units.get(detailDto.getUnitId());
+                    if (unit == null) {
+                        throw new RuntimeException("Unit not found with ID: " + detailDto.getUnitId());
+                    }
                     detail.setUnit(unit);
                 }
 
                 if (detailDto.getMaterialId() != null) {
-                    Material material = materialRepository.findById(detailDto.getMaterialId())
-                            .orElseThrow(() -> new RuntimeException("Material not found with ID: " + detailDto.getMaterialId()));
+                    Material material = materials.get(detailDto.getMaterialId());
+                    if (material == null) {
+                        throw new RuntimeException("Material not found with ID: " + detailDto.getMaterialId());
+                    }
                     detail.setMaterial(material);
                     if (detail.getUnit() == null) {
                         detail.setUnit(material.getUnit());
                     }
-                    updateInventoryAndTransactionForExport(warehouse, material, null, detailDto.getQuantity(), issueNote, hasSalesOrder);
-                    // ✅ Thêm dòng này để kiểm tra tồn kho thấp
-                    notificationService.checkLowStock(material.getMaterialId());
+                    exportLines.add(new InventoryDeltaEngine.ExportLine(
+                            warehouse.getWarehouseId(), material.getMaterialId(), null, detailDto.getQuantity()));
                 } else if (detailDto.getProductId() != null) {
-                    Product product = productRepository.findById(detailDto.getProductId())
-                            .orElseThrow(() -> new RuntimeException("Product not found with ID: " + detailDto.getProductId()));
+                    Product product = products.get(detailDto.getProductId());
+                    if (product == null) {
+                        throw new RuntimeException("Product not found with ID: " + detailDto.getProductId());
+                    }
                     detail.setProduct(product);
                     if (detail.getUnit() == null) {
                         detail.setUnit(product.getUnit());
                     }
-                    updateInventoryAndTransactionForExport(warehouse, null, product, detailDto.getQuantity(), issueNote, hasSalesOrder);
+                    exportLines.add(new InventoryDeltaEngine.ExportLine(
+                            warehouse.getWarehouseId(), null, product.getProductId(), detailDto.getQuantity()));
                 } else {
                     throw new RuntimeException("Phải có thông tin về vật tư hoặc sản phẩm để xuất kho");
                 }
@@ -193,6 +215,9 @@ public class IssueNoteService {
                 issueNote.getDetails().add(detail);
             }
 
+            // Khóa, kiểm tra và ghi toàn bộ tồn kho + thẻ kho của phiếu trong một lượt
+            inventoryDeltaEngine.postExport(issueNote, exportLines);
+
             issueNoteDetailRepository.saveAll(issueNote.getDetails());
 
             if (hasSalesOrder) {
@@ -268,58 +293,8 @@ public class IssueNoteService {
                     if (allProductsFulfilled) {
                         salesOrder.setStatus(SalesOrder.OrderStatus.COMPLETED);
                         logger.debug("SalesOrder ID {} updated to COMPLETED (all products fulfilled)", salesOrder.getOrderId());
-                        List<SalesOrderDetail> orderDetails = salesOrder.getDetails();
-                        for (SalesOrderDetail detail : orderDetails) {
-                            Product product = detail.getProduct();
-                            double quantityToRelease = detail.getQuantity();
-                            List<Inventory> reservedInventories = inventoryRepository.findByProductIdAndStatus(
-                                    product.getProductId(), Inventory.InventoryStatus.RESERVED);
-                            Map<Long, Double> warehouseQuantities = new HashMap<>();
-                            for (Inventory inventory : reservedInventories) {
-                                if (quantityToRelease <= 0) break;
-                                double quantityInInventory = inventory.getQuantity();
-                                double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-                                Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                                warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-                                quantityToRelease -= quantityToReleaseFromThis;
-                            }
-                            for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                                Long warehouseId = entry.getKey();
-                                double releasedQuantity = entry.getValue();
-                                Warehouse warehouse = reservedInventories.stream()
-                                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                        .findFirst()
-                                        .map(Inventory::getWarehouse)
-                                        .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-                                Inventory availableInventory = inventoryRepository.findByWarehouseAndProductAndStatus(
-                                                warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                                        .orElse(null);
-                                if (availableInventory == null) {
-                                    availableInventory = Inventory.builder()
-                                            .warehouse(warehouse)
-                                            .product(product)
-                                            .status(Inventory.InventoryStatus.AVAILABLE)
-                                            .quantity(0.0)
-                                            .build();
-                                }
-                                availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                                availableInventory.setLastUpdated(LocalDateTime.now());
-                                availableInventory.setSalesOrder(null);
-                                inventoryRepository.save(availableInventory);
-                                logger.debug("Updated Inventory for Product ID {} in Warehouse ID {}: Added {} to AVAILABLE, salesOrder removed",
-                                        product.getProductId(), warehouseId, releasedQuantity);
-                                List<Inventory> reservedToDelete = reservedInventories.stream()
-                                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                        .toList();
-                                inventoryRepository.deleteAll(reservedToDelete);
-                                logger.debug("Deleted {} RESERVED Inventory records for Product ID {} in Warehouse ID {}",
-                                        reservedToDelete.size(), product.getProductId(), warehouseId);
-                            }
-                            if (quantityToRelease > 0) {
-                                logger.warn("Insufficient RESERVED inventory for Product ID {}: {} units remaining",
-                                        product.getProductId(), quantityToRelease);
-                            }
-                        }
+                        // Đơn đã xuất đủ: phần sản phẩm còn giữ cho đơn được trả về AVAILABLE
+                        reservationService.releaseProducts(salesOrder.getOrderId());
                     } else if (isFirstIssuance) {
                         salesOrder.setStatus(SalesOrder.OrderStatus.PARTIALLY_ISSUED);
                         logger.debug("SalesOrder ID {} updated to PARTIALLY_ISSUED (first issuance)", salesOrder.getOrderId());
@@ -367,101 +342,12 @@ public class IssueNoteService {
             issueNote = issueNoteRepository.save(issueNote);
             return issueNoteMapper.toDTO(issueNote);
         } catch (Exception e) {
-            logger.error("❌ Lỗi khi tạo phiếu xuất kho: {}", e.getMessage(), e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lưu phiếu xuất: " + e.getMessage());
-        }
-    }
-
-    private void updateInventoryAndTransactionForExport(Warehouse warehouse, Material material, Product product, Double quantity, GoodIssueNote issueNote, boolean hasSalesOrder) {
-        Inventory inventory = null;
-        SalesOrder salesOrder = hasSalesOrder ? issueNote.getSalesOrder() : null;
-
-        if (material != null) {
-            Inventory.InventoryStatus status = hasSalesOrder ? Inventory.InventoryStatus.RESERVED : Inventory.InventoryStatus.AVAILABLE;
-
-            if (hasSalesOrder) {
-                inventory = inventoryRepository.findByWarehouseAndMaterialAndStatusAndSalesOrder(warehouse, material, Inventory.InventoryStatus.RESERVED, salesOrder)
-                        .filter(i -> i.getQuantity() >= quantity)
-                        .orElse(null);
-                logger.debug("Material [{}] - Warehouse [{}]: Tried RESERVED with SalesOrder [{}], found inventory = {}",
-                        material.getMaterialId(), warehouse.getWarehouseId(), salesOrder != null ? salesOrder.getOrderId() : "null",
-                        inventory != null ? inventory.getQuantity() : "null");
-            }
-
-            if (inventory == null) {
-                inventory = inventoryRepository.findByWarehouseAndMaterialAndStatus(warehouse, material, Inventory.InventoryStatus.AVAILABLE)
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy tồn kho AVAILABLE cho vật tư có ID: " + material.getMaterialId()));
-                status = Inventory.InventoryStatus.AVAILABLE;
-                logger.debug("Material [{}] - Warehouse [{}]: Fell back to AVAILABLE", material.getMaterialId(), warehouse.getWarehouseId());
+            if (RetryOnConflictAspect.isConflict(e)) {
+                // Xung đột tồn kho (kể cả OptimisticLockException chưa được Spring dịch): để @RetryOnConflict chạy lại phiếu
+                throw e;
             }
-
-            if (inventory.getQuantity() < quantity) {
-                throw new RuntimeException("Không đủ số lượng tồn kho " + status + " cho vật tư có ID: " + material.getMaterialId());
-            }
-
-            inventory.setQuantity(inventory.getQuantity() - quantity);
-            inventory.setLastUpdated(issueNote.getIssueDate());
-            if (status == Inventory.InventoryStatus.RESERVED && hasSalesOrder) {
-                inventory.setSalesOrder(salesOrder);
-            }
-            inventoryRepository.save(inventory);
-            logger.debug("Material [{}] - Warehouse [{}]: New inventory quantity = {}", material.getMaterialId(), warehouse.getWarehouseId(), inventory.getQuantity());
-
-            InventoryTransaction transaction = InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .material(material)
-                    .transactionType(InventoryTransaction.TransactionType.EXPORT)
-                    .quantity(quantity)
-                    .goodIssueNote(issueNote)
-                    .transactionDate(issueNote.getIssueDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_ISSUE_NOTE)
-                    .build();
-            inventoryTransactionRepository.save(transaction);
-            logger.info("Created export transaction for material ID {}", material.getMaterialId());
-        }
-
-        if (product != null) {
-            Inventory.InventoryStatus status = hasSalesOrder ? Inventory.InventoryStatus.RESERVED : Inventory.InventoryStatus.AVAILABLE;
-
-            if (hasSalesOrder) {
-                inventory = inventoryRepository.findByWarehouseAndProductAndStatusAndSalesOrder(warehouse, product, Inventory.InventoryStatus.RESERVED, salesOrder)
-                        .filter(i -> i.getQuantity() >= quantity)
-                        .orElse(null);
-                logger.debug("Product [{}] - Warehouse [{}]: Tried RESERVED with SalesOrder [{}], found inventory = {}",
-                        product.getProductId(), warehouse.getWarehouseId(), salesOrder != null ? salesOrder.getOrderId() : "null",
-                        inventory != null ? inventory.getQuantity() : "null");
-            }
-
-            if (inventory == null) {
-                inventory = inventoryRepository.findByWarehouseAndProductAndStatus(warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy tồn kho AVAILABLE cho sản phẩm có ID: " + product.getProductId()));
-                status = Inventory.InventoryStatus.AVAILABLE;
-                logger.debug("Product [{}] - Warehouse [{}]: Fell back to AVAILABLE", product.getProductId(), warehouse.getWarehouseId());
-            }
-
-            if (inventory.getQuantity() < quantity) {
-                throw new RuntimeException("Không đủ số lượng tồn kho " + status + " cho sản phẩm có ID: " + product.getProductId());
-            }
-
-            inventory.setQuantity(inventory.getQuantity() - quantity);
-            inventory.setLastUpdated(LocalDateTime.now());
-            if (status == Inventory.InventoryStatus.RESERVED && hasSalesOrder) {
-                inventory.setSalesOrder(salesOrder);
-            }
-            inventoryRepository.save(inventory);
-            logger.debug("Product [{}] - Warehouse [{}]: New inventory quantity = {}", product.getProductId(), warehouse.getWarehouseId(), inventory.getQuantity());
-
-            InventoryTransaction transaction = InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .product(product)
-                    .transactionType(InventoryTransaction.TransactionType.EXPORT)
-                    .quantity(quantity)
-                    .goodIssueNote(issueNote)
-                    .transactionDate(issueNote.getIssueDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_ISSUE_NOTE)
-                    .build();
-            inventoryTransactionRepository.save(transaction);
-            logger.info("Created export transaction for product ID {}", product.getProductId());
+            logger.error("❌ Lỗi khi tạo phiếu xuất kho: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lưu phiếu xuất: " + e.getMessage(), e);
         }
     }
 
@@ -572,4 +458,4 @@ public class IssueNoteService {
                 })
                 .toList();
     }
-}
\ No newline at end of file
+}
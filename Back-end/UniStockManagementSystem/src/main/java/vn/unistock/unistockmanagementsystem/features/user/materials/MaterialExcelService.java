@@ -10,9 +10,11 @@ import vn.unistock.unistockmanagementsystem.entities.*;
 import vn.unistock.unistockmanagementsystem.features.user.materialType.MaterialTypeRepository;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelRowReader;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupContext;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupService;
 
 import java.io.*;
-import java.text.Normalizer;
 import java.util.*;
 
 @Service
@@ -29,38 +31,31 @@ public class MaterialExcelService {
     @Autowired
     private PartnerRepository partnerRepository;
 
-    private String normalize(String input) {
-        if (input == null) return null;
-        return Normalizer.normalize(input.trim(), Normalizer.Form.NFC);
-    }
+    @Autowired
+    private ImportLookupService importLookupService;
+
+    // Mã, tên, đơn vị, danh mục, nhà cung cấp, mô tả
+    private static final int COLUMNS = 6;
 
     public List<MaterialPreviewDTO> previewImportMaterials(MultipartFile file) throws IOException {
-        List<MaterialPreviewDTO> result = new ArrayList<>();
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
+        return previewImportMaterials(file, importLookupService.forMaterials());
+    }
 
+    public List<MaterialPreviewDTO> previewImportMaterials(MultipartFile file, ImportLookupContext lookups) throws IOException {
+        List<MaterialPreviewDTO> result = new ArrayList<>();
         Map<String, Integer> codeToRowMap = new HashMap<>();
-        List<Partner> allSuppliers = partnerRepository.findAllSuppliers();
-
-        System.out.println("🔍 Danh sách nhà cung cấp (DB):");
-        for (Partner p : allSuppliers) {
-            System.out.println(" - " + p.getPartnerName());
-        }
-
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
 
+        ExcelRowReader.read(file, COLUMNS, (rowNum, cells) -> {
             MaterialPreviewDTO dto = new MaterialPreviewDTO();
-            dto.setRowIndex(i + 1);
+            dto.setRowIndex(rowNum + 1);
             dto.setValid(true);
 
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String partnerName = getCellValue(row.getCell(4));
-            String description = getCellValue(row.getCell(5));
+            String code = cells[0];
+            String name = cells[1];
+            String unitName = cells[2];
+            String typeName = cells[3];
+            String partnerName = cells[4];
+            String description = cells[5];
 
             dto.setMaterialCode(code);
             dto.setMaterialName(name);
@@ -82,7 +77,7 @@ public class MaterialExcelService {
                 } else {
                     codeToRowMap.put(trimmedCode, dto.getRowIndex());
                 }
-                if (materialsRepository.existsByMaterialCode(trimmedCode)) {
+                if (lookups.codeExists(trimmedCode)) {
                     errors.add("Mã vật tư đã tồn tại trong hệ thống");
                     dto.setValid(false);
                 }
@@ -93,44 +88,28 @@ public class MaterialExcelService {
                 dto.setValid(false);
             }
 
-            Optional<Unit> unit = Optional.empty();
             if (unitName == null || unitName.isEmpty()) {
                 errors.add("Đơn vị không được để trống");
                 dto.setValid(false);
-            } else {
-                unit = unitRepository.findByUnitNameIgnoreCase(unitName.trim());
-                if (unit.isEmpty()) {
-                    errors.add("Đơn vị không tồn tại trong hệ thống");
-                    dto.setValid(false);
-                }
+            } else if (lookups.findUnit(unitName).isEmpty()) {
+                errors.add("Đơn vị không tồn tại trong hệ thống");
+                dto.setValid(false);
             }
 
-            Optional<MaterialType> type = Optional.empty();
             if (typeName == null || typeName.isEmpty()) {
                 errors.add("Danh mục không được để trống");
                 dto.setValid(false);
-            } else {
-                type = materialTypeRepository.findByNameIgnoreCase(typeName.trim());
-                if (type.isEmpty()) {
-                    errors.add("Danh mục không tồn tại trong hệ thống");
-                    dto.setValid(false);
-                }
+            } else if (lookups.findMaterialType(typeName).isEmpty()) {
+                errors.add("Danh mục không tồn tại trong hệ thống");
+                dto.setValid(false);
             }
 
-            Optional<Partner> partner = Optional.empty();
             if (partnerName == null || partnerName.isEmpty()) {
                 errors.add("Tên nhà cung cấp không được để trống");
                 dto.setValid(false);
-            } else {
-                String normalizedPartnerName = normalize(partnerName);
-                System.out.println("📦 Tìm nhà cung cấp cho dòng " + dto.getRowIndex() + ": " + normalizedPartnerName);
-                partner = allSuppliers.stream()
-                        .filter(p -> normalize(p.getPartnerName()).equalsIgnoreCase(normalizedPartnerName))
-                        .findFirst();
-                if (partner.isEmpty()) {
-                    errors.add("Nhà cung cấp không tồn tại hoặc không đúng loại");
-                    dto.setValid(false);
-                }
+            } else if (lookups.findSupplier(partnerName).isEmpty()) {
+                errors.add("Nhà cung cấp không tồn tại hoặc không đúng loại");
+                dto.setValid(false);
             }
 
             if (!errors.isEmpty()) {
@@ -138,57 +117,51 @@ public class MaterialExcelService {
             }
 
             result.add(dto);
-        }
+        });
 
-        workbook.close();
         return result;
     }
 
     public String importMaterials(MultipartFile file) throws IOException {
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
+        return importMaterials(file, importLookupService.forMaterials());
+    }
+
+    public String importMaterials(MultipartFile file, ImportLookupContext lookups) throws IOException {
         List<Material> materials = new ArrayList<>();
 
         Set<String> processedCodes = new HashSet<>();
 
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
-
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String partnerName = getCellValue(row.getCell(4));
-            String description = getCellValue(row.getCell(5));
-
+        ExcelRowReader.read(file, COLUMNS, (rowNum, cells) -> {
+            String code = cells[0];
+            String name = cells[1];
+            String unitName = cells[2];
+            String typeName = cells[3];
+            String partnerName = cells[4];
+            String description = cells[5];
 
             if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) {
-                continue;
+                return;
             }
             if (processedCodes.contains(code.trim())) {
-                continue;
+                return;
             }
-            if (materialsRepository.existsByMaterialCode(code.trim())) {
-                continue;
+            if (lookups.codeExists(code)) {
+                return;
             }
 
-            Optional<Unit> unit = unitRepository.findByUnitNameIgnoreCase(unitName.trim());
+            Optional<Unit> unit = lookups.findUnit(unitName);
             if (unit.isEmpty()) {
-                continue;
+                return;
             }
 
-            Optional<MaterialType> type = materialTypeRepository.findByNameIgnoreCase(typeName.trim());
+            Optional<MaterialType> type = lookups.findMaterialType(typeName);
             if (type.isEmpty()) {
-                continue;
+                return;
             }
 
-            Optional<Partner> partner = partnerRepository.findAllSuppliers()
-                    .stream()
-                    .filter(p -> normalize(p.getPartnerName()).equalsIgnoreCase(normalize(partnerName.trim())))
-                    .findFirst();
+            Optional<Partner> partner = lookups.findSupplier(partnerName);
             if (partner.isEmpty()) {
-                continue;
+                return;
             }
 
             Material material = new Material();
@@ -205,9 +178,8 @@ public class MaterialExcelService {
             material.getMaterialPartners().add(materialPartner);
             materials.add(material);
             processedCodes.add(code.trim());
-        }
+        });
 
-        workbook.close();
         materialsRepository.saveAll(materials);
         return "Import thành công " + materials.size() + " vật tư.";
     }
@@ -308,9 +280,4 @@ public class MaterialExcelService {
         }
     }
 
-    private String getCellValue(Cell cell) {
-        if (cell == null) return null;
-        cell.setCellType(CellType.STRING);
-        return cell.getStringCellValue().trim();
-    }
 }
\ No newline at end of file
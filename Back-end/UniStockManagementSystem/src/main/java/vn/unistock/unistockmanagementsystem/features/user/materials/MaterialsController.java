@@ -9,6 +9,8 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupContext;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupService;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -23,6 +25,7 @@ import java.util.Map;
 public class MaterialsController {
     private final MaterialsService materialsService;
     private final MaterialExcelService materialExcelService;
+    private final ImportLookupService importLookupService;
 
     // 🟢 API lấy tất cả nguyên liệu
     @GetMapping
@@ -150,14 +153,16 @@ public class MaterialsController {
     @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> importMaterials(@RequestParam("file") MultipartFile file) {
         try {
-            List<MaterialPreviewDTO> previewList = materialExcelService.previewImportMaterials(file);
+            // Nạp dữ liệu tra cứu một lần cho cả bước kiểm tra và bước ghi
+            ImportLookupContext lookups = importLookupService.forMaterials();
+            List<MaterialPreviewDTO> previewList = materialExcelService.previewImportMaterials(file, lookups);
             boolean hasErrors = previewList.stream().anyMatch(dto -> !dto.isValid());
             if (hasErrors) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body("❌ File chứa dòng không hợp lệ, không thể import.");
             }
 
-            String result = materialExcelService.importMaterials(file);
+            String result = materialExcelService.importMaterials(file, lookups);
             return ResponseEntity.ok("✅ " + result);
         } catch (Exception e) {
             log.error("❌ Lỗi khi import vật tư:", e);
@@ -14,6 +14,8 @@ import java.util.Optional;
 @Repository
 public interface MaterialsRepository extends JpaRepository<Material, Long> {
     boolean existsByMaterialCode(String materialCode);
+    @Query("SELECT m.materialCode FROM Material m")
+    List<String> findAllMaterialCodes();
     boolean existsByMaterialCodeAndMaterialIdNot(String materialCode, Long materialId);
     Page<Material> findAll(Pageable pageable);
 
@@ -3,6 +3,7 @@ package vn.unistock.unistockmanagementsystem.features.user.materials;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -12,7 +13,7 @@ import vn.unistock.unistockmanagementsystem.entities.Material;
 import vn.unistock.unistockmanagementsystem.entities.MaterialPartner;
 import vn.unistock.unistockmanagementsystem.entities.Partner;
 import vn.unistock.unistockmanagementsystem.features.user.materialType.MaterialTypeRepository;
-import vn.unistock.unistockmanagementsystem.features.user.notification.NotificationService;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryChangedEvent;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
 import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
@@ -20,6 +21,7 @@ import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,7 +35,7 @@ public class MaterialsService {
     private final AzureBlobService azureBlobService;
     private final MaterialPartnerRepository materialPartnerRepository;
     private final PartnerRepository partnerRepository;
-    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // 🟢 Lấy tất cả nguyên liệu có phân trang
     public Page<MaterialsDTO> getAllMaterials(int page, int size, String search, List<Boolean> statuses, List<Long> typeIds) {
@@ -201,8 +203,8 @@ public class MaterialsService {
 
         Material savedMaterial = materialsRepository.save(material);
         log.info("Updated material with imageUrl: {}", savedMaterial.getImageUrl());
-        notificationService.clearLowStockNotificationIfRecovered(savedMaterial.getMaterialId());
-        notificationService.checkLowStock(savedMaterial.getMaterialId());
+        // Ngưỡng tồn thấp có thể vừa đổi ➔ đánh giá lại cảnh báo sau commit
+        eventPublisher.publishEvent(new InventoryChangedEvent(Set.of(savedMaterial.getMaterialId())));
         return materialsMapper.toDTO(savedMaterial);
     }
 
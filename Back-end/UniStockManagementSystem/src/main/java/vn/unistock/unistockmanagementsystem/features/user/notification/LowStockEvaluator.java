@@ -0,0 +1,82 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryChangedEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gom các vật tư vừa đổi tồn (sau commit) vào một tập chờ theo materialId rồi đánh giá tồn thấp trên một luồng nền.
+ * Một đợt ghi kho dồn dập chỉ làm mỗi vật tư được đánh giá một lần, và phiếu nhập/xuất không phải chờ việc này.
+ */
+@Component
+public class LowStockEvaluator {
+    private static final Logger logger = LoggerFactory.getLogger(LowStockEvaluator.class);
+
+    private final NotificationService notificationService;
+    private final long delayMillis;
+    private final int batchSize;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "low-stock-evaluator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LowStockEvaluator(NotificationService notificationService,
+                             @Value("${notification.low-stock.delay-ms:500}") long delayMillis,
+                             @Value("${notification.low-stock.batch-size:500}") int batchSize) {
+        this.notificationService = notificationService;
+        this.delayMillis = delayMillis;
+        this.batchSize = batchSize;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        pending.addAll(event.getMaterialIds());
+        // Chỉ hẹn một lượt xử lý cho cả đợt; các sự kiện tới trong lúc chờ được gộp vào lượt đó
+        if (scheduled.compareAndSet(false, true)) {
+            executor.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void drain() {
+        scheduled.set(false);
+        while (!pending.isEmpty()) {
+            List<Long> batch = new ArrayList<>(batchSize);
+            Iterator<Long> iterator = pending.iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            try {
+                long startedAt = System.nanoTime();
+                notificationService.evaluateLowStock(batch);
+                logger.debug("Evaluated low stock for {} materials in {} ms",
+                        batch.size(), (System.nanoTime() - startedAt) / 1_000_000);
+            } catch (Exception e) {
+                logger.error("Low stock evaluation failed for materials {}", batch, e);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
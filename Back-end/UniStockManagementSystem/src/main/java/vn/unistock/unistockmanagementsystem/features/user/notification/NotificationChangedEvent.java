@@ -0,0 +1,36 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Các thông báo vừa được tạo, cập nhật hoặc đánh dấu đã đọc; được đẩy tới client sau khi transaction commit.
+ * userIds null nghĩa là gửi cho mọi user. resync báo client tải lại inbox thay vì áp từng thông báo.
+ */
+@Getter
+public class NotificationChangedEvent {
+    private final List<NotificationDTO> notifications;
+    private final Set<Long> userIds;
+    private final boolean resync;
+
+    private NotificationChangedEvent(List<NotificationDTO> notifications, Collection<Long> userIds, boolean resync) {
+        this.notifications = List.copyOf(notifications);
+        this.userIds = userIds == null ? null : Set.copyOf(userIds);
+        this.resync = resync;
+    }
+
+    public static NotificationChangedEvent toAll(List<NotificationDTO> notifications) {
+        return new NotificationChangedEvent(notifications, null, false);
+    }
+
+    public static NotificationChangedEvent toUsers(List<NotificationDTO> notifications, Collection<Long> userIds) {
+        return new NotificationChangedEvent(notifications, userIds, false);
+    }
+
+    public static NotificationChangedEvent resync(Long userId) {
+        return new NotificationChangedEvent(List.of(), List.of(userId), true);
+    }
+}
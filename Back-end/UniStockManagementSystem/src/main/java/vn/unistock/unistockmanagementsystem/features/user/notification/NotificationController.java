@@ -2,10 +2,18 @@ package vn.unistock.unistockmanagementsystem.features.user.notification;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -14,15 +22,55 @@ import java.util.List;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationPushService notificationPushService;
 
+    // Inbox phân trang keyset: truyền nextCursor của trang trước vào cursor để lấy trang sau
+    @GetMapping("/inbox")
+    public ResponseEntity<NotificationInboxDTO> getInbox(
+            @RequestParam(defaultValue = "true") boolean unreadOnly,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(notificationService.getInbox(currentUserId(), unreadOnly, cursor, size));
+    }
+
+    // Trang đầu các thông báo chưa đọc (giữ cho client cũ)
     @GetMapping("/unread")
     public ResponseEntity<List<NotificationDTO>> getUnreadNotifications() {
-        return ResponseEntity.ok(notificationService.getUnreadNotifications());
+        return ResponseEntity.ok(notificationService.getUnreadNotifications(currentUserId()));
+    }
+
+    @GetMapping("/unread-count")
+    public ResponseEntity<Map<String, Long>> getUnreadCount() {
+        return ResponseEntity.ok(Map.of("count", notificationService.getUnreadCount(currentUserId())));
+    }
+
+    // Luồng SSE: sự kiện "notification" cho mỗi thông báo mới/cập nhật/đã đọc, "resync" khi cần tải lại danh sách
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return notificationPushService.subscribe(currentUserId(), lastEventId);
     }
 
     @PostMapping("/{id}/read")
     public ResponseEntity<Void> markAsRead(@PathVariable Long id) {
-        notificationService.markNotificationAsRead(id);
+        notificationService.markAsRead(currentUserId(), List.of(id));
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/read")
+    public ResponseEntity<Map<String, Integer>> markAsRead(@RequestBody List<Long> notificationIds) {
+        return ResponseEntity.ok(Map.of("updated", notificationService.markAsRead(currentUserId(), notificationIds)));
+    }
+
+    @PostMapping("/read-all")
+    public ResponseEntity<Map<String, Integer>> markAllAsRead() {
+        return ResponseEntity.ok(Map.of("updated", notificationService.markAllAsRead(currentUserId())));
+    }
+
+    private static Long currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof CustomUserDetails userDetails)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated");
+        }
+        return userDetails.getPrincipal().getUserId();
+    }
 }
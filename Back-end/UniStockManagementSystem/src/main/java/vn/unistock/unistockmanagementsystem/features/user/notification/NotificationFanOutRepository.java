@@ -0,0 +1,41 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Ghi các dòng notification_recipient theo batch: một thông báo có thể tới hàng trăm user nên không đi qua
+ * saveAll từng entity.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationFanOutRepository {
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO notification_recipient (notification_id, user_id, is_read, created_at)
+            VALUES (?, ?, false, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param pairs các cặp [notificationId, userId] chưa có dòng
+     */
+    public void insert(Collection<long[]> pairs, LocalDateTime createdAt) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(INSERT_SQL, pairs, BATCH_SIZE, (ps, pair) -> {
+            ps.setLong(1, pair[0]);
+            ps.setLong(2, pair[1]);
+            ps.setTimestamp(3, timestamp);
+        });
+    }
+}
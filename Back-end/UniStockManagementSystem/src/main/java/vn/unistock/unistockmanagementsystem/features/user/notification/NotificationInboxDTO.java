@@ -0,0 +1,17 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationInboxDTO {
+    private List<NotificationDTO> items;
+    // Truyền lại vào tham số cursor để lấy trang sau; null khi đã hết
+    private String nextCursor;
+    private long unreadCount;
+}
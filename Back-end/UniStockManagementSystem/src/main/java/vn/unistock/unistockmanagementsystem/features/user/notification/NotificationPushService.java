@@ -0,0 +1,247 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đẩy thay đổi thông báo tới trình duyệt qua SSE thay cho việc gọi /unread liên tục.
+ * <ul>
+ *     <li>Mỗi sự kiện có id tăng dần; các sự kiện gần nhất được giữ trong bộ đệm vòng để client kết nối lại với
+ *     Last-Event-ID nhận bù phần bị lỡ. Id quá cũ (hoặc từ lần chạy trước) thì nhận sự kiện resync để tải lại danh sách.</li>
+ *     <li>Mỗi kết nối có hàng đợi riêng có giới hạn, được gửi trên pool luồng riêng. Client chậm làm đầy hàng đợi thì bị
+ *     đóng kết nối (sẽ tự kết nối lại và nhận bù), không làm chậm luồng phát sự kiện hay các client khác.</li>
+ * </ul>
+ */
+@Component
+public class NotificationPushService {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationPushService.class);
+
+    private final int replaySize;
+    private final int connectionBuffer;
+    private final long timeoutMillis;
+    // Bắt đầu từ thời điểm khởi động để id của lần chạy sau luôn lớn hơn lần chạy trước
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Deque<PushEvent> history = new ArrayDeque<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatcher;
+
+    public NotificationPushService(@Value("${notification.push.replay-size:256}") int replaySize,
+                                   @Value("${notification.push.connection-buffer:64}") int connectionBuffer,
+                                   @Value("${notification.push.timeout-ms:1800000}") long timeoutMillis,
+                                   @Value("${notification.push.threads:2}") int threads) {
+        this.replaySize = replaySize;
+        this.connectionBuffer = connectionBuffer;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-push-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static final class PushEvent {
+        private final Long id; // null: comment giữ kết nối
+        private final String name;
+        private final Object data;
+        private final Set<Long> userIds; // null: mọi user
+
+        private PushEvent(Long id, String name, Object data, Set<Long> userIds) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+            this.userIds = userIds;
+        }
+
+        private boolean isFor(Long userId) {
+            return userIds == null || userIds.contains(userId);
+        }
+
+        Long getId() {
+            return id;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    private final class Connection {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<PushEvent> queue = new ArrayBlockingQueue<>(connectionBuffer);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Connection(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * Mở kết nối SSE của một user. lastEventId là header Last-Event-ID trình duyệt gửi lại khi kết nối lại
+     * (null nếu kết nối mới).
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Connection connection = new Connection(userId, emitter);
+        emitter.onCompletion(() -> close(connection));
+        emitter.onTimeout(() -> close(connection));
+        emitter.onError(e -> close(connection));
+
+        // Đăng ký và lấy phần phát bù trong cùng khóa với publish nên không lỡ hay trùng sự kiện nào ở giữa
+        synchronized (history) {
+            connections.add(connection);
+            List<PushEvent> missed = eventsAfter(userId, lastEventId);
+            if (missed == null) {
+                enqueue(connection, new PushEvent(sequence.get(), "resync", Map.of(), null));
+            } else if (lastEventId == null) {
+                enqueue(connection, new PushEvent(sequence.get(), "ready", Map.of(), null));
+            } else {
+                missed.forEach(event -> enqueue(connection, event));
+            }
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotificationChanged(NotificationChangedEvent event) {
+        if (event.isResync()) {
+            publish("resync", Map.of(), event.getUserIds());
+        }
+        for (NotificationDTO notification : event.getNotifications()) {
+            publish("notification", notification, event.getUserIds());
+        }
+    }
+
+    /**
+     * @param userIds người nhận; null là mọi user
+     */
+    public void publish(String name, Object data, Set<Long> userIds) {
+        synchronized (history) {
+            PushEvent event = new PushEvent(sequence.incrementAndGet(), name, data, userIds);
+            history.addLast(event);
+            while (history.size() > replaySize) {
+                history.removeFirst();
+            }
+            for (Connection connection : connections) {
+                if (event.isFor(connection.userId)) {
+                    enqueue(connection, event);
+                }
+            }
+        }
+    }
+
+    // Giữ kết nối qua proxy và phát hiện sớm client đã ngắt
+    @Scheduled(fixedDelayString = "${notification.push.heartbeat-ms:25000}")
+    public void heartbeat() {
+        for (Connection connection : connections) {
+            enqueue(connection, new PushEvent(null, null, "keep-alive", null));
+        }
+    }
+
+    long currentEventId() {
+        return sequence.get();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.forEach(connection -> connection.emitter.complete());
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * @return các sự kiện của userId sau lastEventId; danh sách rỗng nếu không có gì mới hoặc kết nối mới;
+     * null nếu không phát bù được (id quá cũ, đã rơi khỏi bộ đệm hoặc thuộc lần chạy khác).
+     * Gọi trong khóa history.
+     */
+    List<PushEvent> eventsAfter(Long userId, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return List.of();
+        }
+        long lastId;
+        try {
+            lastId = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        long current = sequence.get();
+        if (lastId == current) {
+            return List.of();
+        }
+        PushEvent oldest = history.peekFirst();
+        if (lastId > current || oldest == null || lastId < oldest.id - 1) {
+            return null;
+        }
+        List<PushEvent> missed = new ArrayList<>();
+        for (PushEvent event : history) {
+            if (event.id > lastId && event.isFor(userId)) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+
+    private void enqueue(Connection connection, PushEvent event) {
+        if (connection.closed) {
+            return;
+        }
+        if (!connection.queue.offer(event)) {
+            logger.debug("Notification stream buffer full, closing connection");
+            close(connection);
+            connection.emitter.complete();
+            return;
+        }
+        if (connection.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(connection));
+        }
+    }
+
+    private void drain(Connection connection) {
+        do {
+            PushEvent event;
+            while (!connection.closed && (event = connection.queue.poll()) != null) {
+                try {
+                    if (event.id == null) {
+                        connection.emitter.send(SseEmitter.event().comment(String.valueOf(event.data)));
+                    } else {
+                        connection.emitter.send(SseEmitter.event()
+                                .id(String.valueOf(event.id))
+                                .name(event.name)
+                                .data(event.data, MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    close(connection);
+                    connection.emitter.completeWithError(e);
+                }
+            }
+            connection.draining.set(false);
+            // Sự kiện tới sau lần poll cuối nhưng trước khi nhả cờ thì lượt này tự xử lý tiếp
+        } while (!connection.closed && !connection.queue.isEmpty() && connection.draining.compareAndSet(false, true));
+    }
+
+    private void close(Connection connection) {
+        connection.closed = true;
+        connection.queue.clear();
+        connections.remove(connection);
+    }
+}
@@ -0,0 +1,61 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.unistock.unistockmanagementsystem.entities.NotificationRecipient;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationRecipientRepository extends JpaRepository<NotificationRecipient, Long> {
+
+    // Trang kế tiếp sau con trỏ (createdAt, recipientId), mới nhất trước
+    @Query("SELECT r FROM NotificationRecipient r JOIN FETCH r.notification n LEFT JOIN FETCH n.material " +
+            "WHERE r.userId = :userId AND r.isRead = false " +
+            "AND (r.createdAt < :before OR (r.createdAt = :before AND r.recipientId < :beforeId)) " +
+            "ORDER BY r.createdAt DESC, r.recipientId DESC")
+    List<NotificationRecipient> findUnreadPage(@Param("userId") Long userId,
+                                               @Param("before") LocalDateTime before,
+                                               @Param("beforeId") Long beforeId,
+                                               Pageable pageable);
+
+    @Query("SELECT r FROM NotificationRecipient r JOIN FETCH r.notification n LEFT JOIN FETCH n.material " +
+            "WHERE r.userId = :userId " +
+            "AND (r.createdAt < :before OR (r.createdAt = :before AND r.recipientId < :beforeId)) " +
+            "ORDER BY r.createdAt DESC, r.recipientId DESC")
+    List<NotificationRecipient> findPage(@Param("userId") Long userId,
+                                         @Param("before") LocalDateTime before,
+                                         @Param("beforeId") Long beforeId,
+                                         Pageable pageable);
+
+    long countByUserIdAndIsReadFalse(Long userId);
+
+    // [notificationId, userId, isRead]
+    @Query("SELECT r.notificationId, r.userId, r.isRead FROM NotificationRecipient r WHERE r.notificationId IN :notificationIds")
+    List<Object[]> findRecipients(@Param("notificationIds") Collection<Long> notificationIds);
+
+    // [userId, số thông báo chưa đọc trong danh sách]
+    @Query("SELECT r.userId, COUNT(r) FROM NotificationRecipient r " +
+            "WHERE r.notificationId IN :notificationIds AND r.isRead = false GROUP BY r.userId")
+    List<Object[]> countUnreadByUser(@Param("notificationIds") Collection<Long> notificationIds);
+
+    @Modifying
+    @Query("UPDATE NotificationRecipient r SET r.isRead = true, r.readAt = :now " +
+            "WHERE r.userId = :userId AND r.isRead = false AND r.notificationId IN :notificationIds")
+    int markRead(@Param("userId") Long userId, @Param("notificationIds") Collection<Long> notificationIds,
+                 @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE NotificationRecipient r SET r.isRead = true, r.readAt = :now " +
+            "WHERE r.userId = :userId AND r.isRead = false")
+    int markAllRead(@Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE NotificationRecipient r SET r.isRead = true, r.readAt = :now " +
+            "WHERE r.isRead = false AND r.notificationId IN :notificationIds")
+    int markReadForAll(@Param("notificationIds") Collection<Long> notificationIds, @Param("now") LocalDateTime now);
+}
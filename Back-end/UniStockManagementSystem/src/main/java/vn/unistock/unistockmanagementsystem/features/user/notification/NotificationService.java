@@ -1,113 +1,246 @@
 package vn.unistock.unistockmanagementsystem.features.user.notification;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.InventoryBalance;
 import vn.unistock.unistockmanagementsystem.entities.Material;
 import vn.unistock.unistockmanagementsystem.entities.Notification;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.entities.NotificationRecipient;
+import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryBalanceRepository;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
+    private static final int MAX_PAGE_SIZE = 50;
+    // Con trỏ của trang đầu: mọi dòng đều tạo trước thời điểm này
+    private static final LocalDateTime FIRST_PAGE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
 
-    private final InventoryRepository inventoryRepository;
+    private final InventoryBalanceRepository inventoryBalanceRepository;
     private final MaterialsRepository materialRepository;
     private final NotificationRepository notificationRepository;
     private final NotificationMapper notificationMapper;
-
-    public void checkLowStock(Long materialId) {
-        Double availableQuantity = inventoryRepository
-                .findByMaterialIdAndStatus(materialId, Inventory.InventoryStatus.AVAILABLE)
+    private final NotificationRecipientRepository recipientRepository;
+    private final NotificationFanOutRepository fanOutRepository;
+    private final UserRepository userRepository;
+    private final UnreadCounterCache unreadCounterCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Đánh giá tồn thấp cho một lô vật tư: một truy vấn gộp tồn khả dụng từ inventory_balance, một truy vấn vật tư
+     * và một truy vấn thông báo chưa đọc cho cả lô. Tồn <= ngưỡng thì tạo/cập nhật thông báo LOW_STOCK, tồn đã vượt
+     * ngưỡng (hoặc ngưỡng bị tắt) thì đánh dấu các thông báo cũ là đã đọc. Được LowStockEvaluator gọi sau commit.
+     * Thông báo còn hiệu lực được phát vào inbox của từng user; thông báo hết hiệu lực được đánh dấu đã đọc cho tất cả.
+     */
+    @Transactional
+    public void evaluateLowStock(Collection<Long> materialIds) {
+        if (materialIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Double> availableByMaterial = new HashMap<>();
+        for (Object[] row : inventoryBalanceRepository.sumQuantityByItem(
+                InventoryBalance.ItemType.MATERIAL, materialIds, Inventory.InventoryStatus.AVAILABLE)) {
+            availableByMaterial.put((Long) row[0], ((Number) row[1]).doubleValue());
+        }
+        Map<Long, List<Notification>> unreadByMaterial = notificationRepository
+                .findByMaterialMaterialIdInAndTypeAndIsReadFalse(materialIds, Notification.NotificationType.LOW_STOCK)
                 .stream()
-                .mapToDouble(Inventory::getQuantity)
-                .sum();
-
-        Material material = materialRepository.findById(materialId)
-                .orElseThrow(() -> new IllegalArgumentException("Material not found"));
-
-        if (material.getLowStockThreshold() != null && material.getLowStockThreshold() > 0) {
-            if (availableQuantity <= material.getLowStockThreshold()) {
-                List<Notification> existingNotifications = notificationRepository.findByMaterialMaterialIdAndTypeAndIsReadFalse(materialId, Notification.NotificationType.LOW_STOCK);
-
-                if (existingNotifications.isEmpty()) {
-                    Notification notification = Notification.builder()
-                            .message(String.format("Vật tư %s (Mã: %s) có tồn kho thấp: %s/%s",
-                                    material.getMaterialName(),
-                                    material.getMaterialCode(),
-                                    availableQuantity,
-                                    material.getLowStockThreshold()))
-                            .type(Notification.NotificationType.LOW_STOCK)
-                            .material(material)
-                            .isRead(false)
-                            .createdAt(LocalDateTime.now())
-                            .build();
-
-                    notificationRepository.save(notification);
-                }
-                else {
-                    // ✅ Đã có ➔ update message
-                    Notification existing = existingNotifications.get(0);  // Lấy notification chưa đọc gần nhất
-                    existing.setMessage(String.format("Vật tư %s (Mã: %s) có tồn kho thấp: %s/%s",
-                            material.getMaterialName(),
-                            material.getMaterialCode(),
-                            availableQuantity,
-                            material.getLowStockThreshold()));
-                    existing.setCreatedAt(LocalDateTime.now());
-                    notificationRepository.save(existing);
+                .collect(Collectors.groupingBy(n -> n.getMaterial().getMaterialId()));
+
+        List<Notification> changed = new ArrayList<>();
+        for (Material material : materialRepository.findAllById(materialIds)) {
+            double availableQuantity = availableByMaterial.getOrDefault(material.getMaterialId(), 0.0);
+            List<Notification> unread = unreadByMaterial.getOrDefault(material.getMaterialId(), List.of());
+            Double threshold = material.getLowStockThreshold();
+
+            if (threshold == null || threshold <= 0 || availableQuantity > threshold) {
+                // Tắt cảnh báo hoặc tồn đã hồi phục ➔ đánh dấu hết là đã đọc
+                for (Notification notif : unread) {
+                    notif.setIsRead(true);
+                    changed.add(notif);
                 }
+                continue;
             }
+
+            String message = String.format("Vật tư %s (Mã: %s) có tồn kho thấp: %s/%s",
+                    material.getMaterialName(),
+                    material.getMaterialCode(),
+                    availableQuantity,
+                    threshold);
+            if (unread.isEmpty()) {
+                changed.add(Notification.builder()
+                        .message(message)
+                        .type(Notification.NotificationType.LOW_STOCK)
+                        .material(material)
+                        .isRead(false)
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            } else {
+                // ✅ Đã có ➔ update message
+                Notification existing = unread.get(0);
+                existing.setMessage(message);
+                existing.setCreatedAt(LocalDateTime.now());
+                changed.add(existing);
+            }
+        }
+        notificationRepository.saveAll(changed);
+
+        List<Notification> active = new ArrayList<>();
+        List<Notification> resolved = new ArrayList<>();
+        for (Notification notification : changed) {
+            (Boolean.TRUE.equals(notification.getIsRead()) ? resolved : active).add(notification);
         }
+        resolveForAllRecipients(resolved);
+        fanOut(active);
     }
 
-    public List<NotificationDTO> getUnreadNotifications() {
-        return notificationRepository.findByIsReadFalse()
-                .stream()
-                .map(notificationMapper::toDTO)
-                .collect(Collectors.toList());
+    /**
+     * Gửi thông báo còn hiệu lực tới mọi user đang hoạt động chưa có nó trong inbox (thông báo mới, hoặc user mới
+     * tạo sau khi cảnh báo xuất hiện). Thay đổi được đẩy tới những user đang có nó ở trạng thái chưa đọc.
+     */
+    private void fanOut(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        Map<Long, Notification> byId = new LinkedHashMap<>();
+        notifications.forEach(n -> byId.put(n.getNotificationId(), n));
+
+        Map<Long, Set<Long>> existing = new HashMap<>();
+        Map<Long, Set<Long>> unreadUsers = new HashMap<>();
+        for (Object[] row : recipientRepository.findRecipients(byId.keySet())) {
+            Long notificationId = (Long) row[0];
+            Long userId = (Long) row[1];
+            existing.computeIfAbsent(notificationId, id -> new HashSet<>()).add(userId);
+            if (!Boolean.TRUE.equals(row[2])) {
+                unreadUsers.computeIfAbsent(notificationId, id -> new HashSet<>()).add(userId);
+            }
+        }
+
+        List<Long> activeUserIds = userRepository.findActiveUserIds();
+        List<long[]> pairs = new ArrayList<>();
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Long notificationId : byId.keySet()) {
+            Set<Long> recipients = existing.getOrDefault(notificationId, Set.of());
+            for (Long userId : activeUserIds) {
+                if (!recipients.contains(userId)) {
+                    pairs.add(new long[]{notificationId, userId});
+                    unreadUsers.computeIfAbsent(notificationId, id -> new HashSet<>()).add(userId);
+                    deltas.merge(userId, 1L, Long::sum);
+                }
+            }
+        }
+        fanOutRepository.insert(pairs, LocalDateTime.now());
+        unreadCounterCache.adjustAfterCommit(deltas);
+
+        unreadUsers.forEach((notificationId, userIds) -> eventPublisher.publishEvent(
+                NotificationChangedEvent.toUsers(List.of(notificationMapper.toDTO(byId.get(notificationId))), userIds)));
     }
 
-    public void markNotificationAsRead(Long notificationId) {
-        Notification notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new IllegalArgumentException("Notification not found"));
-        notification.setIsRead(true);
-        notificationRepository.save(notification);
+    // Cảnh báo hết hiệu lực: đánh dấu đã đọc cho mọi người nhận
+    private void resolveForAllRecipients(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        List<Long> ids = notifications.stream().map(Notification::getNotificationId).collect(Collectors.toList());
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Object[] row : recipientRepository.countUnreadByUser(ids)) {
+            deltas.put((Long) row[0], -((Number) row[1]).longValue());
+        }
+        recipientRepository.markReadForAll(ids, LocalDateTime.now());
+        unreadCounterCache.adjustAfterCommit(deltas);
+        eventPublisher.publishEvent(NotificationChangedEvent.toAll(
+                notifications.stream().map(notificationMapper::toDTO).collect(Collectors.toList())));
     }
 
-    public void clearLowStockNotificationIfRecovered(Long materialId) {
-        Double availableQuantity = inventoryRepository
-                .findByMaterialIdAndStatus(materialId, Inventory.InventoryStatus.AVAILABLE)
-                .stream()
-                .mapToDouble(Inventory::getQuantity)
-                .sum();
+    /**
+     * Một trang inbox của user, mới nhất trước. Phân trang keyset theo (createdAt, recipientId) nên chi phí mỗi trang
+     * không phụ thuộc vào việc đang ở trang thứ mấy.
+     */
+    @Transactional(readOnly = true)
+    public NotificationInboxDTO getInbox(Long userId, boolean unreadOnly, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        LocalDateTime before = FIRST_PAGE;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            int sep = cursor.lastIndexOf('_');
+            try {
+                before = LocalDateTime.parse(cursor.substring(0, sep));
+                beforeId = Long.parseLong(cursor.substring(sep + 1));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor không hợp lệ");
+            }
+        }
+
+        // Lấy dư một dòng để biết còn trang sau hay không
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<NotificationRecipient> rows = unreadOnly
+                ? recipientRepository.findUnreadPage(userId, before, beforeId, limit)
+                : recipientRepository.findPage(userId, before, beforeId, limit);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            NotificationRecipient last = rows.get(pageSize - 1);
+            nextCursor = last.getCreatedAt() + "_" + last.getRecipientId();
+        }
 
-        Material material = materialRepository.findById(materialId)
-                .orElseThrow(() -> new IllegalArgumentException("Material not found"));
+        List<NotificationDTO> items = rows.stream().map(row -> {
+            NotificationDTO dto = notificationMapper.toDTO(row.getNotification());
+            dto.setIsRead(row.getIsRead());
+            return dto;
+        }).collect(Collectors.toList());
+        return new NotificationInboxDTO(items, nextCursor, unreadCounterCache.get(userId));
+    }
 
-        List<Notification> lowStockNotifications = notificationRepository.findByMaterialMaterialIdAndTypeAndIsReadFalse(
-                materialId, Notification.NotificationType.LOW_STOCK
-        );
+    public List<NotificationDTO> getUnreadNotifications(Long userId) {
+        return getInbox(userId, true, null, MAX_PAGE_SIZE).getItems();
+    }
 
-        if (material.getLowStockThreshold() == null || material.getLowStockThreshold() <= 0) {
-            // Nếu ngưỡng <= 0, coi như tắt cảnh báo ➔ đánh dấu hết là đã đọc
-            for (Notification notif : lowStockNotifications) {
-                notif.setIsRead(true);
-                notificationRepository.save(notif);
-            }
-            return;  // không kiểm tra thêm
+    public long getUnreadCount(Long userId) {
+        return unreadCounterCache.get(userId);
+    }
+
+    /**
+     * Đánh dấu đã đọc một loạt thông báo của user bằng một câu UPDATE.
+     * @return số thông báo chuyển từ chưa đọc sang đã đọc
+     */
+    @Transactional
+    public int markAsRead(Long userId, Collection<Long> notificationIds) {
+        if (notificationIds.isEmpty()) {
+            return 0;
+        }
+        int updated = recipientRepository.markRead(userId, notificationIds, LocalDateTime.now());
+        if (updated > 0) {
+            unreadCounterCache.adjustAfterCommit(Map.of(userId, (long) -updated));
+            List<NotificationDTO> read = notificationRepository.findAllById(notificationIds).stream()
+                    .map(notificationMapper::toDTO)
+                    .peek(dto -> dto.setIsRead(true))
+                    .collect(Collectors.toList());
+            eventPublisher.publishEvent(NotificationChangedEvent.toUsers(read, List.of(userId)));
         }
+        return updated;
+    }
 
-        if (availableQuantity >= material.getLowStockThreshold()) {
-            for (Notification notif : lowStockNotifications) {
-                notif.setIsRead(true);
-                notificationRepository.save(notif);
-            }
+    @Transactional
+    public int markAllAsRead(Long userId) {
+        int updated = recipientRepository.markAllRead(userId, LocalDateTime.now());
+        if (updated > 0) {
+            unreadCounterCache.adjustAfterCommit(Map.of(userId, (long) -updated));
+            // Các tab khác của user tải lại inbox
+            eventPublisher.publishEvent(NotificationChangedEvent.resync(userId));
         }
+        return updated;
     }
 
 }
@@ -0,0 +1,89 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Số thông báo chưa đọc của từng user, giữ trong bộ nhớ để badge không phải COUNT mỗi lần. Giá trị được nạp từ DB
+ * ở lần đọc đầu tiên rồi cộng/trừ theo các thay đổi sau khi transaction commit. Trong lúc có thay đổi chưa commit
+ * (hoặc có thay đổi chen vào giữa lúc đếm), kết quả đếm chỉ được trả về chứ không được lưu, để không cộng trùng.
+ */
+@Component
+public class UnreadCounterCache {
+    private final NotificationRecipientRepository recipientRepository;
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+    // Số transaction đã báo thay đổi nhưng chưa kết thúc
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong changes = new AtomicLong();
+
+    public UnreadCounterCache(NotificationRecipientRepository recipientRepository) {
+        this.recipientRepository = recipientRepository;
+    }
+
+    public long get(Long userId) {
+        AtomicLong counter = counters.get(userId);
+        if (counter != null) {
+            return Math.max(0, counter.get());
+        }
+        long changesBefore = changes.get();
+        boolean quiet = inFlight.get() == 0;
+        long count = recipientRepository.countByUserIdAndIsReadFalse(userId);
+        if (quiet && changes.get() == changesBefore) {
+            counters.putIfAbsent(userId, new AtomicLong(count));
+        }
+        return count;
+    }
+
+    /**
+     * Ghi nhận thay đổi số chưa đọc (userId -> delta); được áp vào bộ đếm khi transaction hiện tại commit,
+     * bỏ qua nếu rollback. Không có transaction thì áp ngay.
+     */
+    public void adjustAfterCommit(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        inFlight.incrementAndGet();
+        changes.incrementAndGet();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                apply(deltas);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return;
+        }
+        Map<Long, Long> pending = Map.copyOf(deltas);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        apply(pending);
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    public void evict(Long userId) {
+        counters.remove(userId);
+    }
+
+    private void apply(Map<Long, Long> deltas) {
+        // Chỉ cập nhật user đã có bộ đếm; user chưa có sẽ được đếm từ DB ở lần đọc sau
+        deltas.forEach((userId, delta) -> {
+            AtomicLong counter = counters.get(userId);
+            if (counter != null) {
+                counter.addAndGet(delta);
+            }
+        });
+    }
+}
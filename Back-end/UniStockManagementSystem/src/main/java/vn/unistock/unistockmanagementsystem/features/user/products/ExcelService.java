@@ -12,6 +12,9 @@ import vn.unistock.unistockmanagementsystem.entities.ProductType;
 import vn.unistock.unistockmanagementsystem.entities.Unit;
 import vn.unistock.unistockmanagementsystem.features.user.productTypes.ProductTypeRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelRowReader;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupContext;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupService;
 
 import java.io.*;
 import java.util.*;
@@ -29,6 +32,12 @@ public class ExcelService {
     @Autowired
     private ProductTypeRepository productTypeRepository;
 
+    @Autowired
+    private ImportLookupService importLookupService;
+
+    // Mã, tên, đơn vị, dòng sản phẩm, mô tả
+    private static final int COLUMNS = 5;
+
     public ByteArrayInputStream exportProductsToExcel() throws IOException {
         List<Product> products = productsRepository.findAll();
 
@@ -99,24 +108,23 @@ public class ExcelService {
     }
 
     public List<ProductPreviewDTO> previewImportProducts(MultipartFile file) throws IOException {
+        return previewImportProducts(file, importLookupService.forProducts());
+    }
+
+    public List<ProductPreviewDTO> previewImportProducts(MultipartFile file, ImportLookupContext lookups) throws IOException {
         List<ProductPreviewDTO> result = new ArrayList<>();
         Map<String, Integer> codeToRowMap = new HashMap<>(); // để kiểm tra trùng mã trong file
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
-
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
 
+        ExcelRowReader.read(file, COLUMNS, (rowNum, cells) -> {
             ProductPreviewDTO dto = new ProductPreviewDTO();
-            dto.setRowIndex(i + 1); // Excel bắt đầu từ 1
+            dto.setRowIndex(rowNum + 1); // Excel bắt đầu từ 1
             dto.setValid(true);
 
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String description = getCellValue(row.getCell(4));
+            String code = cells[0];
+            String name = cells[1];
+            String unitName = cells[2];
+            String typeName = cells[3];
+            String description = cells[4];
 
             dto.setProductCode(code);
             dto.setProductName(name);
@@ -141,7 +149,7 @@ public class ExcelService {
                 }
 
                 // Kiểm tra đã tồn tại trong hệ thống
-                if (productsRepository.existsByProductCode(trimmedCode)) {
+                if (lookups.codeExists(trimmedCode)) {
                     errors.add("Mã sản phẩm đã tồn tại trong hệ thống");
                     dto.setValid(false);
                 }
@@ -155,7 +163,7 @@ public class ExcelService {
             if (unitName == null || unitName.trim().isEmpty()) {
                 errors.add("Đơn vị không được để trống");
                 dto.setValid(false);
-            } else if (!unitRepository.existsByUnitNameIgnoreCase(unitName.trim())) {
+            } else if (lookups.findUnit(unitName).isEmpty()) {
                 errors.add("Đơn vị không tồn tại trong hệ thống");
                 dto.setValid(false);
             }
@@ -163,7 +171,7 @@ public class ExcelService {
             if (typeName == null || typeName.trim().isEmpty()) {
                 errors.add("Dòng sản phẩm không được để trống");
                 dto.setValid(false);
-            } else if (!productTypeRepository.existsByTypeNameIgnoreCase(typeName.trim())) {
+            } else if (lookups.findProductType(typeName).isEmpty()) {
                 errors.add("Dòng sản phẩm không tồn tại trong hệ thống");
                 dto.setValid(false);
             }
@@ -173,34 +181,32 @@ public class ExcelService {
             }
 
             result.add(dto);
-        }
+        });
 
-        workbook.close();
         return result;
     }
 
 
     public String importProducts(MultipartFile file) throws IOException {
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
-        List<Product> products = new ArrayList<>();
+        return importProducts(file, importLookupService.forProducts());
+    }
 
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
+    public String importProducts(MultipartFile file, ImportLookupContext lookups) throws IOException {
+        List<Product> products = new ArrayList<>();
 
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String description = getCellValue(row.getCell(4));
+        ExcelRowReader.read(file, COLUMNS, (rowNum, cells) -> {
+            String code = cells[0];
+            String name = cells[1];
+            String unitName = cells[2];
+            String typeName = cells[3];
+            String description = cells[4];
 
-            if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) continue;
+            if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) return;
 
-            Optional<Unit> unit = unitRepository.findByUnitName(unitName.trim());
-            Optional<ProductType> type = productTypeRepository.findByTypeName(typeName.trim());
+            Optional<Unit> unit = lookups.findUnit(unitName);
+            Optional<ProductType> type = lookups.findProductType(typeName);
 
-            if (unit.isEmpty() || type.isEmpty()) continue;
+            if (unit.isEmpty() || type.isEmpty()) return;
 
             Product product = new Product();
             product.setProductCode(code.trim());
@@ -210,18 +216,11 @@ public class ExcelService {
             product.setProductType(type.get());
 
             products.add(product);
-        }
+        });
 
-        workbook.close();
         productsRepository.saveAll(products);
         return "Import thành công " + products.size() + " sản phẩm.";
     }
 
-    private String getCellValue(Cell cell) {
-        if (cell == null) return null;
-        cell.setCellType(CellType.STRING);
-        return cell.getStringCellValue().trim();
-    }
-
 
 }
\ No newline at end of file
@@ -14,6 +14,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.Product;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupContext;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportLookupService;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -28,6 +30,7 @@ import java.util.Map;
 public class ProductsController {
     private final ProductsService productsService;
     private final ExcelService excelService;
+    private final ImportLookupService importLookupService;
 
     @GetMapping
     public ResponseEntity<Page<ProductsDTO>> getProducts(
@@ -66,14 +69,16 @@ public class ProductsController {
     @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> importProducts(@RequestParam("file") MultipartFile file) {
         try {
-            List<ProductPreviewDTO> previewList = excelService.previewImportProducts(file);
+            // Nạp dữ liệu tra cứu một lần cho cả bước kiểm tra và bước ghi
+            ImportLookupContext lookups = importLookupService.forProducts();
+            List<ProductPreviewDTO> previewList = excelService.previewImportProducts(file, lookups);
             boolean hasErrors = previewList.stream().anyMatch(dto -> !dto.isValid());
             if (hasErrors) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body("❌ File chứa dòng không hợp lệ, không thể import.");
             }
 
-            String result = excelService.importProducts(file);
+            String result = excelService.importProducts(file, lookups);
             return ResponseEntity.ok("✅ " + result);
         } catch (Exception e) {
             log.error("❌ Lỗi khi import sản phẩm:", e);
@@ -15,6 +15,8 @@ import java.util.Optional;
 @Repository
 public interface ProductsRepository extends JpaRepository<Product, Long> {
     boolean existsByProductCode(String productCode);
+    @Query("SELECT p.productCode FROM Product p")
+    List<String> findAllProductCodes();
     boolean existsByProductCodeAndProductIdNot(String productCode, Long productId);
     Page<Product> findAll(Pageable pageable);
     Optional<Product> findByProductCode(String productCode);
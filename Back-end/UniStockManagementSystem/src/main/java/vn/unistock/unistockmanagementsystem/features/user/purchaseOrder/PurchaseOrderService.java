@@ -3,6 +3,8 @@ package vn.unistock.unistockmanagementsystem.features.user.purchaseOrder;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -28,6 +30,7 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class PurchaseOrderService {
+    private static final Logger logger = LoggerFactory.getLogger(PurchaseOrderService.class);
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -122,15 +125,13 @@ public class PurchaseOrderService {
 
         orderDTO.setDetails(detailDTOs);
 
-        // Log để debug
-        System.out.println("Order DTO created with ID: " + orderDTO.getPoId());
-        System.out.println("Details count: " + detailDTOs.size());
-        detailDTOs.forEach(d -> {
-            System.out.println("Detail ID: " + d.getPoDetailId() +
-                    ", Material ID: " + d.getMaterialId() +
-                    ", Material Name: " + d.getMaterialName() +
-                    ", Material Unit: " + d.getUnit());
-        });
+        if (logger.isDebugEnabled()) {
+            logger.debug("Loaded purchase order {} with {} details", orderDTO.getPoId(), detailDTOs.size());
+            for (PurchaseOrderDetailDTO d : detailDTOs) {
+                logger.debug("Purchase order {} detail {}: materialId={}, materialName={}, unit={}",
+                        orderDTO.getPoId(), d.getPoDetailId(), d.getMaterialId(), d.getMaterialName(), d.getUnit());
+            }
+        }
 
         return orderDTO;
     }
@@ -14,11 +14,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.ReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersRepository;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.UsedMaterialWarehouseDTO;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflict;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -33,9 +34,9 @@ public class PurchaseRequestService {
     private final MaterialsRepository materialRepository;
     private final PartnerRepository partnerRepository;
     private final SaleOrdersRepository saleOrdersRepository;
-    private final InventoryRepository inventoryRepository;
     private final PurchaseRequestMapper purchaseRequestMapper;
     private final PurchaseRequestDetailMapper purchaseRequestDetailMapper;
+    private final ReservationService reservationService;
 
 
     public Page<PurchaseRequestDTO> getAllPurchaseRequests(Pageable pageable) {
@@ -59,6 +60,7 @@ public class PurchaseRequestService {
         return purchaseRequestMapper.toDTO(purchaseRequest);
     }
 
+    @RetryOnConflict
     @Transactional
     public PurchaseRequestDTO createManualPurchaseRequest(PurchaseRequestDTO dto) {
         // Khởi tạo request chính
@@ -116,48 +118,10 @@ public class PurchaseRequestService {
 
         if (CollectionUtils.isEmpty(usedMaterials)) return;
 
-        for (UsedMaterialWarehouseDTO entry : usedMaterials) {
-            double quantityToReserve = entry.getQuantity();
-            List<Inventory> availableInventories = inventoryRepository
-                    .findByMaterialIdAndStatus(entry.getMaterialId(), Inventory.InventoryStatus.AVAILABLE)
-                    .stream()
-                    .filter(inv -> inv.getWarehouse().getWarehouseId().equals(entry.getWarehouseId()))
-                    .sorted(Comparator.comparing(Inventory::getInventoryId))
-                    .toList();
-
-            for (Inventory available : availableInventories) {
-                if (quantityToReserve <= 0) break;
-
-                double toUse = Math.min(available.getQuantity(), quantityToReserve);
-                available.setQuantity(available.getQuantity() - toUse);
-                if (available.getQuantity() == 0) inventoryRepository.delete(available);
-                else inventoryRepository.save(available);
-
-                Inventory reserved = inventoryRepository
-                        .findByMaterial_MaterialIdAndWarehouse_WarehouseIdAndStatusAndSalesOrder(
-                                entry.getMaterialId(),
-                                entry.getWarehouseId(),
-                                Inventory.InventoryStatus.RESERVED,
-                                salesOrder)
-                        .orElseGet(() -> {
-                            Inventory inv = new Inventory();
-                            inv.setMaterial(available.getMaterial());
-                            inv.setWarehouse(available.getWarehouse());
-                            inv.setStatus(Inventory.InventoryStatus.RESERVED);
-                            inv.setQuantity(0.0);
-                            inv.setSalesOrder(salesOrder);
-                            return inv;
-                        });
-
-                reserved.setQuantity(reserved.getQuantity() + toUse);
-                reserved.setLastUpdated(LocalDateTime.now());
-                inventoryRepository.save(reserved);
-
-                quantityToReserve -= toUse;
-            }
-
-
-        }
+        List<ReservationService.ReserveLine> lines = usedMaterials.stream()
+                .map(entry -> new ReservationService.ReserveLine(entry.getWarehouseId(), entry.getMaterialId(), null, entry.getQuantity()))
+                .toList();
+        reservationService.reserve(salesOrder.getOrderId(), lines);
     }
 
     public void reserveMaterialsForPurchaseRequest(List<PurchaseRequestDetailDTO> detailDTOs, SalesOrder salesOrder) {
@@ -165,54 +129,24 @@ public class PurchaseRequestService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "SalesOrder is required for reserving materials");
         }
 
-        for (PurchaseRequestDetailDTO detailDto : detailDTOs) {
-            if (detailDto.getQuantity() <= 0) continue;
-
-            Material material = materialRepository.findById(detailDto.getMaterialId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy vật tư với ID: " + detailDto.getMaterialId()));
-
-            double quantityToReserve = detailDto.getQuantity();
-            List<Inventory> availableInventories = inventoryRepository.findByMaterialIdAndStatus(
-                    material.getMaterialId(), Inventory.InventoryStatus.AVAILABLE);
-            availableInventories.sort(Comparator.comparing(Inventory::getInventoryId));
-
-            for (Inventory available : availableInventories) {
-                if (quantityToReserve <= 0) break;
-
-                double availableQty = available.getQuantity();
-                double toUse = Math.min(availableQty, quantityToReserve);
-
-                available.setQuantity(availableQty - toUse);
-                if (available.getQuantity() == 0) {
-                    inventoryRepository.delete(available);
-                } else {
-                    inventoryRepository.save(available);
-                }
-
-                Inventory reserved = inventoryRepository.findByMaterial_MaterialIdAndWarehouse_WarehouseIdAndStatusAndSalesOrder(
-                        material.getMaterialId(),
-                        available.getWarehouse().getWarehouseId(),
-                        Inventory.InventoryStatus.RESERVED,
-                        salesOrder
-                ).orElseGet(() -> {
-                    Inventory newReserved = new Inventory();
-                    newReserved.setMaterial(material);
-                    newReserved.setWarehouse(available.getWarehouse());
-                    newReserved.setStatus(Inventory.InventoryStatus.RESERVED);
-                    newReserved.setQuantity(0.0);
-                    newReserved.setSalesOrder(salesOrder);
-                    return newReserved;
-                });
-
-                reserved.setQuantity(reserved.getQuantity() + toUse);
-                reserved.setLastUpdated(LocalDateTime.now());
-                inventoryRepository.save(reserved);
-
-                quantityToReserve -= toUse;
+        List<PurchaseRequestDetailDTO> toReserve = detailDTOs.stream()
+                .filter(detailDto -> detailDto.getQuantity() > 0)
+                .toList();
+        Set<Long> materialIds = toReserve.stream().map(PurchaseRequestDetailDTO::getMaterialId).collect(Collectors.toSet());
+        Set<Long> existingIds = materialRepository.findAllById(materialIds).stream()
+                .map(Material::getMaterialId)
+                .collect(Collectors.toSet());
+        for (Long materialId : materialIds) {
+            if (!existingIds.contains(materialId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy vật tư với ID: " + materialId);
             }
-
-
         }
+
+        // Không chỉ định kho: lấy lần lượt từ các dòng tồn cũ nhất ở mọi kho
+        List<ReservationService.ReserveLine> lines = toReserve.stream()
+                .map(detailDto -> new ReservationService.ReserveLine(null, detailDto.getMaterialId(), null, detailDto.getQuantity()))
+                .toList();
+        reservationService.reserve(salesOrder.getOrderId(), lines);
     }
 
     public void reserveProductsForSalesOrder(SalesOrder salesOrder, List<UsedProductWarehouseDTO> usedProducts) {
@@ -222,60 +156,21 @@ public class PurchaseRequestService {
 
         if (usedProducts == null || usedProducts.isEmpty()) return;
 
-        for (UsedProductWarehouseDTO entry : usedProducts) {
-            Long productId = entry.getProductId();
-            Long warehouseId = entry.getWarehouseId();
-            double requiredQuantity = entry.getQuantity();
-
-            List<Inventory> availableInventories = inventoryRepository.findByProductIdAndStatus(productId, Inventory.InventoryStatus.AVAILABLE)
-                    .stream()
-                    .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                    .sorted(Comparator.comparing(Inventory::getInventoryId))
-                    .collect(Collectors.toList());
-
-            for (Inventory inventory : availableInventories) {
-                if (requiredQuantity <= 0) break;
-
-                double availableQty = inventory.getQuantity();
-                double toUse = Math.min(availableQty, requiredQuantity);
-
-                inventory.setQuantity(availableQty - toUse);
-                if (inventory.getQuantity() == 0) {
-                    inventoryRepository.delete(inventory);
-                } else {
-                    inventoryRepository.save(inventory);
-                }
-
-                Inventory reserved = inventoryRepository.findByProduct_ProductIdAndWarehouse_WarehouseIdAndStatusAndSalesOrder(
-                        productId,
-                        warehouseId,
-                        Inventory.InventoryStatus.RESERVED,
-                        salesOrder
-                ).orElseGet(() -> {
-                    Inventory newReserved = new Inventory();
-                    newReserved.setProduct(inventory.getProduct());
-                    newReserved.setWarehouse(inventory.getWarehouse());
-                    newReserved.setStatus(Inventory.InventoryStatus.RESERVED);
-                    newReserved.setQuantity(0.0);
-                    newReserved.setSalesOrder(salesOrder);
-                    return newReserved;
-                });
-
-                reserved.setQuantity(reserved.getQuantity() + toUse);
-                reserved.setLastUpdated(LocalDateTime.now());
-                inventoryRepository.save(reserved);
-
-                requiredQuantity -= toUse;
-            }
+        List<ReservationService.ReserveLine> lines = usedProducts.stream()
+                .map(entry -> new ReservationService.ReserveLine(entry.getWarehouseId(), null, entry.getProductId(), entry.getQuantity()))
+                .toList();
+        reservationService.reserve(salesOrder.getOrderId(), lines);
 
-            if (requiredQuantity > 0) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không đủ số lượng tại kho " + warehouseId + " cho sản phẩm " + productId);
+        for (ReservationService.ReserveLine line : lines) {
+            if (line.getShortfall() > 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không đủ số lượng tại kho " + line.getWarehouseId() + " cho sản phẩm " + line.getProductId());
             }
         }
     }
 
 
 
+    @RetryOnConflict
     @Transactional
     public PurchaseRequestDTO updatePurchaseRequestStatus(Long id, String status, String rejectionReason) {
         PurchaseRequest request = purchaseRequestRepository.findById(id)
@@ -287,139 +182,14 @@ public class PurchaseRequestService {
         if (statusEnum == PurchaseRequest.RequestStatus.REJECTED) {
             request.setRejectionReason(rejectionReason);
 
-            // Release RESERVED inventory for materials
-            List<PurchaseRequestDetail> details = request.getPurchaseRequestDetails();
-            for (PurchaseRequestDetail detail : details) {
-                Material material = detail.getMaterial();
-                double quantityToRelease = detail.getQuantity();
-
-                // Fetch all RESERVED inventory for this material
-                List<Inventory> reservedInventories = inventoryRepository.findByMaterialIdAndStatus(
-                        material.getMaterialId(), Inventory.InventoryStatus.RESERVED);
-
-                // Group quantities by warehouse
-                Map<Long, Double> warehouseQuantities = new HashMap<>();
-                for (Inventory inventory : reservedInventories) {
-                    if (quantityToRelease <= 0) break;
-
-                    double quantityInInventory = inventory.getQuantity();
-                    double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-
-                    Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                    warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-
-                    quantityToRelease -= quantityToReleaseFromThis;
-                }
-
-                // Consolidate inventory for each warehouse
-                for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                    Long warehouseId = entry.getKey();
-                    double releasedQuantity = entry.getValue();
-
-                    Warehouse warehouse = reservedInventories.stream()
-                            .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                            .findFirst()
-                            .map(Inventory::getWarehouse)
-                            .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                    // Find or create AVAILABLE inventory
-                    Inventory availableInventory = inventoryRepository.findByWarehouseAndMaterialAndStatus(
-                                    warehouse, material, Inventory.InventoryStatus.AVAILABLE)
-                            .orElse(null);
-
-                    if (availableInventory == null) {
-                        availableInventory = Inventory.builder()
-                                .warehouse(warehouse)
-                                .material(material)
-                                .status(Inventory.InventoryStatus.AVAILABLE)
-                                .quantity(0.0)
-                                .build();
-                    }
-                    availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                    availableInventory.setLastUpdated(LocalDateTime.now());
-                    availableInventory.setSalesOrder(null);
-                    inventoryRepository.save(availableInventory);
-
-                    // Delete RESERVED records for this warehouse
-                    List<Inventory> reservedToDelete = reservedInventories.stream()
-                            .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                            .toList();
-                    inventoryRepository.deleteAll(reservedToDelete);
-                }
-
-                if (quantityToRelease > 0) {
-                    logger.warn("Insufficient RESERVED inventory for materialId {}: {} units remaining",
-                            material.getMaterialId(), quantityToRelease);
-                }
-            }
-
-            // Release RESERVED inventory for products if linked to a SalesOrder
+            // Nhả vật tư của yêu cầu và sản phẩm đang giữ cho đơn hàng liên kết
             if (request.getSalesOrder() != null) {
-                SalesOrder salesOrder = request.getSalesOrder();
-                List<SalesOrderDetail> orderDetails = salesOrder.getDetails();
-                for (SalesOrderDetail detail : orderDetails) {
-                    Product product = detail.getProduct();
-                    double quantityToRelease = detail.getQuantity();
-
-                    // Fetch all RESERVED inventory for this product
-                    List<Inventory> reservedInventories = inventoryRepository.findByProductIdAndStatus(
-                            product.getProductId(), Inventory.InventoryStatus.RESERVED);
-
-                    // Group quantities by warehouse
-                    Map<Long, Double> warehouseQuantities = new HashMap<>();
-                    for (Inventory inventory : reservedInventories) {
-                        if (quantityToRelease <= 0) break;
-
-                        double quantityInInventory = inventory.getQuantity();
-                        double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-
-                        Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                        warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-
-                        quantityToRelease -= quantityToReleaseFromThis;
-                    }
-
-                    // Consolidate inventory for each warehouse
-                    for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                        Long warehouseId = entry.getKey();
-                        double releasedQuantity = entry.getValue();
-
-                        Warehouse warehouse = reservedInventories.stream()
-                                .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                .findFirst()
-                                .map(Inventory::getWarehouse)
-                                .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                        // Find or create AVAILABLE inventory
-                        Inventory availableInventory = inventoryRepository.findByWarehouseAndProductAndStatus(
-                                        warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                                .orElse(null);
-
-                        if (availableInventory == null) {
-                            availableInventory = Inventory.builder()
-                                    .warehouse(warehouse)
-                                    .product(product)
-                                    .status(Inventory.InventoryStatus.AVAILABLE)
-                                    .quantity(0.0)
-                                    .build();
-                        }
-                        availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                        availableInventory.setLastUpdated(LocalDateTime.now());
-                        availableInventory.setSalesOrder(null);
-                        inventoryRepository.save(availableInventory);
-
-                        // Delete RESERVED records for this warehouse
-                        List<Inventory> reservedToDelete = reservedInventories.stream()
-                                .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                .toList();
-                        inventoryRepository.deleteAll(reservedToDelete);
-                    }
-
-                    if (quantityToRelease > 0) {
-                        logger.warn("Insufficient RESERVED inventory for productId {}: {} units remaining",
-                                product.getProductId(), quantityToRelease);
-                    }
-                }
+                Long salesOrderId = request.getSalesOrder().getOrderId();
+                Set<Long> materialIds = request.getPurchaseRequestDetails().stream()
+                        .map(detail -> detail.getMaterial().getMaterialId())
+                        .collect(Collectors.toSet());
+                reservationService.releaseMaterials(salesOrderId, materialIds);
+                reservationService.releaseProducts(salesOrderId);
             }
         } else {
             // For non-CANCELLED statuses, clear rejectionReason
@@ -14,11 +14,9 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryTransactionRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryDeltaEngine;
 import vn.unistock.unistockmanagementsystem.features.user.issueNote.ReceiveOutsourceRepository;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
-import vn.unistock.unistockmanagementsystem.features.user.notification.NotificationService;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderDTO;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderDetailRepository;
@@ -28,11 +26,18 @@ import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersS
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
 import vn.unistock.unistockmanagementsystem.features.user.warehouse.WarehouseRepository;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.IdCollections;
 import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflict;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflictAspect;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,8 +46,7 @@ public class ReceiptNoteService {
     private static final Logger logger = LoggerFactory.getLogger(ReceiptNoteService.class);
 
     @Autowired private ReceiptNoteDetailRepository goodReceiptDetailRepository;
-    @Autowired private InventoryRepository inventoryRepository;
-    @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
+    @Autowired private InventoryDeltaEngine inventoryDeltaEngine;
     @Autowired private WarehouseRepository warehouseRepository;
     @Autowired private MaterialsRepository materialRepository;
     @Autowired private ProductsRepository productRepository;
@@ -60,8 +64,6 @@ public class ReceiptNoteService {
     private ReceiveOutsourceRepository receiveOutsourceRepository;
     @Autowired
     private SaleOrdersService saleOrdersService;
-    @Autowired
-    private NotificationService notificationService;
 
     public Page<ReceiptNoteDTO> getAllReceiptNote(int page, int size, String search, List<String> categories, String startDate, String endDate) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "grnId"));
@@ -102,6 +104,7 @@ public class ReceiptNoteService {
     }
 
 
+    @RetryOnConflict
     @Transactional
     public ReceiptNoteDTO createGoodReceipt(ReceiptNoteDTO grnDto) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -172,16 +175,49 @@ public class ReceiptNoteService {
             grn = receiptNoteRepository.save(grn);
             List<GoodReceiptDetail> details = new ArrayList<>();
 
+            // Nạp một lần toàn bộ kho, đơn vị, vật tư, sản phẩm và chi tiết đơn mua được tham chiếu trong phiếu
+            List<ReceiptNoteDetailDTO> detailDtos = grnDto.getDetails();
+            Map<Long, Warehouse> warehouses = warehouseRepository.findAllById(IdCollections.idsOf(detailDtos, ReceiptNoteDetailDTO::getWarehouseId))
+                    .stream().collect(Collectors.toMap(Warehouse::getWarehouseId, Function.identity()));
+            Map<Long, Unit> units = unitRepository.findAllById(IdCollections.idsOf(detailDtos, ReceiptNoteDetailDTO::getUnitId))
+                    .stream().collect(Collectors.toMap(Unit::getUnitId, Function.identity()));
+            Map<Long, Material> materials = materialRepository.findAllById(IdCollections.idsOf(detailDtos, ReceiptNoteDetailDTO::getMaterialId))
+                    .stream().collect(Collectors.toMap(Material::getMaterialId, Function.identity()));
+            Map<Long, Product> products = productRepository.findAllById(IdCollections.idsOf(detailDtos, ReceiptNoteDetailDTO::getProductId))
+                    .stream().collect(Collectors.toMap(Product::getProductId, Function.identity()));
+
+            List<PurchaseOrderDetail> poDetails = List.of();
+            Map<Long, PurchaseOrderDetail> poDetailsByMaterial = new HashMap<>();
+            if (linkedPurchaseOrder != null) {
+                poDetails = purchaseOrderDetailRepository.findByPurchaseOrderPoId(grnDto.getPoId());
+                if (poDetails.isEmpty()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy chi tiết đơn mua cho ID: " + grnDto.getPoId());
+                }
+                for (PurchaseOrderDetail pod : poDetails) {
+                    poDetailsByMaterial.putIfAbsent(pod.getMaterial().getMaterialId(), pod);
+                }
+            }
+
+            // Trạng thái tồn kho của vật tư nhập về: giữ cho đơn hàng nếu đơn mua gắn với đơn hàng chưa hoàn thành
+            Inventory.InventoryStatus materialStatus = hasSaleOrder && !saleOrderCompleted
+                    ? Inventory.InventoryStatus.RESERVED
+                    : Inventory.InventoryStatus.AVAILABLE;
+            Long reservedOrderId = materialStatus == Inventory.InventoryStatus.RESERVED ? linkedSaleOrder.getOrderId() : null;
+
+            List<InventoryDeltaEngine.ImportLine> importLines = new ArrayList<>();
+
             // Xử lý chi tiết phiếu nhập
-            for (ReceiptNoteDetailDTO detailDto : grnDto.getDetails()) {
-                logger.info("⏳ Processing detail: {}", detailDto);
+            for (ReceiptNoteDetailDTO detailDto : detailDtos) {
+                logger.debug("⏳ Processing detail: {}", detailDto);
 
                 // Validate warehouse
                 if (detailDto.getWarehouseId() == null) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "warehouseId is required");
                 }
-                Warehouse warehouse = warehouseRepository.findById(detailDto.getWarehouseId())
-                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Warehouse not found with ID: " + detailDto.getWarehouseId()));
+                Warehouse warehouse = warehouses.get(detailDto.getWarehouseId());
+                if (warehouse == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Warehouse not found with ID: " + detailDto.getWarehouseId());
+                }
 
                 // Khởi tạo GoodReceiptDetail
                 GoodReceiptDetail detail = GoodReceiptDetail.builder()
@@ -192,33 +228,31 @@ public class ReceiptNoteService {
 
                 // Xử lý unit
                 if (detailDto.getUnitId() != null) {
-                    Unit unit = unitRepository.findById(detailDto.getUnitId())
-                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unit not found with ID: " + detailDto.getUnitId()));
+                    Unit unit = units.get(detailDto.getUnitId());
+                    if (unit == null) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unit not found with ID: " + detailDto.getUnitId());
+                    }
                     detail.setUnit(unit);
                 }
 
                 // Xử lý material hoặc product
                 if (detailDto.getMaterialId() != null) {
-                    Material material = materialRepository.findById(detailDto.getMaterialId())
-                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Material not found with ID: " + detailDto.getMaterialId()));
+                    Material material = materials.get(detailDto.getMaterialId());
+                    if (material == null) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Material not found with ID: " + detailDto.getMaterialId());
+                    }
                     detail.setMaterial(material);
                     if (detail.getUnit() == null) detail.setUnit(material.getUnit());
-                    updateInventoryAndTransaction(warehouse, material, null, detailDto.getQuantity(), hasSaleOrder, saleOrderCompleted, linkedSaleOrder, grn);
-
-                    notificationService.clearLowStockNotificationIfRecovered(material.getMaterialId());
+                    importLines.add(new InventoryDeltaEngine.ImportLine(warehouse.getWarehouseId(), material.getMaterialId(), null,
+                            detailDto.getQuantity(), materialStatus, reservedOrderId));
 
                     // Xử lý Vật tư mua bán
                     if ("Vật tư mua bán".equals(grnDto.getCategory()) && linkedPurchaseOrder != null) {
-                        List<PurchaseOrderDetail> poDetails = purchaseOrderDetailRepository.findByPurchaseOrderPoId(grnDto.getPoId());
-                        if (poDetails.isEmpty()) {
-                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy chi tiết đơn mua cho ID: " + grnDto.getPoId());
+                        PurchaseOrderDetail pod = poDetailsByMaterial.get(detailDto.getMaterialId());
+                        if (pod == null) {
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy dòng đơn hàng ứng với vật tư ID: " + detailDto.getMaterialId());
                         }
-                        PurchaseOrderDetail pod = poDetails.stream()
-                                .filter(d -> d.getMaterial().getMaterialId().equals(detailDto.getMaterialId()))
-                                .findFirst()
-                                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy dòng đơn hàng ứng với vật tư ID: " + detailDto.getMaterialId()));
                         pod.setReceivedQuantity(pod.getReceivedQuantity() + detailDto.getQuantity().intValue());
-                        purchaseOrderDetailRepository.save(pod);
                     }
 
                     // Xử lý Hàng hóa gia công
@@ -230,31 +264,33 @@ public class ReceiptNoteService {
                         double newReceived = (materialDetail.getReceivedQuantity() != null ? materialDetail.getReceivedQuantity() : 0) + detailDto.getQuantity();
                         materialDetail.setReceivedQuantity(newReceived);
                         materialDetail.setRemainingQuantity(materialDetail.getQuantity() - newReceived);
-                        receiveOutsourceRepository.save(linkedOutsource);
                     }
 
                 } else if (detailDto.getProductId() != null) {
-                    Product product = productRepository.findById(detailDto.getProductId())
-                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Product not found with ID: " + detailDto.getProductId()));
+                    Product product = products.get(detailDto.getProductId());
+                    if (product == null) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Product not found with ID: " + detailDto.getProductId());
+                    }
                     detail.setProduct(product);
                     if (detail.getUnit() == null) detail.setUnit(product.getUnit());
-                    updateInventoryAndTransaction(warehouse, null, product, detailDto.getQuantity(), hasSaleOrder, saleOrderCompleted, linkedSaleOrder, grn);
+                    importLines.add(new InventoryDeltaEngine.ImportLine(warehouse.getWarehouseId(), null, product.getProductId(),
+                            detailDto.getQuantity(), Inventory.InventoryStatus.AVAILABLE, null));
                 } else {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chi tiết phiếu phải có sản phẩm hoặc vật tư");
                 }
                 details.add(detail);
             }
 
+            // Khóa/tạo và ghi toàn bộ tồn kho + thẻ kho của phiếu trong một lượt
+            inventoryDeltaEngine.postImport(grn, importLines);
+
             // Lưu chi tiết phiếu nhập
             goodReceiptDetailRepository.saveAll(details);
 
-            // Cập nhật trạng thái PurchaseOrder hoặc ReceiveOutsource
+            // Cập nhật tiến độ và trạng thái PurchaseOrder hoặc ReceiveOutsource
             if (grnDto.getPoId() != null) {
                 if ("Vật tư mua bán".equals(grnDto.getCategory()) && linkedPurchaseOrder != null) {
-                    List<PurchaseOrderDetail> poDetails = purchaseOrderDetailRepository.findByPurchaseOrderPoId(grnDto.getPoId());
-                    if (poDetails.isEmpty()) {
-                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy chi tiết đơn mua cho ID: " + grnDto.getPoId());
-                    }
+                    purchaseOrderDetailRepository.saveAll(poDetails);
                     boolean allReceived = poDetails.stream()
                             .allMatch(detail -> detail.getOrderedQuantity() - detail.getReceivedQuantity() <= 0);
                     linkedPurchaseOrder.setStatus(allReceived ? PurchaseOrder.OrderStatus.COMPLETED : PurchaseOrder.OrderStatus.IN_PROGRESS);
@@ -269,92 +305,12 @@ public class ReceiptNoteService {
 
             return receiptNoteMapper.toDTO(grn);
         } catch (Exception e) {
-            logger.error("❌ Lỗi khi tạo phiếu nhập kho: {}", e.getMessage(), e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lưu phiếu nhập: " + e.getMessage());
-        }
-    }
-
-    private void updateInventoryAndTransaction(
-            Warehouse warehouse,
-            Material material,
-            Product product,
-            Double quantity,
-            boolean hasSaleOrder,
-            boolean saleOrderCompleted,
-            SalesOrder linkedSaleOrder,
-            GoodReceiptNote grn) {
-        Inventory inventory;
-
-        if (material != null) {
-            Inventory.InventoryStatus status;
-            SalesOrder salesOrder = null;
-
-            if (hasSaleOrder) {
-                if (saleOrderCompleted) {
-                    status = Inventory.InventoryStatus.AVAILABLE;
-                } else {
-                    status = Inventory.InventoryStatus.RESERVED;
-                    salesOrder = linkedSaleOrder;
-                }
-            } else {
-                status = Inventory.InventoryStatus.AVAILABLE;
+            if (RetryOnConflictAspect.isConflict(e)) {
+                // Xung đột tồn kho (kể cả OptimisticLockException chưa được Spring dịch): để @RetryOnConflict chạy lại phiếu
+                throw e;
             }
-
-            inventory = inventoryRepository.findByWarehouseAndMaterialAndStatusAndSalesOrder(warehouse, material, status, salesOrder)
-                    .orElse(null);
-
-            if (inventory == null) {
-                inventory = Inventory.builder()
-                        .warehouse(warehouse)
-                        .material(material)
-                        .status(status)
-                        .salesOrder(salesOrder)
-                        .quantity(0.0)
-                        .build();
-            }
-
-            inventory.setQuantity(inventory.getQuantity() + quantity);
-            inventory.setLastUpdated(grn.getReceiptDate());
-            inventoryRepository.save(inventory);
-
-            inventoryTransactionRepository.save(InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .material(material)
-                    .transactionType(InventoryTransaction.TransactionType.IMPORT)
-                    .quantity(quantity)
-                    .goodReceiptNote(grn)
-                    .transactionDate(grn.getReceiptDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE)
-                    .build());
-        }
-
-        if (product != null) {
-            Inventory.InventoryStatus status = Inventory.InventoryStatus.AVAILABLE;
-
-            inventory = inventoryRepository.findByWarehouseAndProductAndStatus(warehouse, product, status)
-                    .orElse(null);
-            if (inventory == null) {
-                inventory = Inventory.builder()
-                        .warehouse(warehouse)
-                        .product(product)
-                        .status(status)
-                        .quantity(0.0)
-                        .build();
-            }
-
-            inventory.setQuantity(inventory.getQuantity() + quantity);
-            inventory.setLastUpdated(LocalDateTime.now());
-            inventoryRepository.save(inventory);
-
-            inventoryTransactionRepository.save(InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .product(product)
-                    .transactionType(InventoryTransaction.TransactionType.IMPORT)
-                    .quantity(quantity)
-                    .goodReceiptNote(grn)
-                    .transactionDate(grn.getReceiptDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE)
-                    .build());
+            logger.error("❌ Lỗi khi tạo phiếu nhập kho: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi khi lưu phiếu nhập: " + e.getMessage(), e);
         }
     }
 
@@ -11,7 +11,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.ReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
@@ -19,8 +19,8 @@ import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.Purch
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestRepository;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestService;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflict;
 
-import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -36,9 +36,9 @@ public class SaleOrdersService {
     private final PartnerRepository partnerRepository;
     private final ProductsRepository productsRepository;
     private final PurchaseRequestRepository purchaseRequestRepository;
-    private final InventoryRepository inventoryRepository;
     private final PurchaseRequestService purchaseRequestService;
     private final MaterialsRepository materialsRepository;
+    private final ReservationService reservationService;
 
     public SaleOrdersService(SaleOrdersRepository saleOrdersRepository,
                              SalesOrderMaterialRepository salesOrderMaterialRepository,
@@ -46,18 +46,18 @@ public class SaleOrdersService {
                              PartnerRepository partnerRepository,
                              ProductsRepository productsRepository,
                              PurchaseRequestRepository purchaseRequestRepository,
-                             InventoryRepository inventoryRepository,
                              PurchaseRequestService purchaseRequestService,
-                             MaterialsRepository materialsRepository) {
+                             MaterialsRepository materialsRepository,
+                             ReservationService reservationService) {
         this.saleOrdersRepository = saleOrdersRepository;
         this.salesOrderMaterialRepository = salesOrderMaterialRepository;
         this.saleOrdersMapper = saleOrdersMapper;
         this.partnerRepository = partnerRepository;
         this.productsRepository = productsRepository;
         this.purchaseRequestRepository = purchaseRequestRepository;
-        this.inventoryRepository = inventoryRepository;
         this.purchaseRequestService = purchaseRequestService;
         this.materialsRepository = materialsRepository;
+        this.reservationService = reservationService;
     }
 
     public Page<SaleOrdersDTO> getFilteredOrders(
@@ -139,6 +139,7 @@ public class SaleOrdersService {
         }
     }
 
+    @RetryOnConflict
     @Transactional
     public void cancelSalesOrder(Long orderId, String rejectionReason) {
         SalesOrder order = saleOrdersRepository.findById(orderId)
@@ -147,127 +148,8 @@ public class SaleOrdersService {
         order.setStatus(SalesOrder.OrderStatus.CANCELLED);
         order.setRejectionReason(rejectionReason);
 
-        // Release RESERVED inventory for products
-        List<SalesOrderDetail> details = order.getDetails();
-        for (SalesOrderDetail detail : details) {
-            Product product = detail.getProduct();
-            double quantityToRelease = detail.getQuantity();
-
-            List<Inventory> reservedInventories = inventoryRepository.findByProductIdAndStatus(
-                    product.getProductId(), Inventory.InventoryStatus.RESERVED);
-
-            Map<Long, Double> warehouseQuantities = new HashMap<>();
-            for (Inventory inventory : reservedInventories) {
-                if (quantityToRelease <= 0) break;
-
-                double quantityInInventory = inventory.getQuantity();
-                double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-
-                Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-
-                quantityToRelease -= quantityToReleaseFromThis;
-            }
-
-            for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                Long warehouseId = entry.getKey();
-                double releasedQuantity = entry.getValue();
-
-                Warehouse warehouse = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .findFirst()
-                        .map(Inventory::getWarehouse)
-                        .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                Inventory availableInventory = inventoryRepository.findByWarehouseAndProductAndStatus(
-                                warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                        .orElse(null);
-
-                if (availableInventory == null) {
-                    availableInventory = Inventory.builder()
-                            .warehouse(warehouse)
-                            .product(product)
-                            .status(Inventory.InventoryStatus.AVAILABLE)
-                            .quantity(0.0)
-                            .build();
-                }
-                availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                availableInventory.setLastUpdated(LocalDateTime.now());
-                availableInventory.setSalesOrder(null);
-                inventoryRepository.save(availableInventory);
-
-                List<Inventory> reservedToDelete = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .toList();
-                inventoryRepository.deleteAll(reservedToDelete);
-            }
-
-            if (quantityToRelease > 0) {
-                System.err.println("Insufficient RESERVED inventory for productId " + product.getProductId() +
-                        ": " + quantityToRelease + " units remaining");
-            }
-        }
-
-        // Release RESERVED inventory for materials
-        List<SalesOrderMaterial> materials = order.getMaterials();
-        for (SalesOrderMaterial material : materials) {
-            Material mat = material.getMaterial();
-            double quantityToRelease = material.getRequiredQuantity();
-
-            List<Inventory> reservedInventories = inventoryRepository.findByMaterialIdAndStatus(
-                    mat.getMaterialId(), Inventory.InventoryStatus.RESERVED);
-
-            Map<Long, Double> warehouseQuantities = new HashMap<>();
-            for (Inventory inventory : reservedInventories) {
-                if (quantityToRelease <= 0) break;
-
-                double quantityInInventory = inventory.getQuantity();
-                double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-
-                Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-
-                quantityToRelease -= quantityToReleaseFromThis;
-            }
-
-            for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                Long warehouseId = entry.getKey();
-                double releasedQuantity = entry.getValue();
-
-                Warehouse warehouse = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .findFirst()
-                        .map(Inventory::getWarehouse)
-                        .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                Inventory availableInventory = inventoryRepository.findByWarehouseAndMaterialAndStatus(
-                                warehouse, mat, Inventory.InventoryStatus.AVAILABLE)
-                        .orElse(null);
-
-                if (availableInventory == null) {
-                    availableInventory = Inventory.builder()
-                            .warehouse(warehouse)
-                            .material(mat)
-                            .status(Inventory.InventoryStatus.AVAILABLE)
-                            .quantity(0.0)
-                            .build();
-                }
-                availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                availableInventory.setLastUpdated(LocalDateTime.now());
-                availableInventory.setSalesOrder(null);
-                inventoryRepository.save(availableInventory);
-
-                List<Inventory> reservedToDelete = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .toList();
-                inventoryRepository.deleteAll(reservedToDelete);
-            }
-
-            if (quantityToRelease > 0) {
-                System.err.println("Insufficient RESERVED inventory for materialId " + mat.getMaterialId() +
-                        ": " + quantityToRelease + " units remaining");
-            }
-        }
+        // Nhả toàn bộ sản phẩm và vật tư đang giữ cho đơn
+        reservationService.releaseAll(orderId);
 
         // Cancel related purchase requests
         List<PurchaseRequest> requests = purchaseRequestRepository.findAllBySalesOrder_OrderId(orderId);
@@ -438,6 +320,7 @@ public class SaleOrdersService {
         return saleOrdersMapper.toDTO(saved);
     }
 
+    @RetryOnConflict
     @Transactional
     public void setPreparingMaterialStatus(PrepareMaterialForSaleOrderDTO request) {
         SalesOrder order = saleOrdersRepository.findById(request.getSaleOrderId())
@@ -0,0 +1,33 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Chọn cost (strength) BCrypt theo máy đang chạy: đo thời gian băm ở cost thấp nhất rồi suy ra cost cao nhất
+ * mà một lần băm vẫn nằm trong thời gian mục tiêu (mỗi bậc cost gấp đôi thời gian). Không bao giờ thấp hơn minStrength
+ * để mật khẩu mới không yếu hơn mặc định cũ.
+ */
+public final class BCryptCostCalibrator {
+    private static final Logger logger = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+    private static final String SAMPLE_PASSWORD = "calibration-Passw0rd";
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(minStrength);
+        // Lượt đầu để JIT làm nóng, chỉ đo lượt sau
+        encoder.encode(SAMPLE_PASSWORD);
+        long startedAt = System.nanoTime();
+        encoder.encode(SAMPLE_PASSWORD);
+        double elapsedMillis = Math.max(0.01, (System.nanoTime() - startedAt) / 1_000_000d);
+
+        int extraRounds = (int) Math.floor(Math.log(targetMillis / elapsedMillis) / Math.log(2));
+        int strength = Math.max(minStrength, Math.min(maxStrength, minStrength + extraRounds));
+        logger.info("BCrypt strength {} took {} ms, using strength {} for target {} ms",
+                minStrength, Math.round(elapsedMillis), strength, targetMillis);
+        return strength;
+    }
+}
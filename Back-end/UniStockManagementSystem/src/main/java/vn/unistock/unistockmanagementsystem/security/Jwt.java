@@ -22,11 +22,23 @@ public class Jwt {
      * Tạo JWT token, với subject = email, và lưu userId, roles vào claim.
      */
     public String generateToken(Long userId, String email, List<String> roles) {
+        return generateToken(userId, email, null, roles, null, null);
+    }
+
+    /**
+     * Tạo JWT token kèm tập role (permSet) và version quyền (permVer) của PermissionRegistry:
+     * khi version chưa đổi, filter lấy quyền từ bộ nhớ mà không cần đọc user từ DB.
+     */
+    public String generateToken(Long userId, String email, String username, List<String> roles,
+                                String permissionSetId, Long permissionVersion) {
         return Jwts.builder()
                 .setSubject("User Info")
                 .claim("email", email)// Subject = email
                 .claim("userId", userId) // Lưu userId trong claim
+                .claim("username", username)
                 .claim("roles", roles)   // Lưu danh sách roles
+                .claim("permSet", permissionSetId)
+                .claim("permVer", permissionVersion)
                 .setIssuedAt(new Date()) // Thời điểm phát hành
                 .setExpiration(new Date(System.currentTimeMillis() + JWT_EXPIRATION_TIME))
                 .signWith(SignatureAlgorithm.HS256, JWT_SECRET_KEY)
@@ -48,6 +60,23 @@ public class Jwt {
         }
     }
 
+    /**
+     * Giải mã và kiểm tra chữ ký một lần, trả về toàn bộ thông tin cần cho xác thực.
+     * Token hết hạn bị jjwt từ chối ngay khi parse (ExpiredJwtException).
+     */
+    @SuppressWarnings("unchecked")
+    public JwtPrincipal parse(String token) {
+        Claims claims = extractClaims(token);
+        return new JwtPrincipal(
+                claims.get("userId", Long.class),
+                claims.get("email", String.class),
+                claims.get("username", String.class),
+                claims.get("roles", List.class),
+                claims.get("permSet", String.class),
+                claims.get("permVer", Long.class),
+                claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE);
+    }
+
     /**
      * Lấy email từ token (được set làm subject).
      */
@@ -0,0 +1,36 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Thông tin đã xác thực của một JWT, chỉ được tạo sau khi chữ ký và hạn dùng đã được kiểm tra.
+ * Không thay đổi sau khi tạo nên có thể dùng chung giữa các request trong {@link VerifiedTokenCache}.
+ */
+@Getter
+public class JwtPrincipal {
+    private final Long userId;
+    private final String email;
+    private final String username;
+    private final List<String> roles;
+    // Tập role (id) và version của PermissionRegistry tại thời điểm cấp token; null với token cũ
+    private final String permissionSetId;
+    private final Long permissionVersion;
+    private final long expiresAtMillis;
+
+    public JwtPrincipal(Long userId, String email, String username, List<String> roles,
+                        String permissionSetId, Long permissionVersion, long expiresAtMillis) {
+        this.userId = userId;
+        this.email = email;
+        this.username = username;
+        this.roles = roles != null ? List.copyOf(roles) : List.of();
+        this.permissionSetId = permissionSetId;
+        this.permissionVersion = permissionVersion;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
@@ -0,0 +1,162 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+import vn.unistock.unistockmanagementsystem.entities.Role;
+import vn.unistock.unistockmanagementsystem.entities.RolePermission;
+import vn.unistock.unistockmanagementsystem.features.admin.role.RoleRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Bản sao trong bộ nhớ của quyền theo role, kèm một version tăng dần. Token được cấp với tập role (permSet) và
+ * version hiện tại; filter dựng principal từ token và registry mà không đọc user từ DB, trừ khi token cấp trước
+ * lần sửa role gần nhất hoặc trước lần sửa chính user đó ({@link UserPrincipalChangedEvent}) - khi đó đọc lại qua
+ * UserPrincipalCache. Version khởi tạo bằng thời điểm khởi động để token cấp trước khi restart không khớp nhầm.
+ */
+@Component
+public class PermissionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(PermissionRegistry.class);
+
+    private final RoleRepository roleRepository;
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    // Version ngay sau lần sửa role/quyền gần nhất; token cấp trước đó không còn dùng được
+    private volatile long rolesChangedAt = version.get();
+    // email -> version ngay sau lần sửa user đó gần nhất
+    private final Map<String, Long> userChangedAt = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+
+    public PermissionRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @Getter
+    public static class PermissionSet {
+        private final List<Long> roleIds;
+        private final List<String> roleNames;
+        private final List<UserPrincipal.PermissionGrant> grants;
+
+        private PermissionSet(List<Long> roleIds, List<String> roleNames, List<UserPrincipal.PermissionGrant> grants) {
+            this.roleIds = List.copyOf(roleIds);
+            this.roleNames = List.copyOf(roleNames);
+            this.grants = List.copyOf(grants);
+        }
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final Map<Long, Role> roles;
+        // permSet -> tập quyền đã gộp, dùng chung cho mọi token cùng tập role
+        private final Map<String, PermissionSet> sets = new ConcurrentHashMap<>();
+
+        private Snapshot(long version, Map<Long, Role> roles) {
+            this.version = version;
+            this.roles = roles;
+        }
+    }
+
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * Id gọn của một tập role: các roleId đã sắp xếp, nối bằng dấu chấm (vd "1.3").
+     */
+    public static String permissionSetId(Collection<Long> roleIds) {
+        return roleIds.stream()
+                .filter(Objects::nonNull)
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining("."));
+    }
+
+    /**
+     * Dựng principal từ token nếu role và user chưa bị sửa kể từ lúc cấp token; null nếu phải đọc lại từ DB.
+     */
+    public UserPrincipal resolve(JwtPrincipal token) {
+        Long tokenVersion = token.getPermissionVersion();
+        if (token.getPermissionSetId() == null || tokenVersion == null
+                || tokenVersion < rolesChangedAt
+                || tokenVersion < userChangedAt.getOrDefault(token.getEmail(), Long.MIN_VALUE)) {
+            return null;
+        }
+        Snapshot current = loadedSnapshot();
+        if (current.version > tokenVersion) {
+            return null;
+        }
+        PermissionSet permissionSet = current.sets.computeIfAbsent(token.getPermissionSetId(), id -> compile(current, id));
+        return permissionSet != null ? UserPrincipal.fromToken(token, permissionSet) : null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPrincipalChanged(UserPrincipalChangedEvent event) {
+        long newVersion = version.incrementAndGet();
+        if (event.affectsAllUsers()) {
+            rolesChangedAt = newVersion;
+            snapshot = null;
+            // Mọi token cũ hơn newVersion đều đã bị loại, không cần nhớ riêng từng user nữa
+            userChangedAt.clear();
+        } else {
+            userChangedAt.put(event.getEmail(), newVersion);
+        }
+        logger.debug("Permission version moved to {}", newVersion);
+    }
+
+    // Snapshot chứa quyền của role tại version rolesChangedAt, nạp lại sau mỗi lần sửa role
+    private Snapshot loadedSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null) {
+                // Sự kiện sửa role cũng khóa trên registry nên không thể chen vào giữa lúc nạp
+                long expectedVersion = rolesChangedAt;
+                Map<Long, Role> roles = new HashMap<>();
+                for (Role role : roleRepository.findAllWithPermissions()) {
+                    roles.put(role.getRoleId(), role);
+                }
+                current = new Snapshot(expectedVersion, roles);
+                logger.info("Loaded permissions of {} roles at version {}", roles.size(), expectedVersion);
+            }
+            snapshot = current;
+            return current;
+        }
+    }
+
+    private static PermissionSet compile(Snapshot snapshot, String permissionSetId) {
+        List<Long> roleIds = new ArrayList<>();
+        List<String> roleNames = new ArrayList<>();
+        Map<List<String>, UserPrincipal.PermissionGrant> grants = new LinkedHashMap<>();
+        if (!permissionSetId.isEmpty()) {
+            for (String part : permissionSetId.split("\\.")) {
+                Role role = snapshot.roles.get(Long.valueOf(part));
+                if (role == null) {
+                    // Role đã bị xóa: để filter đọc lại user từ DB
+                    return null;
+                }
+                roleIds.add(role.getRoleId());
+                roleNames.add(role.getRoleName());
+                if (role.getRolePermissions() == null) {
+                    continue;
+                }
+                for (RolePermission rolePermission : role.getRolePermissions()) {
+                    Permission p = rolePermission.getPermission();
+                    if (p != null) {
+                        grants.putIfAbsent(Arrays.asList(p.getHttpMethod(), p.getUrlPattern()),
+                                new UserPrincipal.PermissionGrant(p.getHttpMethod(), p.getUrlPattern(), p.getPermissionName()));
+                    }
+                }
+            }
+        }
+        return new PermissionSet(roleIds, roleNames, new ArrayList<>(grants.values()));
+    }
+}
@@ -1,6 +1,8 @@
 package vn.unistock.unistockmanagementsystem.security;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,6 +21,7 @@ import org.springframework.web.filter.CorsFilter;
 
 import vn.unistock.unistockmanagementsystem.security.filter.DynamicAuthorizationFilter;
 import vn.unistock.unistockmanagementsystem.security.filter.JwtAuthenticationFilter;
+import vn.unistock.unistockmanagementsystem.security.filter.RateLimitFilter;
 
 import java.util.List;
 
@@ -29,6 +32,7 @@ public class SecurityConfig {
 
     private final DynamicAuthorizationFilter dynamicAuthorizationFilter;
     private final JwtAuthenticationFilter      jwtAuthenticationFilter;
+    private final RateLimitFilter              rateLimitFilter;
 
     /* =======================================================================
        SECURITY FILTER CHAIN
@@ -40,6 +44,8 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // Lượt dispatch ASYNC (đăng nhập bất đồng bộ, luồng SSE) đã được xác thực ở lượt REQUEST đầu tiên
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/api/unistock/auth/login",
                                 "/api/unistock/auth/forgot-password",
@@ -49,6 +55,8 @@ public class SecurityConfig {
                         .permitAll()
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // Sau JwtAuthenticationFilter để tính theo user đã xác thực, trước khi kiểm tra quyền
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class)
                 .addFilterAfter(dynamicAuthorizationFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -90,8 +98,11 @@ public class SecurityConfig {
     /* =======================================================================
        PASSWORD ENCODER
        ===================================================================== */
+    // Cost được chọn lúc khởi động theo thời gian băm mục tiêu; hash cũ với cost khác vẫn so khớp bình thường
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.password.target-millis:100}") long targetMillis,
+                                           @Value("${security.password.min-strength:10}") int minStrength,
+                                           @Value("${security.password.max-strength:14}") int maxStrength) {
+        return new BCryptPasswordEncoder(BCryptCostCalibrator.calibrate(targetMillis, minStrength, maxStrength));
     }
 }
@@ -0,0 +1,100 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+import vn.unistock.unistockmanagementsystem.entities.Role;
+import vn.unistock.unistockmanagementsystem.entities.RolePermission;
+import vn.unistock.unistockmanagementsystem.entities.User;
+
+import java.util.*;
+
+/**
+ * Ảnh chụp gọn, bất biến của user đăng nhập: chỉ gồm các trường cần cho xác thực, phân quyền và /auth/me.
+ * Được cache thay cho entity User (kèm roles, rolePermissions, permissions) nên không giữ mật khẩu hay
+ * entity được quản lý bởi Hibernate trong bộ nhớ dùng chung.
+ */
+@Getter
+public class UserPrincipal {
+    private final Long userId;
+    private final String email;
+    private final String username;
+    private final Boolean active;
+    private final String avatar;
+    private final List<Long> roleIds;
+    private final List<String> roleNames;
+    private final List<PermissionGrant> permissions;
+
+    @Getter
+    @AllArgsConstructor
+    public static class PermissionGrant {
+        private final String httpMethod;
+        private final String urlPattern;
+        private final String permissionName;
+    }
+
+    private UserPrincipal(Long userId, String email, String username, Boolean active, String avatar,
+                          List<Long> roleIds, List<String> roleNames, List<PermissionGrant> permissions) {
+        this.userId = userId;
+        this.email = email;
+        this.username = username;
+        this.active = active;
+        this.avatar = avatar;
+        this.roleIds = List.copyOf(roleIds);
+        this.roleNames = List.copyOf(roleNames);
+        this.permissions = List.copyOf(permissions);
+    }
+
+    /**
+     * Tạo principal từ User đã fetch đủ roles -> rolePermissions -> permission; permission trùng giữa các role được gộp.
+     */
+    public static UserPrincipal from(User user) {
+        List<Role> roles = new ArrayList<>(user.getRoles() != null ? user.getRoles() : Set.of());
+        roles.sort(Comparator.comparing(Role::getRoleId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<Long> roleIds = new ArrayList<>();
+        List<String> roleNames = new ArrayList<>();
+        Map<Object, PermissionGrant> grants = new LinkedHashMap<>();
+        for (Role role : roles) {
+            if (role.getRoleId() != null) {
+                roleIds.add(role.getRoleId());
+            }
+            roleNames.add(role.getRoleName());
+            if (role.getRolePermissions() == null) {
+                continue;
+            }
+            for (RolePermission rolePermission : role.getRolePermissions()) {
+                Permission p = rolePermission.getPermission();
+                if (p == null) {
+                    continue;
+                }
+                Object key = p.getPermissionId() != null ? p.getPermissionId() : Arrays.asList(p.getHttpMethod(), p.getUrlPattern());
+                grants.putIfAbsent(key, new PermissionGrant(p.getHttpMethod(), p.getUrlPattern(), p.getPermissionName()));
+            }
+        }
+        String avatar = user.getUserDetail() != null ? user.getUserDetail().getProfilePicture() : null;
+        return new UserPrincipal(user.getUserId(), user.getEmail(), user.getUsername(), user.getIsActive(), avatar,
+                roleIds, roleNames, new ArrayList<>(grants.values()));
+    }
+
+    /**
+     * Tạo principal từ claim của token và tập quyền lấy từ PermissionRegistry, không đọc DB.
+     * Không có avatar; user được coi là đang hoạt động vì mọi thay đổi user đều làm đổi version quyền.
+     */
+    public static UserPrincipal fromToken(JwtPrincipal token, PermissionRegistry.PermissionSet permissionSet) {
+        return new UserPrincipal(token.getUserId(), token.getEmail(), token.getUsername(), true, null,
+                permissionSet.getRoleIds(), permissionSet.getRoleNames(), permissionSet.getGrants());
+    }
+
+    /**
+     * User chỉ có khóa và thông tin cơ bản, dùng để gán làm người tạo (createdBy) khi lưu chứng từ.
+     */
+    public User toUserReference() {
+        return User.builder()
+                .userId(userId)
+                .email(email)
+                .username(username)
+                .isActive(active)
+                .build();
+    }
+}
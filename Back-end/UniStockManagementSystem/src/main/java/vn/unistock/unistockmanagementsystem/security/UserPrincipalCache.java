@@ -0,0 +1,74 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache {@link UserPrincipal} theo email, giới hạn số phần tử và thời gian sống (Caffeine).
+ * Bị xóa khi có {@link UserPrincipalChangedEvent}, sau khi transaction phát sự kiện đã commit để
+ * request song song không nạp lại dữ liệu cũ.
+ */
+@Component
+public class UserPrincipalCache {
+    private static final Logger logger = LoggerFactory.getLogger(UserPrincipalCache.class);
+
+    private final LoginService loginService;
+    private final Cache<String, UserPrincipal> cache;
+    // Caffeine chỉ đếm phần tử bị loại do đầy/hết hạn, số lần xóa theo sự kiện được đếm riêng
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    public UserPrincipalCache(LoginService loginService,
+                              @Value("${security.principal-cache.max-size:10000}") long maxSize,
+                              @Value("${security.principal-cache.ttl-minutes:10}") long ttlMinutes) {
+        this.loginService = loginService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Trả về principal của user, nạp từ DB nếu chưa có; null nếu không tồn tại (không được cache).
+     */
+    public UserPrincipal get(String email) {
+        return cache.get(email, loginService::loadPrincipalByEmail);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(UserPrincipalChangedEvent event) {
+        invalidationCount.incrementAndGet();
+        if (event.affectsAllUsers()) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(event.getEmail());
+        }
+        logger.debug("Principal cache evicted for {}", event.affectsAllUsers() ? "all users" : event.getEmail());
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("invalidationCount", invalidationCount.get());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        result.put("averageLoadPenaltyMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return result;
+    }
+}
@@ -0,0 +1,28 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import lombok.Getter;
+
+/**
+ * Phát ra khi thông tin dùng cho xác thực/phân quyền của user thay đổi (user, role, quyền của role).
+ * email = null nghĩa là có thể ảnh hưởng tới mọi user, ví dụ khi sửa quyền của một role.
+ */
+@Getter
+public class UserPrincipalChangedEvent {
+    private final String email;
+
+    private UserPrincipalChangedEvent(String email) {
+        this.email = email;
+    }
+
+    public static UserPrincipalChangedEvent of(String email) {
+        return new UserPrincipalChangedEvent(email);
+    }
+
+    public static UserPrincipalChangedEvent all() {
+        return new UserPrincipalChangedEvent(null);
+    }
+
+    public boolean affectsAllUsers() {
+        return email == null;
+    }
+}
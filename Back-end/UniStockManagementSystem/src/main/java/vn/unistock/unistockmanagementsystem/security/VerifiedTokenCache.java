@@ -0,0 +1,78 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache các token đã xác thực, khóa là SHA-256 của token (không giữ token gốc trong bộ nhớ).
+ * Request lặp lại với cùng token chỉ tốn một lần băm thay vì giải mã và kiểm tra chữ ký HMAC.
+ * Mục hết hạn bị bỏ qua khi đọc và được dọn định kỳ; khi cache đầy thì token mới chỉ được xác thực mà không lưu.
+ */
+@Component
+public class VerifiedTokenCache {
+    private static final Logger logger = LoggerFactory.getLogger(VerifiedTokenCache.class);
+
+    private final Jwt jwt;
+    private final int maxSize;
+    private final Map<String, JwtPrincipal> entries = new ConcurrentHashMap<>();
+
+    public VerifiedTokenCache(Jwt jwt, @Value("${jwt.cache.max-size:10000}") int maxSize) {
+        this.jwt = jwt;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Trả về principal của token, lấy từ cache nếu có. Ném ngoại lệ của jjwt nếu token sai chữ ký hoặc đã hết hạn.
+     */
+    public JwtPrincipal verify(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        JwtPrincipal cached = entries.get(key);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return cached;
+            }
+            entries.remove(key, cached);
+        }
+
+        JwtPrincipal principal = jwt.parse(token);
+        if (entries.size() >= maxSize) {
+            evictExpired();
+        }
+        if (entries.size() < maxSize) {
+            entries.put(key, principal);
+        }
+        return principal;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(principal -> principal.isExpired(now));
+        logger.debug("Evicted {} expired tokens, {} remaining", before - entries.size(), entries.size());
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
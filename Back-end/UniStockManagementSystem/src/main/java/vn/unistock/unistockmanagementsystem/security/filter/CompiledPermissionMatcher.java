@@ -0,0 +1,101 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import org.springframework.web.util.pattern.PatternParseException;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+
+import java.util.*;
+
+/**
+ * Tập permission của một nhóm role đã được biên dịch sẵn. URL không chứa biến/wildcard được tra bằng HashSet;
+ * các pattern còn lại được chia theo phần tiền tố cố định (các segment trước biến/wildcard đầu tiên), nên mỗi request
+ * chỉ cần tra theo từng tiền tố của URI rồi so khớp vài PathPattern trong nhóm đó.
+ */
+public class CompiledPermissionMatcher {
+    private static final String ALL_METHODS = "ALL";
+    private static final PathPatternParser PARSER = PathPatternParser.defaultInstance;
+
+    // method -> URL cố định
+    private final Map<String, Set<String>> exactPaths = new HashMap<>();
+    // method -> tiền tố cố định -> các pattern có tiền tố đó
+    private final Map<String, Map<String, List<PathPattern>>> patternsByPrefix = new HashMap<>();
+
+    public CompiledPermissionMatcher(Collection<UserPrincipal.PermissionGrant> permissions) {
+        for (UserPrincipal.PermissionGrant permission : permissions) {
+            if (permission.getHttpMethod() == null || permission.getUrlPattern() == null) {
+                continue;
+            }
+            String method = permission.getHttpMethod().toUpperCase(Locale.ROOT);
+            String pattern = permission.getUrlPattern();
+            if (!isPattern(pattern)) {
+                exactPaths.computeIfAbsent(method, m -> new HashSet<>()).add(pattern);
+                continue;
+            }
+            try {
+                patternsByPrefix.computeIfAbsent(method, m -> new HashMap<>())
+                        .computeIfAbsent(literalPrefix(pattern), p -> new ArrayList<>())
+                        .add(PARSER.parse(pattern));
+            } catch (PatternParseException e) {
+                // Pattern không hợp lệ thì không cấp quyền nào
+            }
+        }
+    }
+
+    public boolean matches(String method, String uri) {
+        String upperMethod = method.toUpperCase(Locale.ROOT);
+        return matchesFor(upperMethod, uri) || matchesFor(ALL_METHODS, uri);
+    }
+
+    private boolean matchesFor(String method, String uri) {
+        Set<String> exact = exactPaths.get(method);
+        if (exact != null && exact.contains(uri)) {
+            return true;
+        }
+        Map<String, List<PathPattern>> buckets = patternsByPrefix.get(method);
+        if (buckets == null) {
+            return false;
+        }
+
+        PathContainer path = null;
+        int end = 0;
+        while (end >= 0) {
+            // Tiền tố "", "/api", "/api/unistock", ... cho tới toàn bộ URI
+            List<PathPattern> candidates = buckets.get(uri.substring(0, end));
+            if (candidates != null) {
+                if (path == null) {
+                    path = PathContainer.parsePath(uri);
+                }
+                for (PathPattern candidate : candidates) {
+                    if (candidate.matches(path)) {
+                        return true;
+                    }
+                }
+            }
+            if (end == uri.length()) {
+                break;
+            }
+            int next = uri.indexOf('/', end + 1);
+            end = next >= 0 ? next : uri.length();
+        }
+        return false;
+    }
+
+    private static boolean isPattern(String pattern) {
+        return pattern.indexOf('{') >= 0 || pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0;
+    }
+
+    private static String literalPrefix(String pattern) {
+        int wildcard = pattern.length();
+        for (char c : new char[]{'{', '*', '?'}) {
+            int index = pattern.indexOf(c);
+            if (index >= 0) {
+                wildcard = Math.min(wildcard, index);
+            }
+        }
+        // Cắt về ranh giới segment cuối cùng trước ký tự đặc biệt
+        int lastSlash = pattern.lastIndexOf('/', wildcard - 1);
+        return lastSlash > 0 ? pattern.substring(0, lastSlash) : "";
+    }
+}
@@ -2,32 +2,22 @@ package vn.unistock.unistockmanagementsystem.security.filter;
 
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import vn.unistock.unistockmanagementsystem.entities.Permission;
-import vn.unistock.unistockmanagementsystem.entities.Role;
-import vn.unistock.unistockmanagementsystem.entities.RolePermission;
 import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class CustomUserDetails implements UserDetails {
-    private final User user;
-    private final Set<Permission> allPermissions = new HashSet<>();
-
-    public CustomUserDetails(User user) {
-        this.user = user;
-        // Gộp tất cả permission từ các role
-        for (Role r : user.getRoles()) {
-            for (RolePermission rp : r.getRolePermissions()) {
-                allPermissions.add(rp.getPermission());
-            }
-        }
+    private final UserPrincipal principal;
+
+    public CustomUserDetails(UserPrincipal principal) {
+        this.principal = principal;
     }
 
-    public Set<Permission> getAllPermissions() {
-        return allPermissions;
+    // Quyền đã gộp từ tất cả các role của user
+    public List<UserPrincipal.PermissionGrant> getAllPermissions() {
+        return principal.getPermissions();
     }
 
     @Override
@@ -44,8 +34,14 @@ public class CustomUserDetails implements UserDetails {
     public String getUsername() {
         return "";
     }
+
+    public UserPrincipal getPrincipal() {
+        return this.principal;
+    }
+
+    // User chỉ mang khóa và thông tin cơ bản, đủ để gán làm người tạo chứng từ
     public User getUser() {
-        return this.user;
+        return principal.toUserReference();
     }
 
 }
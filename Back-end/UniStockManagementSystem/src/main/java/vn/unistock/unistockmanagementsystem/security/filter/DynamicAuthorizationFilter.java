@@ -6,20 +6,21 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
-import vn.unistock.unistockmanagementsystem.entities.Permission;
 
 import java.io.IOException;
 
 @Component
 @RequiredArgsConstructor
 public class DynamicAuthorizationFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(DynamicAuthorizationFilter.class);
 
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private final PermissionMatcherCache permissionMatcherCache;
 
     @Override
     protected void doFilterInternal(
@@ -35,7 +36,12 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
                 || request.getRequestURI().equals("/api/unistock/profile")
                 || request.getRequestURI().equals("/api/unistock/profile/change-password")
                 || request.getRequestURI().equals("/api/unistock/profile/avatar")
-                || request.getRequestURI().equals("/api/unistock/user/notification/unread")) {
+                || request.getRequestURI().equals("/api/unistock/user/notification/unread")
+                || request.getRequestURI().equals("/api/unistock/user/notification/stream")
+                || request.getRequestURI().equals("/api/unistock/user/notification/inbox")
+                || request.getRequestURI().equals("/api/unistock/user/notification/unread-count")
+                || request.getRequestURI().equals("/api/unistock/user/notification/read")
+                || request.getRequestURI().equals("/api/unistock/user/notification/read-all")) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -58,16 +64,12 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
         String method = request.getMethod();        // GET, POST, ...
         String uri = request.getRequestURI();       // /api/xxx
 
-        // In ra console để debug
-        System.out.println("=== DynamicAuthorizationFilter: Checking permission for "
-                + method + " " + uri + " ===");
-
         // 4) Kiểm tra xem user có Permission khớp (method, uri) không
         boolean isAllowed = checkPermission(userDetails, method, uri);
 
         if (!isAllowed) {
             // 403 Forbidden
-            System.out.println(">>> No matching permission => 403 Forbidden");
+            logger.debug("No permission matches {} {} for userId={}", method, uri, userDetails.getPrincipal().getUserId());
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Forbidden");
             return;
         }
@@ -77,29 +79,7 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
     }
 
     private boolean checkPermission(CustomUserDetails userDetails, String method, String uri) {
-        // Lấy danh sách Permission của user
-        for (Permission p : userDetails.getAllPermissions()) {
-
-            // Log permission đang so sánh
-            System.out.println("  Checking Permission: "
-                    + p.getHttpMethod() + " " + p.getUrlPattern());
-
-            // So khớp method
-            if (p.getHttpMethod().equalsIgnoreCase(method)
-                    || p.getHttpMethod().equalsIgnoreCase("ALL")) {
-
-                // So khớp urlPattern
-                boolean matched = antPathMatcher.match(p.getUrlPattern(), uri);
-
-                System.out.println("    antPathMatcher.match(\""
-                        + p.getUrlPattern() + "\", \"" + uri + "\") => " + matched);
-
-                if (matched) {
-                    System.out.println("    => FOUND matching permission, allow");
-                    return true; // Tìm thấy permission khớp => cho qua
-                }
-            }
-        }
-        return false; // Không tìm thấy permission phù hợp
+        // Matcher đã biên dịch sẵn cho tập role của user, dùng chung giữa các request
+        return permissionMatcherCache.matcherFor(userDetails).matches(method, uri);
     }
-}
\ No newline at end of file
+}
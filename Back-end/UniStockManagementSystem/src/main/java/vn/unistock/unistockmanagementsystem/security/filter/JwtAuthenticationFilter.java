@@ -5,23 +5,28 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import vn.unistock.unistockmanagementsystem.entities.User;
-import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
-import vn.unistock.unistockmanagementsystem.security.Jwt;
+import vn.unistock.unistockmanagementsystem.security.JwtPrincipal;
+import vn.unistock.unistockmanagementsystem.security.PermissionRegistry;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalCache;
+import vn.unistock.unistockmanagementsystem.security.VerifiedTokenCache;
 
 import java.io.IOException;
-import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
-    private final Jwt jwtUtil;           // Class parse/generate token
-    private final LoginService loginService; // Để load User từ DB
+    private final VerifiedTokenCache verifiedTokenCache; // Xác thực token, bỏ qua kiểm tra chữ ký nếu token đã gặp
+    private final PermissionRegistry permissionRegistry; // Quyền theo role trong bộ nhớ, dùng khi version quyền trong token còn hiệu lực
+    private final UserPrincipalCache userPrincipalCache; // Principal của user, nạp từ DB khi chưa có trong cache
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -29,42 +34,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
-        // In ra để biết filter đã được gọi
-        System.out.println("=== JwtAuthenticationFilter: doFilterInternal START ===");
-
         // 1) Lấy header Authorization
         String authHeader = request.getHeader("Authorization");
-        System.out.println("JwtAuthenticationFilter: Authorization header = " + authHeader);
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7); // Bỏ "Bearer "
-            System.out.println("JwtAuthenticationFilter: Extracted token = " + token);
 
             try {
-                // 2) Giải mã token => lấy email, userId, roles
-                String email = jwtUtil.extractEmail(token);
-                Long userId = jwtUtil.extractUserId(token);
-                List<String> roles = jwtUtil.extractRoles(token);
-
-                System.out.println("JwtAuthenticationFilter: email=" + email
-                        + ", userId=" + userId
-                        + ", roles=" + roles);
+                // 2) Giải mã token một lần => lấy email, userId, roles (token sai chữ ký/hết hạn ném ngoại lệ)
+                JwtPrincipal principal = verifiedTokenCache.verify(token);
+                String email = principal.getEmail();
 
-                // (Tuỳ chọn) Kiểm tra token hợp lệ
-                if (!jwtUtil.validateToken(token, email)) {
-                    System.out.println("JwtAuthenticationFilter: Token invalid or expired => skip authentication");
+                if (email == null) {
+                    logger.debug("Token has no email, skipping authentication for {}", request.getRequestURI());
                     filterChain.doFilter(request, response);
                     return;
                 }
 
-                // 3) Load user từ DB (bằng email)
-                User user = loginService.loadUserByEmail(email);
-                System.out.println("JwtAuthenticationFilter: Loaded user from DB = " + user);
+                // 3) Dựng principal từ token nếu quyền chưa đổi kể từ lúc cấp token, nếu không thì lấy theo email
+                UserPrincipal user = permissionRegistry.resolve(principal);
+                boolean fromToken = user != null;
+                if (user == null) {
+                    user = userPrincipalCache.get(email);
+                }
 
                 if (user != null) {
                     // 4) Tạo CustomUserDetails
                     CustomUserDetails userDetails = new CustomUserDetails(user);
-                    System.out.println("JwtAuthenticationFilter: Created CustomUserDetails");
 
                     // 5) Tạo Authentication và set vào SecurityContext
                     UsernamePasswordAuthenticationToken auth =
@@ -72,20 +68,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     userDetails, null, userDetails.getAuthorities()
                             );
                     SecurityContextHolder.getContext().setAuthentication(auth);
-
-                    System.out.println("JwtAuthenticationFilter: Set authentication into SecurityContext");
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Authenticated userId={} roles={} fromToken={} for {} {}",
+                            user != null ? user.getUserId() : null, principal.getRoles(), fromToken,
+                            request.getMethod(), request.getRequestURI());
                 }
             } catch (Exception e) {
-                // Token không hợp lệ => có thể log hoặc bỏ qua
-                System.out.println("JwtAuthenticationFilter: Exception while parsing token => " + e.getMessage());
-                // Ở đây ta cho qua, vẫn gọi filterChain.doFilter()
+                // Token không hợp lệ => cho qua như request chưa đăng nhập, không ghi nội dung token
+                logger.debug("Rejected bearer token for {}: {}", request.getRequestURI(), e.getMessage());
             }
-        } else {
-            System.out.println("JwtAuthenticationFilter: No Bearer token found => skip authentication");
         }
 
         // 6) Cho request đi tiếp
-        System.out.println("=== JwtAuthenticationFilter: doFilterInternal END ===\n");
         filterChain.doFilter(request, response);
     }
 }
@@ -0,0 +1,75 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionRepository;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalChangedEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giữ {@link CompiledPermissionMatcher} theo tập role của user: mọi user có cùng tập role dùng chung một matcher.
+ * Matcher được biên dịch từ quyền hiện có trong CSDL của các role đó, không lấy từ principal (có thể đã cũ).
+ * Khi quyền của role thay đổi (UserPrincipalChangedEvent cho mọi user), {@link #invalidateAll()} tăng thế hệ
+ * của cache, nên matcher bắt đầu nạp trước lần xóa đó sẽ không được dùng lại.
+ */
+@Component
+@RequiredArgsConstructor
+public class PermissionMatcherCache {
+    private static final Logger logger = LoggerFactory.getLogger(PermissionMatcherCache.class);
+
+    private final PermissionRepository permissionRepository;
+
+    private final Map<List<Long>, Entry> matchers = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public CompiledPermissionMatcher matcherFor(CustomUserDetails userDetails) {
+        List<Long> roleKey = userDetails.getPrincipal().getRoleIds();
+        // Đọc thế hệ trước khi nạp quyền: nếu invalidateAll() chen vào giữa, entry mang thế hệ cũ và bị bỏ qua
+        long current = generation.get();
+        Entry cached = matchers.get(roleKey);
+        if (cached != null && cached.generation == current) {
+            return cached.matcher;
+        }
+        List<UserPrincipal.PermissionGrant> permissions = roleKey.isEmpty() ? List.of() : permissionRepository.findByRoleIds(roleKey)
+                .stream()
+                .map(p -> new UserPrincipal.PermissionGrant(p.getHttpMethod(), p.getUrlPattern(), p.getPermissionName()))
+                .toList();
+        logger.debug("Compiling {} permissions for roles {}", permissions.size(), roleKey);
+        CompiledPermissionMatcher matcher = new CompiledPermissionMatcher(permissions);
+        matchers.merge(roleKey, new Entry(current, matcher),
+                (existing, loaded) -> existing.generation >= loaded.generation ? existing : loaded);
+        return matcher;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(UserPrincipalChangedEvent event) {
+        // Thay đổi của riêng một user không làm đổi quyền của tập role
+        if (event.affectsAllUsers()) {
+            invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        matchers.clear();
+        logger.debug("Permission matchers invalidated");
+    }
+
+    private static final class Entry {
+        private final long generation;
+        private final CompiledPermissionMatcher matcher;
+
+        private Entry(long generation, CompiledPermissionMatcher matcher) {
+            this.generation = generation;
+            this.matcher = matcher;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Giới hạn tần suất request bằng token bucket. User đã đăng nhập bị tính theo userId, request ẩn danh
+ * (login, quên mật khẩu, ...) theo IP. Mỗi luật trong rate-limit.rules gán pattern URL vào một bucket với giá token
+ * riêng, nên một lần xem báo cáo tốn nhiều token hơn một lần gọi danh sách. Hết token thì trả 429 kèm Retry-After.
+ * Chạy sau JwtAuthenticationFilter để biết user.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final RateLimitProperties properties;
+    private final List<CompiledRule> rules = new ArrayList<>();
+    // "<bucket>|<u:userId hoặc ip:địa chỉ>" -> bucket; bucket lâu không dùng thì tự bị bỏ
+    private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .maximumSize(100_000)
+            .build();
+
+    private static class CompiledRule {
+        private final PathPattern pattern;
+        private final String method;
+        private final String bucket;
+        private final int cost;
+
+        private CompiledRule(PathPattern pattern, String method, String bucket, int cost) {
+            this.pattern = pattern;
+            this.method = method;
+            this.bucket = bucket;
+            this.cost = cost;
+        }
+    }
+
+    public RateLimitFilter(RateLimitProperties properties) {
+        this.properties = properties;
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            String bucket = rule.getBucket() != null ? rule.getBucket() : properties.getDefaultBucket();
+            if (!properties.getBuckets().containsKey(bucket)) {
+                throw new IllegalStateException("rate-limit rule " + rule.getPattern() + " refers to unknown bucket " + bucket);
+            }
+            rules.add(new CompiledRule(PathPatternParser.defaultInstance.parse(rule.getPattern()),
+                    rule.getMethod(), bucket, rule.getCost()));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        PathContainer path = PathContainer.parsePath(request.getRequestURI());
+
+        String bucketName = properties.getDefaultBucket();
+        int cost = properties.getDefaultCost();
+        for (CompiledRule rule : rules) {
+            if ((rule.method == null || rule.method.equalsIgnoreCase(method)) && rule.pattern.matches(path)) {
+                bucketName = rule.bucket;
+                cost = rule.cost;
+                break;
+            }
+        }
+
+        RateLimitProperties.BucketConfig config = properties.getBuckets().get(bucketName);
+        if (config == null || cost <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String client = clientKey(request);
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(bucketName + "|" + client,
+                key -> new TokenBucket(config.getCapacity(), config.getRefillPerSecond(), now));
+        long waitNanos = bucket.tryConsume(cost, now);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (long) Math.ceil(Math.min(waitNanos, Duration.ofDays(1).toNanos()) / 1e9));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rate limited {} {} for {} (bucket {}, retry after {}s)",
+                        method, request.getRequestURI(), client, bucketName, retryAfterSeconds);
+            }
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Quá nhiều yêu cầu, vui lòng thử lại sau");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            return "u:" + userDetails.getPrincipal().getUserId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
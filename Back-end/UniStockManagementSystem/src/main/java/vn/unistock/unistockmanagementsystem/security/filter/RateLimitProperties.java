@@ -0,0 +1,44 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cấu hình rate-limit.*: các bucket (sức chứa, tốc độ nạp lại) và luật theo pattern URL chỉ định request rơi vào
+ * bucket nào với giá bao nhiêu token. Request không khớp luật nào dùng default-bucket với giá default-cost.
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private String defaultBucket = "api";
+    private int defaultCost = 1;
+    private Map<String, BucketConfig> buckets = new LinkedHashMap<>();
+    private List<Rule> rules = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class BucketConfig {
+        private long capacity;
+        private double refillPerSecond;
+    }
+
+    @Getter
+    @Setter
+    public static class Rule {
+        private String pattern;
+        private String method; // null: mọi method
+        private String bucket;  // null: default-bucket
+        private int cost = 1;
+    }
+}
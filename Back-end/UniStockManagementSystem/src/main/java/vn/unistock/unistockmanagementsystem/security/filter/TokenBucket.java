@@ -0,0 +1,54 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token bucket không khóa: trạng thái (số token, thời điểm nạp gần nhất) là một đối tượng bất biến,
+ * đổi bằng compareAndSet nên nhiều request cùng lúc không phải chờ nhau.
+ */
+public class TokenBucket {
+
+    private final long capacity;
+    private final double refillPerNano;
+    private final AtomicReference<State> state;
+
+    private static final class State {
+        private final double tokens;
+        private final long refilledAt;
+
+        private State(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+
+    public TokenBucket(long capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+
+    /**
+     * Lấy cost token nếu đủ.
+     *
+     * @return 0 nếu được phép, ngược lại số nano giây cần chờ tới khi đủ token
+     */
+    public long tryConsume(int cost, long nowNanos) {
+        double needed = Math.min(cost, capacity);
+        while (true) {
+            State current = state.get();
+            long elapsed = Math.max(0, nowNanos - current.refilledAt);
+            double available = Math.min(capacity, current.tokens + elapsed * refillPerNano);
+            if (available < needed) {
+                if (refillPerNano <= 0) {
+                    return Long.MAX_VALUE;
+                }
+                return (long) Math.ceil((needed - available) / refillPerNano);
+            }
+            State next = new State(available - needed, Math.max(nowNanos, current.refilledAt));
+            if (state.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package vn.unistock.unistockmanagementsystem.security.scanner;
 
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.method.HandlerMethod;
@@ -12,28 +15,90 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 import vn.unistock.unistockmanagementsystem.entities.Permission;
 import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionRepository;
 
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Đồng bộ bảng permissions với các endpoint đang có. Toàn bộ permission được đọc một lần, so sánh trong bộ nhớ
+ * với handler map, rồi chỉ ghi các dòng mới và các dòng đổi tên bằng batch JDBC.
+ */
 @Component
 @RequiredArgsConstructor
 public class EndpointScanner implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(EndpointScanner.class);
+    private static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO permissions (http_method, url_pattern, permission_name, description) VALUES (?, ?, ?, ?)";
+    private static final String RENAME_SQL =
+            "UPDATE permissions SET permission_name = ? WHERE permission_id = ?";
 
     private final ApplicationContext applicationContext;
     private final PermissionRepository endpointRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     @Override
     public void run(ApplicationArguments args) {
+        long startedAt = System.nanoTime();
+
         // Lấy bean RequestMappingHandlerMapping từ context
         RequestMappingHandlerMapping handlerMapping = applicationContext.getBean(RequestMappingHandlerMapping.class);
 
-        // Lấy toàn bộ map: RequestMappingInfo -> HandlerMethod
-        Map<RequestMappingInfo, HandlerMethod> map = handlerMapping.getHandlerMethods();
+        // (httpMethod, urlPattern) -> permissionName của mọi endpoint đang có
+        Map<List<String>, String> endpoints = collectEndpoints(handlerMapping.getHandlerMethods());
+
+        // (httpMethod, urlPattern) -> permission đã lưu, đọc một lần
+        Map<List<String>, Permission> existing = new HashMap<>();
+        for (Permission permission : endpointRepository.findAll()) {
+            // Dòng nhập tay thiếu method/pattern không khớp endpoint nào (và List.of không nhận null)
+            if (permission.getHttpMethod() == null || permission.getUrlPattern() == null) {
+                continue;
+            }
+            existing.putIfAbsent(List.of(permission.getHttpMethod(), permission.getUrlPattern()), permission);
+        }
+
+        List<Permission> inserts = new ArrayList<>();
+        List<Permission> renames = new ArrayList<>();
+        endpoints.forEach((key, permissionName) -> {
+            Permission current = existing.get(key);
+            if (current == null) {
+                inserts.add(Permission.builder()
+                        .httpMethod(key.get(0))
+                        .urlPattern(key.get(1))
+                        .permissionName(permissionName)
+                        .description("Tự động scan")
+                        .build());
+            } else if (!permissionName.equals(current.getPermissionName())) {
+                current.setPermissionName(permissionName);
+                renames.add(current);
+            }
+        });
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts, BATCH_SIZE, (ps, p) -> {
+                ps.setString(1, p.getHttpMethod());
+                ps.setString(2, p.getUrlPattern());
+                ps.setString(3, p.getPermissionName());
+                ps.setString(4, p.getDescription());
+            });
+        }
+        if (!renames.isEmpty()) {
+            jdbcTemplate.batchUpdate(RENAME_SQL, renames, BATCH_SIZE, (ps, p) -> {
+                ps.setString(1, p.getPermissionName());
+                ps.setLong(2, p.getPermissionId());
+            });
+        }
+
+        logger.info("Scanned {} endpoints against {} permissions: {} inserted, {} renamed in {} ms",
+                endpoints.size(), existing.size(), inserts.size(), renames.size(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+    }
 
+    private Map<List<String>, String> collectEndpoints(Map<RequestMappingInfo, HandlerMethod> map) {
+        Map<List<String>, String> endpoints = new LinkedHashMap<>();
         for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : map.entrySet()) {
             RequestMappingInfo mappingInfo = entry.getKey();
-            HandlerMethod handlerMethod = entry.getValue();
+            // Lấy tên method để làm permissionName (hoặc parse annotation nếu muốn)
+            String permissionName = entry.getValue().getMethod().getName();
 
             // Lấy ra tập method (GET, POST, ...)
             Set<RequestMethod> methods = mappingInfo.getMethodsCondition().getMethods();
@@ -49,44 +114,20 @@ public class EndpointScanner implements ApplicationRunner {
             }
             // ---------------------------------------------------------------------------------
 
-            // Nếu lấy được patterns
-            if (patterns != null) {
-                for (String pattern : patterns) {
-                    // Nếu methods trống, nghĩa là endpoint chấp nhận ALL method
-                    if (methods.isEmpty()) {
-                        saveOrUpdateEndpoint("ALL", pattern, handlerMethod);
-                    } else {
-                        // Nếu có nhiều method, lặp qua từng method
-                        for (RequestMethod m : methods) {
-                            saveOrUpdateEndpoint(m.name(), pattern, handlerMethod);
-                        }
+            if (patterns == null) {
+                continue;
+            }
+            for (String pattern : patterns) {
+                // Nếu methods trống, nghĩa là endpoint chấp nhận ALL method
+                if (methods.isEmpty()) {
+                    endpoints.put(List.of("ALL", pattern), permissionName);
+                } else {
+                    for (RequestMethod m : methods) {
+                        endpoints.put(List.of(m.name(), pattern), permissionName);
                     }
                 }
             }
         }
-    }
-
-    private void saveOrUpdateEndpoint(String httpMethod, String pattern, HandlerMethod handlerMethod) {
-        // Lấy tên method để làm permissionName (hoặc parse annotation nếu muốn)
-        String permissionName = handlerMethod.getMethod().getName();
-
-        // Kiểm tra xem đã tồn tại trong DB chưa (theo cặp httpMethod + urlPattern)
-        Optional<Permission> existingOpt = endpointRepository.findByHttpMethodAndUrlPattern(httpMethod, pattern);
-
-        if (existingOpt.isPresent()) {
-            // Nếu đã có, cập nhật permissionName, ...
-            Permission existing = existingOpt.get();
-            existing.setPermissionName(permissionName);
-            endpointRepository.save(existing);
-        } else {
-            // Nếu chưa có, tạo mới
-            Permission newEndpoint = Permission.builder()
-                    .httpMethod(httpMethod)
-                    .urlPattern(pattern)
-                    .permissionName(permissionName)
-                    .description("Tự động scan")
-                    .build();
-            endpointRepository.save(newEndpoint);
-        }
+        return endpoints;
     }
 }
@@ -0,0 +1,22 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Gom ID tham chiếu từ các dòng chi tiết để nạp một lần bằng findAllById thay vì truy vấn từng dòng.
+ */
+public final class IdCollections {
+    private IdCollections() {
+    }
+
+    /**
+     * Tập ID khác null lấy từ {@code items} bằng {@code idGetter}.
+     */
+    public static <T> Set<Long> idsOf(Collection<T> items, Function<T, Long> idGetter) {
+        return items.stream().map(idGetter).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+}
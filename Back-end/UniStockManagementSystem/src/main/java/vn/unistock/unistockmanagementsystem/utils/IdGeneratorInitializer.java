@@ -0,0 +1,52 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Các bảng phát sinh nhiều dòng (thẻ kho, chi tiết phiếu nhập/xuất) lấy ID theo khối từ bảng id_generator
+ * thay cho AUTO_INCREMENT để Hibernate gom được INSERT thành batch. Khi khởi động, giá trị trong id_generator được
+ * đẩy lên trên MAX(id) hiện có của từng bảng để khối ID đầu tiên không trùng với dữ liệu đã tạo bằng IDENTITY.
+ * Bảng inventory giữ AUTO_INCREMENT vì được ghi bằng INSERT ... ON DUPLICATE KEY UPDATE (InventoryUpsertRepository).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class IdGeneratorInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorInitializer.class);
+
+    public static final String TABLE = "id_generator";
+    public static final String PK_COLUMN = "gen_name";
+    public static final String VALUE_COLUMN = "next_val";
+    // Bằng hibernate.jdbc.batch_size: mỗi batch INSERT chỉ cần lấy một khối ID
+    public static final int ALLOCATION_SIZE = 50;
+
+    // gen_name -> {bảng, cột khóa chính}
+    private static final Map<String, String[]> GENERATORS = Map.of(
+            "inventory_transaction", new String[]{"inventory_transaction", "transaction_id"},
+            "good_issue_details", new String[]{"good_issue_details", "gin_details_id"},
+            "good_receipt_detail", new String[]{"good_receipt_detail", "grn_details_id"}
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alignWithExistingIds() {
+        GENERATORS.forEach((genName, target) -> {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + target[1] + "), 0) FROM " + target[0], Long.class);
+            // Với optimizer pooled, giá trị lưu là cận trên của khối kế tiếp: ID đầu tiên cấp ra = next_val - ALLOCATION_SIZE + 1
+            long required = (maxId != null ? maxId : 0L) + ALLOCATION_SIZE;
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (" + PK_COLUMN + ", " + VALUE_COLUMN + ") VALUES (?, ?)" +
+                    " ON DUPLICATE KEY UPDATE " + VALUE_COLUMN + " = GREATEST(" + VALUE_COLUMN + ", VALUES(" + VALUE_COLUMN + "))",
+                    genName, required);
+            logger.debug("Id generator {} aligned above max id {}", genName, maxId);
+        });
+    }
+}
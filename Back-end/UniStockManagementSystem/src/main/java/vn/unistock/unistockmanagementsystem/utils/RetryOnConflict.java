@@ -0,0 +1,20 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Chạy lại toàn bộ method (kể cả transaction của nó) khi gặp xung đột ghi đồng thời: sai version của entity
+ * (@Version), deadlock hoặc hết thời gian chờ khóa. Chỉ có tác dụng ở method mở transaction ngoài cùng,
+ * vì lần thử lại cần một transaction mới.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+    int maxAttempts() default 5;
+
+    // Thời gian chờ trước lần thử thứ hai, nhân đôi sau mỗi lần và cộng thêm một khoảng ngẫu nhiên
+    long backoffMillis() default 20;
+}
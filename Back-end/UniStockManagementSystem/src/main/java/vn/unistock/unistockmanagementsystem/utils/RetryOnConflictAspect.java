@@ -0,0 +1,80 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+import jakarta.persistence.OptimisticLockException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Xử lý {@link RetryOnConflict}. Aspect được đặt ưu tiên cao hơn TransactionInterceptor nên bao bên ngoài
+ * transaction: mỗi lần thử là một transaction riêng và lỗi xung đột phát sinh lúc commit cũng được bắt lại.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class RetryOnConflictAspect {
+    private static final Logger logger = LoggerFactory.getLogger(RetryOnConflictAspect.class);
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        // Đang nằm trong transaction của nơi gọi: không thể thử lại riêng phần này, để lỗi lan lên lớp ngoài
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String operation = joinPoint.getSignature().toShortString();
+        int maxAttempts = Math.max(1, retryOnConflict.maxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (Throwable e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    logger.warn("{} still conflicting after {} attempts", operation, attempt);
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            "Dữ liệu tồn kho đang được cập nhật đồng thời, vui lòng thử lại", e);
+                }
+                long delay = backoff(retryOnConflict.backoffMillis(), attempt);
+                logger.debug("{} conflicted on attempt {}, retrying in {} ms: {}", operation, attempt, delay, e.getMessage());
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Lỗi có phải xung đột ghi đồng thời không, xét cả chuỗi cause: lỗi đã được Spring dịch
+     * ({@link ConcurrencyFailureException}) lẫn lỗi JPA/Hibernate thô ném ra lúc flush trong service.
+     */
+    public static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConcurrencyFailureException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof StaleStateException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static long backoff(long baseMillis, int attempt) {
+        long exponential = baseMillis << Math.min(attempt - 1, 6);
+        return exponential + ThreadLocalRandom.current().nextLong(baseMillis + 1);
+    }
+}
@@ -0,0 +1,32 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+/**
+ * Dựng mẫu LIKE từ chuỗi người dùng nhập: '%' và '_' trong từ khóa được tìm đúng ký tự đó, không thành ký tự đại diện.
+ * Dùng '!' làm ký tự thoát thay cho dấu \ vì cách MySQL hiểu dấu \ phụ thuộc vào NO_BACKSLASH_ESCAPES.
+ */
+public final class SqlLike {
+    public static final char ESCAPE_CHAR = '!';
+    // Nối ngay sau "... LIKE ?" hoặc "... LIKE :param"
+    public static final String ESCAPE = " ESCAPE '" + ESCAPE_CHAR + "'";
+
+    private SqlLike() {
+    }
+
+    /**
+     * Mẫu "chứa từ khóa": %từ khóa đã thoát%.
+     */
+    public static String contains(String term) {
+        return "%" + escape(term) + "%";
+    }
+
+    public static String escape(String term) {
+        StringBuilder escaped = new StringBuilder(term.length());
+        for (char c : term.toCharArray()) {
+            if (c == ESCAPE_CHAR || c == '%' || c == '_') {
+                escaped.append(ESCAPE_CHAR);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+/**
+ * Đọc sheet đầu tiên của file .xlsx theo từng dòng bằng SAX (XSSFReader + XSSFSheetXMLHandler) thay vì dựng
+ * XSSFWorkbook: bộ nhớ không tăng theo số dòng, chỉ còn bảng shared strings của file. Dòng tiêu đề (dòng đầu) được
+ * bỏ qua. Giá trị ô được định dạng như Excel hiển thị và đã trim; ô trống là null.
+ */
+public final class ExcelRowReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param rowNum chỉ số dòng bắt đầu từ 0 (như Row.getRowNum())
+         * @param cells  giá trị các cột 0..columns-1
+         */
+        void handle(int rowNum, String[] cells);
+    }
+
+    private ExcelRowReader() {
+    }
+
+    public static void read(MultipartFile file, int columns, RowHandler handler) throws IOException {
+        // OPCPackage mở từ File chỉ giải nén phần đang đọc; mở từ InputStream sẽ giải nén cả file vào bộ nhớ
+        Path temp = Files.createTempFile("unistock-import-", ".xlsx");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            read(temp.toFile(), columns, handler);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static void read(File file, int columns, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                        new RowCollector(columns, handler), new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | UnsupportedFileFormatException | POIXMLException
+                 | SAXException | ParserConfigurationException e) {
+            // File không phải zip/OOXML: OPCPackage báo bằng RuntimeException
+            throw new IOException("File Excel không hợp lệ: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final int columns;
+        private final RowHandler handler;
+        private String[] cells;
+        private int nextColumn;
+
+        private RowCollector(int columns, RowHandler handler) {
+            this.columns = columns;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new String[columns];
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum > 0) {
+                handler.handle(rowNum, cells);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? columnIndex(cellReference) : nextColumn;
+            nextColumn = column + 1;
+            if (column < columns && formattedValue != null) {
+                cells[column] = formattedValue.trim();
+            }
+        }
+
+        // "AB12" -> 27
+        private static int columnIndex(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length(); i++) {
+                char c = cellReference.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
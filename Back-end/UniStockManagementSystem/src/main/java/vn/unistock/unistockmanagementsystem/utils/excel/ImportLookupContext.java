@@ -0,0 +1,83 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import vn.unistock.unistockmanagementsystem.entities.MaterialType;
+import vn.unistock.unistockmanagementsystem.entities.Partner;
+import vn.unistock.unistockmanagementsystem.entities.ProductType;
+import vn.unistock.unistockmanagementsystem.entities.Unit;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Dữ liệu tra cứu của một lần import Excel, nạp một lần từ DB thành các bảng băm theo khóa đã chuẩn hóa
+ * (trim, NFC, chữ thường) để kiểm tra từng dòng không phải truy vấn. Dùng chung cho bước preview và bước ghi
+ * của cùng một request. Các bảng không liên quan tới loại import thì rỗng.
+ */
+public class ImportLookupContext {
+    private final Set<String> existingCodes;
+    private final Map<String, Unit> units;
+    private final Map<String, MaterialType> materialTypes;
+    private final Map<String, ProductType> productTypes;
+    private final Map<String, Partner> suppliers;
+
+    ImportLookupContext(Collection<String> existingCodes,
+                        Collection<Unit> units,
+                        Collection<MaterialType> materialTypes,
+                        Collection<ProductType> productTypes,
+                        Collection<Partner> suppliers) {
+        this.existingCodes = new HashSet<>();
+        existingCodes.forEach(code -> this.existingCodes.add(key(code)));
+        this.units = index(units, Unit::getUnitName);
+        this.materialTypes = index(materialTypes, MaterialType::getName);
+        this.productTypes = index(productTypes, ProductType::getTypeName);
+        this.suppliers = index(suppliers, Partner::getPartnerName);
+    }
+
+    /**
+     * Khóa so khớp: bỏ khoảng trắng hai đầu, chuẩn hóa Unicode NFC (chữ có dấu gõ kiểu tổ hợp và dựng sẵn trùng
+     * nhau), chữ thường.
+     */
+    public static String key(String value) {
+        if (value == null) {
+            return null;
+        }
+        return Normalizer.normalize(value.trim(), Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    public boolean codeExists(String code) {
+        return existingCodes.contains(key(code));
+    }
+
+    public Optional<Unit> findUnit(String unitName) {
+        return find(units, unitName);
+    }
+
+    public Optional<MaterialType> findMaterialType(String name) {
+        return find(materialTypes, name);
+    }
+
+    public Optional<ProductType> findProductType(String typeName) {
+        return find(productTypes, typeName);
+    }
+
+    public Optional<Partner> findSupplier(String partnerName) {
+        return find(suppliers, partnerName);
+    }
+
+    private static <T> Optional<T> find(Map<String, T> index, String name) {
+        return name == null ? Optional.empty() : Optional.ofNullable(index.get(key(name)));
+    }
+
+    // Tên trùng sau chuẩn hóa thì giữ bản ghi đầu tiên, như findFirst trước đây
+    private static <T> Map<String, T> index(Collection<T> values, Function<T, String> name) {
+        Map<String, T> index = new HashMap<>();
+        for (T value : values) {
+            String key = key(name.apply(value));
+            if (key != null) {
+                index.putIfAbsent(key, value);
+            }
+        }
+        return index;
+    }
+}
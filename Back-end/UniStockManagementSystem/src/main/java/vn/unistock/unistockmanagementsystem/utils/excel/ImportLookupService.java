@@ -0,0 +1,44 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import vn.unistock.unistockmanagementsystem.features.user.materialType.MaterialTypeRepository;
+import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
+import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
+import vn.unistock.unistockmanagementsystem.features.user.productTypes.ProductTypeRepository;
+import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
+import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
+
+import java.util.List;
+
+/**
+ * Nạp ImportLookupContext: mỗi loại dữ liệu một truy vấn, bất kể file có bao nhiêu dòng.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImportLookupService {
+    private final MaterialsRepository materialsRepository;
+    private final ProductsRepository productsRepository;
+    private final UnitRepository unitRepository;
+    private final MaterialTypeRepository materialTypeRepository;
+    private final ProductTypeRepository productTypeRepository;
+    private final PartnerRepository partnerRepository;
+
+    public ImportLookupContext forMaterials() {
+        return new ImportLookupContext(
+                materialsRepository.findAllMaterialCodes(),
+                unitRepository.findAll(),
+                materialTypeRepository.findAll(),
+                List.of(),
+                partnerRepository.findAllSuppliers());
+    }
+
+    public ImportLookupContext forProducts() {
+        return new ImportLookupContext(
+                productsRepository.findAllProductCodes(),
+                unitRepository.findAll(),
+                List.of(),
+                productTypeRepository.findAll(),
+                List.of());
+    }
+}
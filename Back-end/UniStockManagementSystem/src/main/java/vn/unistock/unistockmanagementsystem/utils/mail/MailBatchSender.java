@@ -0,0 +1,76 @@
+package vn.unistock.unistockmanagementsystem.utils.mail;
+
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.OutboundMail;
+
+import java.util.*;
+
+/**
+ * Gửi một lô email trên cùng một kết nối SMTP (JavaMailSender.send(MimeMessage...)).
+ * Trả về lỗi của từng email gửi không được; các email còn lại trong lô vẫn được gửi.
+ */
+@Component
+public class MailBatchSender {
+
+    private final JavaMailSender mailSender;
+    private final String fromEmail;
+
+    public MailBatchSender(JavaMailSender mailSender, @Value("${spring.mail.username}") String fromEmail) {
+        this.mailSender = mailSender;
+        this.fromEmail = fromEmail;
+    }
+
+    /**
+     * @return mailId -> lỗi, rỗng nếu cả lô gửi thành công
+     */
+    public Map<Long, Exception> send(List<OutboundMail> mails) {
+        Map<Long, Exception> failures = new HashMap<>();
+        Map<MimeMessage, Long> messages = new LinkedHashMap<>();
+        for (OutboundMail mail : mails) {
+            try {
+                messages.put(toMimeMessage(mail), mail.getMailId());
+            } catch (Exception e) {
+                failures.put(mail.getMailId(), e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Không kết nối được thì mọi email đều nằm trong failedMessages
+            e.getFailedMessages().forEach((message, cause) -> {
+                Long mailId = messages.get(message);
+                if (mailId != null) {
+                    failures.put(mailId, cause);
+                }
+            });
+            if (e.getFailedMessages().isEmpty()) {
+                messages.values().forEach(mailId -> failures.put(mailId, e));
+            }
+        } catch (MailException e) {
+            messages.values().forEach(mailId -> failures.put(mailId, e));
+        }
+        return failures;
+    }
+
+    private MimeMessage toMimeMessage(OutboundMail mail) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        helper.setFrom(fromEmail, "UniStock");
+        helper.setReplyTo(fromEmail);
+        helper.setTo(mail.getToEmail());
+        helper.setSubject(mail.getSubject());
+        helper.setText(mail.getBody(), true);
+        helper.setSentDate(new Date());
+        return message;
+    }
+}
@@ -0,0 +1,7 @@
+package vn.unistock.unistockmanagementsystem.utils.mail;
+
+/**
+ * Báo cho MailQueueWorker có email mới để gửi ngay, không phải chờ tới lượt quét kế tiếp.
+ */
+public class MailEnqueuedEvent {
+}
@@ -0,0 +1,234 @@
+package vn.unistock.unistockmanagementsystem.utils.mail;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.entities.OutboundMail;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gửi email trong bảng outbound_mail bằng pool luồng riêng, không dùng luồng của Tomcat.
+ * Mỗi lượt một luồng nhận (claim) một lô PENDING đến hạn bằng một câu UPDATE ... LIMIT nên nhiều luồng/nhiều node
+ * không gửi trùng; lô được gửi trên một kết nối SMTP. Email lỗi được hẹn gửi lại với backoff lũy thừa, quá
+ * mail.queue.max-attempts lần thì chuyển FAILED. Lô SENDING bị bỏ dở (node chết giữa chừng) được trả về PENDING.
+ * Nội dung email (OTP, link đặt lại mật khẩu) bị xóa ngay khi gửi xong; dòng SENT/FAILED quá
+ * mail.queue.retention-days ngày bị dọn hằng ngày.
+ */
+@Component
+public class MailQueueWorker {
+    private static final Logger logger = LoggerFactory.getLogger(MailQueueWorker.class);
+    private static final int BATCH_SIZE = 100;
+    private static final int STALE_CLAIM_MINUTES = 10;
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private static final String CLAIM_SQL = """
+            UPDATE outbound_mail SET status = 'SENDING', claim_id = ?, claimed_at = ?
+            WHERE status = 'PENDING' AND next_attempt_at <= ?
+            ORDER BY next_attempt_at, mail_id LIMIT ?
+            """;
+    private static final String SENT_SQL =
+            "UPDATE outbound_mail SET status = 'SENT', sent_at = ?, claim_id = NULL, attempts = attempts + 1, body = '' WHERE mail_id = ?";
+    private static final String RETRY_SQL = """
+            UPDATE outbound_mail SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ?, claim_id = NULL
+            WHERE mail_id = ?
+            """;
+    private static final String PURGE_SQL =
+            "DELETE FROM outbound_mail WHERE status IN ('SENT', 'FAILED') AND created_at < ? LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MailBatchSender mailBatchSender;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int retentionDays;
+    private ScheduledExecutorService executor;
+
+    public MailQueueWorker(JdbcTemplate jdbcTemplate,
+                           MailBatchSender mailBatchSender,
+                           @Value("${mail.queue.enabled:true}") boolean enabled,
+                           @Value("${mail.queue.workers:2}") int workers,
+                           @Value("${mail.queue.batch-size:20}") int batchSize,
+                           @Value("${mail.queue.poll-interval-ms:5000}") long pollIntervalMillis,
+                           @Value("${mail.queue.max-attempts:6}") int maxAttempts,
+                           @Value("${mail.queue.backoff-ms:5000}") long backoffMillis,
+                           @Value("${mail.queue.max-backoff-ms:600000}") long maxBackoffMillis,
+                           @Value("${mail.queue.retention-days:30}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mailBatchSender = mailBatchSender;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retentionDays = retentionDays;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Mail queue worker is disabled");
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.scheduleWithFixedDelay(this::drain, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMailEnqueued(MailEnqueuedEvent event) {
+        if (executor != null && !executor.isShutdown()) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Gửi liên tục từng lô cho tới khi không còn email đến hạn.
+     */
+    public void drain() {
+        try {
+            releaseStaleClaims();
+            while (sendBatch() == batchSize) {
+                // còn email đến hạn, nhận lô tiếp
+            }
+        } catch (Exception e) {
+            logger.error("Mail queue poll failed", e);
+        }
+    }
+
+    /**
+     * Nhận và gửi một lô.
+     *
+     * @return số email đã nhận trong lô
+     */
+    public int sendBatch() {
+        String claimId = UUID.randomUUID().toString();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int claimed = jdbcTemplate.update(CLAIM_SQL, claimId, now, now, batchSize);
+        if (claimed == 0) {
+            return 0;
+        }
+
+        List<OutboundMail> mails = jdbcTemplate.query(
+                "SELECT mail_id, to_email, subject, body, attempts FROM outbound_mail WHERE claim_id = ? AND status = 'SENDING'",
+                (rs, rowNum) -> OutboundMail.builder()
+                        .mailId(rs.getLong("mail_id"))
+                        .toEmail(rs.getString("to_email"))
+                        .subject(rs.getString("subject"))
+                        .body(rs.getString("body"))
+                        .attempts(rs.getInt("attempts"))
+                        .build(),
+                claimId);
+
+        long startedAt = System.nanoTime();
+        Map<Long, Exception> failures = mailBatchSender.send(mails);
+        LocalDateTime finishedAt = LocalDateTime.now();
+
+        List<OutboundMail> sent = new ArrayList<>();
+        List<OutboundMail> failed = new ArrayList<>();
+        for (OutboundMail mail : mails) {
+            (failures.containsKey(mail.getMailId()) ? failed : sent).add(mail);
+        }
+        jdbcTemplate.batchUpdate(SENT_SQL, sent, BATCH_SIZE, (ps, mail) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(finishedAt));
+            ps.setLong(2, mail.getMailId());
+        });
+        jdbcTemplate.batchUpdate(RETRY_SQL, failed, BATCH_SIZE, (ps, mail) -> {
+            int attempts = mail.getAttempts() + 1;
+            boolean giveUp = attempts >= maxAttempts;
+            ps.setString(1, giveUp ? OutboundMail.MailStatus.FAILED.name() : OutboundMail.MailStatus.PENDING.name());
+            ps.setInt(2, attempts);
+            ps.setTimestamp(3, Timestamp.valueOf(finishedAt.plusNanos(backoff(attempts) * 1_000_000)));
+            ps.setString(4, errorMessage(failures.get(mail.getMailId())));
+            ps.setLong(5, mail.getMailId());
+        });
+
+        logger.info("Sent {} of {} queued mails in {} ms", sent.size(), mails.size(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+        for (OutboundMail mail : failed) {
+            logger.warn("Mail {} to {} failed (attempt {}): {}", mail.getMailId(), mail.getToEmail(),
+                    mail.getAttempts() + 1, errorMessage(failures.get(mail.getMailId())));
+        }
+        return mails.size();
+    }
+
+    /**
+     * Xóa các email đã gửi hoặc đã bỏ cuộc quá thời hạn lưu, theo từng lô để không khóa bảng lâu.
+     *
+     * @return số dòng đã xóa
+     */
+    @Scheduled(cron = "${mail.queue.purge-cron:0 45 3 * * *}")
+    public int purgeFinished() {
+        if (!enabled) {
+            return 0;
+        }
+        Timestamp createdBefore = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, createdBefore, PURGE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        if (total > 0) {
+            logger.info("Purged {} sent/failed mails created before {}", total, createdBefore);
+        }
+        return total;
+    }
+
+    // Lũy thừa 2 theo số lần thử, có jitter để các email lỗi cùng lúc không dồn lại cùng một lượt
+    long backoff(int attempts) {
+        long delay = backoffMillis << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, maxBackoffMillis);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void releaseStaleClaims() {
+        Timestamp staleBefore = Timestamp.valueOf(LocalDateTime.now().minusMinutes(STALE_CLAIM_MINUTES));
+        int released = jdbcTemplate.update(
+                "UPDATE outbound_mail SET status = 'PENDING', claim_id = NULL WHERE status = 'SENDING' AND claimed_at < ?",
+                staleBefore);
+        if (released > 0) {
+            logger.warn("Released {} mails left in SENDING by an interrupted batch", released);
+        }
+    }
+
+    private static String errorMessage(Exception e) {
+        if (e == null) {
+            return null;
+        }
+        String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
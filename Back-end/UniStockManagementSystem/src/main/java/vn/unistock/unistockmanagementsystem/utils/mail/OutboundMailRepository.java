@@ -0,0 +1,9 @@
+package vn.unistock.unistockmanagementsystem.utils.mail;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.entities.OutboundMail;
+
+@Repository
+public interface OutboundMailRepository extends JpaRepository<OutboundMail, Long> {
+}
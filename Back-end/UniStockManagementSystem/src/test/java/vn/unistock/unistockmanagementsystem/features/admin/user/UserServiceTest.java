@@ -0,0 +1,74 @@
+package vn.unistock.unistockmanagementsystem.features.admin.user;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.features.admin.role.RoleRepository;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipalChangedEvent;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private UserDetailRepository userDetailRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @InjectMocks
+    private UserService userService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = User.builder().userId(1L).email("cu@unistock.vn").username("kho").isActive(true).roles(new HashSet<>()).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void testUpdateUser_EmailChanged_EvictsOldAndNewEmailOnly() {
+        userService.updateUser(1L, UserDTO.builder().email("moi@unistock.vn").isActive(true).build());
+
+        assertEquals(List.of("cu@unistock.vn", "moi@unistock.vn"), publishedEmails());
+    }
+
+    @Test
+    void testUpdateUser_SameEmail_EvictsThatUserOnly() {
+        userService.updateUser(1L, UserDTO.builder().isActive(false).build());
+
+        assertEquals(List.of("cu@unistock.vn"), publishedEmails());
+    }
+
+    private List<String> publishedEmails() {
+        ArgumentCaptor<UserPrincipalChangedEvent> events = ArgumentCaptor.forClass(UserPrincipalChangedEvent.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        events.getAllValues().forEach(event -> assertFalse(event.affectsAllUsers()));
+        return events.getAllValues().stream().map(UserPrincipalChangedEvent::getEmail).toList();
+    }
+}
@@ -0,0 +1,103 @@
+package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryTokenStoreTest {
+
+    private static final TokenStore.TokenType OTP = TokenStore.TokenType.OTP;
+    private static final Duration WINDOW = Duration.ofMinutes(15);
+
+    @Test
+    void testVerify_ConsumeRemovesToken() {
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 5, WINDOW);
+        store.save(OTP, "a@unistock.vn", "123456", Duration.ofMinutes(5));
+
+        assertTrue(store.verify(OTP, "a@unistock.vn", "123456", true));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "123456", true));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testVerify_TooManyWrongAttempts_InvalidatesToken() {
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 3, WINDOW);
+        store.save(OTP, "a@unistock.vn", "123456", Duration.ofMinutes(5));
+
+        assertFalse(store.verify(OTP, "a@unistock.vn", "000000", true));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "111111", true));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "222222", true));
+
+        assertFalse(store.verify(OTP, "a@unistock.vn", "123456", true));
+    }
+
+    @Test
+    void testSave_KeepsTypesApart() {
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 2, WINDOW);
+        store.save(OTP, "a@unistock.vn", "123456", Duration.ofMinutes(5));
+        store.save(TokenStore.TokenType.EPHEMERAL, "a@unistock.vn", "abc", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "000000", true));
+
+        store.save(OTP, "a@unistock.vn", "654321", Duration.ofMinutes(5));
+        assertTrue(store.verify(OTP, "a@unistock.vn", "654321", true));
+        assertTrue(store.verify(TokenStore.TokenType.EPHEMERAL, "a@unistock.vn", "abc", false));
+    }
+
+    @Test
+    void testSave_ReissuedCodeDoesNotResetWrongAttempts() {
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 3, WINDOW);
+        store.save(OTP, "a@unistock.vn", "123456", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "000000", true));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "111111", true));
+
+        // Xin mã mới không cho thêm lượt đoán: lần sai tiếp theo là lần thứ 3
+        store.save(OTP, "a@unistock.vn", "654321", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "222222", true));
+
+        // Đã khóa tới hết cửa sổ, kể cả với mã đúng vừa được cấp lại
+        store.save(OTP, "a@unistock.vn", "999999", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "999999", true));
+    }
+
+    @Test
+    void testVerify_AttemptWindowExpires_CountStartsOver() {
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 2, Duration.ZERO);
+        store.save(OTP, "a@unistock.vn", "123456", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "000000", true));
+        assertFalse(store.verify(OTP, "a@unistock.vn", "111111", true));
+
+        assertTrue(store.verify(OTP, "a@unistock.vn", "123456", true));
+    }
+
+    @Test
+    void testEvictExpired_RemovesExpiredTokens() {
+        InMemoryTokenStore store = new InMemoryTokenStore(100, 5, WINDOW);
+        store.save(OTP, "old@unistock.vn", "123456", Duration.ZERO);
+        store.save(OTP, "new@unistock.vn", "123456", Duration.ofMinutes(5));
+
+        store.evictExpired();
+
+        assertEquals(1, store.size());
+        assertFalse(store.verify(OTP, "old@unistock.vn", "123456", true));
+    }
+
+    @Test
+    void testSave_FullStore_RejectsNewEmailsAfterSweep() {
+        InMemoryTokenStore store = new InMemoryTokenStore(2, 5, WINDOW);
+        store.save(OTP, "expired@unistock.vn", "1", Duration.ZERO);
+        store.save(OTP, "a@unistock.vn", "1", Duration.ofMinutes(5));
+
+        // Dòng hết hạn được quét để nhường chỗ
+        store.save(OTP, "b@unistock.vn", "1", Duration.ofMinutes(5));
+        // Thay mã của email đã có vẫn được khi đầy
+        store.save(OTP, "a@unistock.vn", "2", Duration.ofMinutes(5));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> store.save(OTP, "c@unistock.vn", "1", Duration.ofMinutes(5)));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, ex.getStatusCode());
+    }
+}
@@ -0,0 +1,93 @@
+package vn.unistock.unistockmanagementsystem.features.auth.forgot_password;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JdbcTokenStore trên H2 chế độ MySQL: upsert mã, bộ đếm sai tách riêng khỏi mã và khóa theo email.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:token_store;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "token-store.type=jdbc",
+        "token-store.max-attempts=3"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import(JdbcTokenStore.class)
+public class JdbcTokenStoreTest {
+    private static final TokenStore.TokenType OTP = TokenStore.TokenType.OTP;
+    private static final String EMAIL = "a@unistock.vn";
+
+    @Autowired private JdbcTokenStore store;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testVerify_ConsumeRemovesTokenAndStoresOnlyHash() {
+        store.save(OTP, EMAIL, "123456", Duration.ofMinutes(5));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM auth_tokens WHERE token_hash = '123456'", Integer.class));
+
+        assertTrue(store.verify(OTP, EMAIL, "123456", false));
+        assertTrue(store.verify(OTP, EMAIL, "123456", true));
+        assertFalse(store.verify(OTP, EMAIL, "123456", true));
+    }
+
+    @Test
+    void testSave_ReissuedCodeDoesNotResetWrongAttempts() {
+        store.save(OTP, EMAIL, "123456", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, EMAIL, "000000", true));
+        assertFalse(store.verify(OTP, EMAIL, "111111", true));
+
+        store.save(OTP, EMAIL, "654321", Duration.ofMinutes(5));
+        assertEquals(2, attempts());
+        assertFalse(store.verify(OTP, EMAIL, "222222", true));
+        assertEquals(0, codes());
+
+        // Đã khóa tới hết cửa sổ, kể cả với mã đúng vừa được cấp lại
+        store.save(OTP, EMAIL, "999999", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, EMAIL, "999999", true));
+    }
+
+    @Test
+    void testVerify_MatchClearsWrongAttempts() {
+        store.save(OTP, EMAIL, "123456", Duration.ofMinutes(5));
+        assertFalse(store.verify(OTP, EMAIL, "000000", true));
+        assertEquals(1, attempts());
+
+        assertTrue(store.verify(OTP, EMAIL, "123456", true));
+        assertEquals(0, attempts());
+    }
+
+    @Test
+    void testVerify_WithoutPendingCode_DoesNotCount() {
+        assertFalse(store.verify(OTP, EMAIL, "000000", true));
+        assertEquals(0, attempts());
+    }
+
+    private int attempts() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(attempts), 0) FROM auth_token_attempts WHERE token_id = ?", Integer.class, "OTP:" + EMAIL);
+    }
+
+    private int codes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM auth_tokens", Integer.class);
+    }
+}
@@ -0,0 +1,85 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import vn.unistock.unistockmanagementsystem.entities.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InventoryBalanceListenerTest {
+    @Mock private InventoryBalanceService inventoryBalanceService;
+
+    private InventoryBalanceListener listener;
+    private Warehouse warehouse;
+    private Material material;
+
+    @BeforeEach
+    void setUp() {
+        listener = new InventoryBalanceListener(inventoryBalanceService);
+        warehouse = new Warehouse();
+        warehouse.setWarehouseId(1L);
+        material = new Material();
+        material.setMaterialId(10L);
+    }
+
+    private Inventory inventory(double quantity, Inventory.InventoryStatus status) {
+        return Inventory.builder()
+                .warehouse(warehouse)
+                .material(material)
+                .status(status)
+                .quantity(quantity)
+                .build();
+    }
+
+    @Test
+    void testPersist_AddsFullQuantity() {
+        Inventory inv = inventory(5.0, Inventory.InventoryStatus.AVAILABLE);
+        listener.onPersist(inv);
+
+        verify(inventoryBalanceService).applyDelta(
+                new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, 10L, 1L, Inventory.InventoryStatus.AVAILABLE), 5.0);
+        assertEquals(5.0, inv.getBalanceQuantitySnapshot());
+    }
+
+    @Test
+    void testUpdate_AppliesOnlyDifference() {
+        Inventory inv = inventory(8.0, Inventory.InventoryStatus.AVAILABLE);
+        listener.onLoad(inv);
+        inv.setQuantity(3.0);
+        listener.onUpdate(inv);
+
+        verify(inventoryBalanceService).applyDelta(
+                new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, 10L, 1L, Inventory.InventoryStatus.AVAILABLE), -5.0);
+        verifyNoMoreInteractions(inventoryBalanceService);
+    }
+
+    @Test
+    void testUpdate_StatusChangeMovesQuantityBetweenKeys() {
+        Inventory inv = inventory(4.0, Inventory.InventoryStatus.AVAILABLE);
+        listener.onLoad(inv);
+        inv.setStatus(Inventory.InventoryStatus.RESERVED);
+        listener.onUpdate(inv);
+
+        verify(inventoryBalanceService).applyDelta(
+                new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, 10L, 1L, Inventory.InventoryStatus.AVAILABLE), -4.0);
+        verify(inventoryBalanceService).applyDelta(
+                new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, 10L, 1L, Inventory.InventoryStatus.RESERVED), 4.0);
+    }
+
+    @Test
+    void testRemove_SubtractsLoadedQuantity() {
+        Inventory inv = inventory(2.5, Inventory.InventoryStatus.RESERVED);
+        listener.onLoad(inv);
+        listener.onRemove(inv);
+
+        verify(inventoryBalanceService).applyDelta(
+                new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, 10L, 1L, Inventory.InventoryStatus.RESERVED), -2.5);
+        assertNull(inv.getBalanceKeySnapshot());
+    }
+}
@@ -0,0 +1,178 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.unistock.unistockmanagementsystem.entities.InventoryTransaction;
+import vn.unistock.unistockmanagementsystem.entities.Material;
+import vn.unistock.unistockmanagementsystem.entities.Warehouse;
+import vn.unistock.unistockmanagementsystem.utils.IdGeneratorInitializer;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snapshot tồn cuối tháng trên H2 chế độ MySQL: tồn đầu kỳ = snapshot gần nhất + giao dịch sau đó,
+ * phiếu ghi lùi ngày hủy snapshot từ tháng đó trở đi và job dựng lại chúng.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:closing_balance;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import({InventoryClosingBalanceService.class, InventoryClosingBalanceListener.class, IdGeneratorInitializer.class})
+public class InventoryClosingBalanceServiceTest {
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2024, 1);
+
+    @Autowired private InventoryClosingBalanceService closingBalanceService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManager entityManager;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private IdGeneratorInitializer idGeneratorInitializer;
+
+    private long warehouseId;
+    private long materialId;
+    private long productId;
+    private long nextTransactionId;
+
+    // Vật tư: +100 (10/01), -30 (05/02), +10 (20/02), -5 (03/03); sản phẩm: +8 (12/02)
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO units (unit_name, status) VALUES ('Cái', TRUE)");
+        Long unitId = jdbcTemplate.queryForObject("SELECT unit_id FROM units", Long.class);
+        jdbcTemplate.update("INSERT INTO material_types (type_name, is_using_active) VALUES ('Vải', TRUE)");
+        Long materialTypeId = jdbcTemplate.queryForObject("SELECT material_type_id FROM material_types", Long.class);
+        jdbcTemplate.update("INSERT INTO product_types (type_name, status) VALUES ('Áo', TRUE)");
+        Long productTypeId = jdbcTemplate.queryForObject("SELECT type_id FROM product_types", Long.class);
+        jdbcTemplate.update("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active)"
+                + " VALUES ('NVL001', 'Vải cotton', ?, ?, TRUE)", unitId, materialTypeId);
+        materialId = jdbcTemplate.queryForObject("SELECT material_id FROM materials", Long.class);
+        jdbcTemplate.update("INSERT INTO products (product_code, product_name, unit_id, type_id, is_production_active)"
+                + " VALUES ('SP001', 'Áo sơ mi', ?, ?, TRUE)", unitId, productTypeId);
+        productId = jdbcTemplate.queryForObject("SELECT product_id FROM products", Long.class);
+        jdbcTemplate.update("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO01', 'Kho vật tư', TRUE)");
+        warehouseId = jdbcTemplate.queryForObject("SELECT warehouse_id FROM warehouse", Long.class);
+
+        // Ghi thẳng bằng JDBC như dữ liệu có sẵn, không đi qua listener
+        history(materialId, null, "IMPORT", 100, LocalDateTime.of(2024, 1, 10, 9, 0));
+        history(materialId, null, "EXPORT", 30, LocalDateTime.of(2024, 2, 5, 9, 0));
+        history(materialId, null, "IMPORT", 10, LocalDateTime.of(2024, 2, 20, 9, 0));
+        history(materialId, null, "EXPORT", 5, LocalDateTime.of(2024, 3, 3, 9, 0));
+        history(null, productId, "IMPORT", 8, LocalDateTime.of(2024, 2, 12, 9, 0));
+        // Như lúc khởi động: đẩy id_generator lên trên các ID đã có để record() không trùng khóa
+        idGeneratorInitializer.alignWithExistingIds();
+    }
+
+    @Test
+    void testOpeningBalance_IsNearestSnapshotPlusLaterTransactions() {
+        closingBalanceService.buildMissingSnapshots();
+        assertEquals(100.0, snapshot(LocalDate.of(2024, 1, 31), "MATERIAL", materialId));
+        assertEquals(80.0, snapshot(LocalDate.of(2024, 2, 29), "MATERIAL", materialId));
+        assertEquals(8.0, snapshot(LocalDate.of(2024, 2, 29), "PRODUCT", productId));
+        assertEquals(75.0, snapshot(LocalDate.of(2024, 3, 31), "MATERIAL", materialId));
+
+        // Sửa snapshot tháng 2 để thấy tồn đầu kỳ 15/03 lấy từ snapshot chứ không cộng lại toàn bộ lịch sử
+        jdbcTemplate.update("UPDATE inventory_closing_balance SET quantity = 1000 WHERE period_end = ? AND item_type = 'MATERIAL'",
+                Date.valueOf(LocalDate.of(2024, 2, 29)));
+        Map<String, Double> opening = openingBalances(LocalDateTime.of(2024, 3, 15, 0, 0));
+        assertEquals(995.0, opening.get("MATERIAL:" + materialId));
+        assertEquals(8.0, opening.get("PRODUCT:" + productId));
+
+        // Trước snapshot đầu tiên: cộng giao dịch từ đầu lịch sử
+        assertEquals(Map.of("MATERIAL:" + materialId, 100.0), openingBalances(LocalDateTime.of(2024, 1, 31, 0, 0)));
+    }
+
+    @Test
+    void testBackdatedNote_InvalidatesSnapshotsFromThatMonthOn() {
+        closingBalanceService.buildMissingSnapshots();
+        long periods = closedMonthsSince(FIRST_MONTH);
+        assertEquals(periods, countPeriods());
+
+        // Phiếu trong tháng hiện tại không đụng tới kỳ đã đóng
+        record(LocalDateTime.now(), 1);
+        assertEquals(periods, countPeriods());
+
+        record(LocalDateTime.of(2024, 2, 25, 9, 0), 7);
+        assertEquals(1, countPeriods());
+        assertEquals(LocalDate.of(2024, 1, 31),
+                jdbcTemplate.queryForObject("SELECT MAX(period_end) FROM inventory_closing_balance", LocalDate.class));
+    }
+
+    @Test
+    void testBuildMissingSnapshots_RebuildsInvalidatedPeriods() {
+        closingBalanceService.buildMissingSnapshots();
+        record(LocalDateTime.of(2024, 2, 25, 9, 0), 7);
+        assertEquals(1, countPeriods());
+
+        closingBalanceService.buildMissingSnapshots();
+        assertEquals(closedMonthsSince(FIRST_MONTH), countPeriods());
+        assertEquals(100.0, snapshot(LocalDate.of(2024, 1, 31), "MATERIAL", materialId));
+        assertEquals(87.0, snapshot(LocalDate.of(2024, 2, 29), "MATERIAL", materialId));
+        assertEquals(82.0, snapshot(LocalDate.of(2024, 3, 31), "MATERIAL", materialId));
+        YearMonth lastClosed = YearMonth.now().minusMonths(1);
+        assertEquals(82.0, snapshot(lastClosed.atEndOfMonth(), "MATERIAL", materialId));
+        assertEquals(8.0, snapshot(lastClosed.atEndOfMonth(), "PRODUCT", productId));
+    }
+
+    private Map<String, Double> openingBalances(LocalDateTime startDate) {
+        Map<String, Double> balances = new HashMap<>();
+        jdbcTemplate.query(closingBalanceService.openingBalanceSql(), rs -> {
+            balances.put(rs.getString("item_type") + ":" + rs.getLong("item_id"), rs.getDouble("quantity"));
+        }, closingBalanceService.openingBalanceArgs(startDate));
+        return balances;
+    }
+
+    // Ghi qua JPA để InventoryClosingBalanceListener chạy như khi lưu phiếu
+    private void record(LocalDateTime date, double quantity) {
+        transactionTemplate.executeWithoutResult(status -> entityManager.persist(InventoryTransaction.builder()
+                .warehouse(entityManager.getReference(Warehouse.class, warehouseId))
+                .material(entityManager.getReference(Material.class, materialId))
+                .transactionType(InventoryTransaction.TransactionType.IMPORT)
+                .quantity(quantity)
+                .transactionDate(date)
+                .referenceType(InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE)
+                .build()));
+    }
+
+    private void history(Long material, Long product, String type, double quantity, LocalDateTime date) {
+        jdbcTemplate.update("INSERT INTO inventory_transaction (transaction_id, warehouse_id, material_id, product_id, transaction_type, quantity, transaction_date)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?)", ++nextTransactionId, warehouseId, material, product, type, quantity, Timestamp.valueOf(date));
+    }
+
+    private Double snapshot(LocalDate periodEnd, String itemType, long itemId) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM inventory_closing_balance WHERE period_end = ? AND item_type = ? AND item_id = ?",
+                Double.class, Date.valueOf(periodEnd), itemType, itemId);
+    }
+
+    private long countPeriods() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT period_end) FROM inventory_closing_balance", Long.class);
+    }
+
+    private static long closedMonthsSince(YearMonth first) {
+        return ChronoUnit.MONTHS.between(first, YearMonth.now());
+    }
+}
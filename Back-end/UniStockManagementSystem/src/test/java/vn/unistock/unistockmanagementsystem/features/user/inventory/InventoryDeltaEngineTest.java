@@ -0,0 +1,115 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import vn.unistock.unistockmanagementsystem.entities.*;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InventoryDeltaEngineTest {
+    private static final int LINES = 500;
+
+    @InjectMocks
+    private InventoryDeltaEngine engine;
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private EntityManager entityManager;
+    @Mock private InventoryBalanceService inventoryBalanceService;
+    @Mock private InventoryUpsertRepository inventoryUpsertRepository;
+
+    // Giả lập SELECT ... FOR UPDATE trả về các dòng AVAILABLE của vật tư 1..existingRows trong kho 1
+    @SuppressWarnings("unchecked")
+    private void stubLockedRows(int existingRows, double quantity) {
+        when(jdbcTemplate.query(startsWith("SELECT inventory_id"), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(1);
+                    List<Object> rows = new ArrayList<>();
+                    for (int i = 1; i <= existingRows; i++) {
+                        ResultSet rs = mock(ResultSet.class);
+                        when(rs.getLong("inventory_id")).thenReturn((long) i);
+                        when(rs.getLong("warehouse_id")).thenReturn(1L);
+                        when(rs.getObject("material_id", Long.class)).thenReturn((long) i);
+                        when(rs.getString("status")).thenReturn("AVAILABLE");
+                        when(rs.getDouble("quantity")).thenReturn(quantity);
+                        rows.add(mapper.mapRow(rs, i - 1));
+                    }
+                    return rows;
+                });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPostExport_500Lines_UsesConstantNumberOfStatements() {
+        stubLockedRows(LINES, 10.0);
+        GoodIssueNote note = GoodIssueNote.builder().ginId(7L).ginCode("XK00007").issueDate(LocalDateTime.now()).build();
+        List<InventoryDeltaEngine.ExportLine> lines = new ArrayList<>();
+        for (long i = 1; i <= LINES; i++) {
+            lines.add(new InventoryDeltaEngine.ExportLine(1L, i, null, 2.0));
+        }
+
+        engine.postExport(note, lines);
+
+        // Một câu khóa + một lệnh batch UPDATE cho toàn bộ phiếu, không có truy vấn theo từng dòng
+        ArgumentCaptor<Collection<Object>> updated = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).query(startsWith("SELECT inventory_id"), any(RowMapper.class), any(Object[].class));
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE inventory"), updated.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verifyNoMoreInteractions(jdbcTemplate);
+        assertEquals(LINES, updated.getValue().size());
+
+        ArgumentCaptor<Map<InventoryBalanceKey, Double>> deltas = ArgumentCaptor.forClass(Map.class);
+        verify(inventoryBalanceService).applyDeltas(deltas.capture());
+        assertEquals(LINES, deltas.getValue().size());
+        assertEquals(-2.0, deltas.getValue().get(
+                new InventoryBalanceKey(InventoryBalance.ItemType.MATERIAL, 1L, 1L, Inventory.InventoryStatus.AVAILABLE)));
+
+        // Thẻ kho đi qua persist để Hibernate gom INSERT theo hibernate.jdbc.batch_size
+        verify(entityManager, times(LINES)).persist(any(InventoryTransaction.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPostImport_500Lines_UpsertsWithoutReadingInventory() {
+        GoodReceiptNote note = GoodReceiptNote.builder().grnId(3L).grnCode("NK00003").receiptDate(LocalDateTime.now()).build();
+        List<InventoryDeltaEngine.ImportLine> lines = new ArrayList<>();
+        for (long i = 1; i <= LINES; i++) {
+            lines.add(new InventoryDeltaEngine.ImportLine(1L, i, null, 4.0, Inventory.InventoryStatus.AVAILABLE, null));
+        }
+        lines.add(new InventoryDeltaEngine.ImportLine(1L, 1L, null, 3.0, Inventory.InventoryStatus.RESERVED, 9L));
+
+        engine.postImport(note, lines);
+
+        // Không còn khóa/đọc trước: toàn bộ phiếu đi qua một lần upsert
+        verifyNoInteractions(jdbcTemplate);
+        ArgumentCaptor<Collection<InventoryUpsertRepository.Delta>> upserted = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryUpsertRepository).addQuantities(upserted.capture());
+        assertEquals(LINES + 1, upserted.getValue().size());
+        assertTrue(upserted.getValue().stream()
+                .anyMatch(d -> d.getStatus() == Inventory.InventoryStatus.RESERVED && d.getSalesOrderId() == 9L && d.getQuantity() == 3.0));
+        assertTrue(upserted.getValue().stream()
+                .filter(d -> d.getStatus() == Inventory.InventoryStatus.AVAILABLE)
+                .allMatch(d -> d.getSalesOrderId() == null && d.getQuantity() == 4.0));
+
+        // Số dư tồn do InventoryUpsertRepository cập nhật, engine chỉ còn ghi thẻ kho
+        verifyNoInteractions(inventoryBalanceService);
+        verify(entityManager, times(LINES + 1)).persist(any(InventoryTransaction.class));
+        verify(entityManager, never()).persist(any(Inventory.class));
+    }
+}
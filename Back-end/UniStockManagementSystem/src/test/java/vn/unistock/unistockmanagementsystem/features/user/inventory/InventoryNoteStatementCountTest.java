@@ -0,0 +1,254 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteDTO;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteDetailDTO;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteMapper;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteService;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.ReceiveOutsourceMapper;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.ReceiveOutsourceMaterialMapper;
+import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderService;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDTO;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDetailDTO;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDetailViewMapper;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteMapper;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteService;
+import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersService;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.IdGeneratorInitializer;
+import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Đếm số lệnh JDBC thật sự gửi xuống CSDL khi lưu một phiếu 500 dòng qua IssueNoteService/ReceiptNoteService,
+ * với hibernate.jdbc.batch_size, order_inserts và order_updates lấy từ application.yml. Mỗi lần executeBatch chỉ tính
+ * một lệnh dù chứa bao nhiêu dòng; trên MySQL, rewriteBatchedStatements gộp tiếp mỗi batch thành một câu INSERT nhiều dòng.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement_count;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import({IssueNoteService.class, ReceiptNoteService.class, InventoryDeltaEngine.class, InventoryUpsertRepository.class,
+        InventoryBalanceService.class, InventoryClosingBalanceService.class, InventoryNoteStatementCountTest.Config.class})
+public class InventoryNoteStatementCountTest {
+    private static final int LINES = 500;
+    // hibernate.jdbc.batch_size trong application.yml
+    private static final int HIBERNATE_BATCH_SIZE = 50;
+    // Cỡ lô của InventoryUpsertRepository và InventoryBalanceService
+    private static final int JDBC_BATCH_SIZE = 100;
+    // Mỗi khối ID của id_generator tốn SELECT ... FOR UPDATE + UPDATE; có thể lấy dư một khối
+    private static final int ID_GENERATOR_STATEMENTS = 2 * (LINES / IdGeneratorInitializer.ALLOCATION_SIZE + 1);
+    // Chi tiết phiếu và thẻ kho (Hibernate batch + id_generator), inventory và inventory_balance (JDBC batch),
+    // cộng vài lệnh cố định: INSERT đầu phiếu, nạp danh mục bằng findAllById, SELECT ... FOR UPDATE khi xuất
+    private static final int MAX_STATEMENTS_PER_NOTE = 2 * (LINES / HIBERNATE_BATCH_SIZE + ID_GENERATOR_STATEMENTS)
+            + 2 * (LINES / JDBC_BATCH_SIZE) + 10;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        static StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    // Bọc DataSource để ghi lại mọi lệnh gửi đi, kể cả từ JdbcTemplate và kết nối riêng của id_generator
+    static class StatementCounter implements BeanPostProcessor, QueryExecutionListener {
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                return ProxyDataSourceBuilder.create(dataSource).listener(this).build();
+            }
+            return bean;
+        }
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            statements.add(queryInfoList.get(0).getQuery().toLowerCase(Locale.ROOT));
+        }
+
+        void reset() {
+            statements.clear();
+        }
+
+        int total() {
+            return statements.size();
+        }
+
+        long count(String prefix) {
+            return statements.stream().filter(sql -> sql.startsWith(prefix)).count();
+        }
+    }
+
+    @MockBean private AzureBlobService azureBlobService;
+    @MockBean private ReservationService reservationService;
+    @MockBean private IssueNoteMapper issueNoteMapper;
+    @MockBean private ReceiveOutsourceMapper receiveOutsourceMapper;
+    @MockBean private ReceiveOutsourceMaterialMapper receiveOutsourceMaterialMapper;
+    @MockBean private ReceiptNoteMapper receiptNoteMapper;
+    @MockBean private ReceiptNoteDetailViewMapper receiptNoteDetailViewMapper;
+    @MockBean private PurchaseOrderService purchaseOrderService;
+    @MockBean private SaleOrdersService saleOrdersService;
+
+    @Autowired private IssueNoteService issueNoteService;
+    @Autowired private ReceiptNoteService receiptNoteService;
+    @Autowired private StatementCounter statementCounter;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private long warehouseId;
+    private final List<Long> materialIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        // Trên MySQL khóa uk_inventory_row do InventoryUniqueKeyInitializer tạo; H2 dựng lại bằng cú pháp của nó
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS material_key BIGINT GENERATED ALWAYS AS (COALESCE(material_id, 0))");
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS product_key BIGINT GENERATED ALWAYS AS (COALESCE(product_id, 0))");
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS order_key BIGINT GENERATED ALWAYS AS (COALESCE(order_id, 0))");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + InventoryUniqueKeyInitializer.UNIQUE_KEY
+                + " ON inventory (warehouse_id, material_key, product_key, status, order_key)");
+
+        jdbcTemplate.update("INSERT INTO users (password, email, username, is_active) VALUES ('x', 'kho@unistock.vn', 'kho', TRUE)");
+        long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE email = 'kho@unistock.vn'", Long.class);
+        jdbcTemplate.update("INSERT INTO units (unit_name, status) VALUES ('Cái', TRUE)");
+        Long unitId = jdbcTemplate.queryForObject("SELECT unit_id FROM units", Long.class);
+        jdbcTemplate.update("INSERT INTO material_types (type_name, is_using_active) VALUES ('Vải', TRUE)");
+        Long typeId = jdbcTemplate.queryForObject("SELECT material_type_id FROM material_types", Long.class);
+        List<Object[]> materials = new ArrayList<>();
+        for (int i = 1; i <= LINES; i++) {
+            materials.add(new Object[]{String.format("NVL%05d", i), "Vật tư " + i, unitId, typeId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active)"
+                + " VALUES (?, ?, ?, ?, TRUE)", materials);
+        materialIds.addAll(jdbcTemplate.queryForList("SELECT material_id FROM materials ORDER BY material_id", Long.class));
+        jdbcTemplate.update("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO01', 'Kho vật tư', TRUE)");
+        warehouseId = jdbcTemplate.queryForObject("SELECT warehouse_id FROM warehouse", Long.class);
+
+        User user = User.builder().userId(userId).email("kho@unistock.vn").username("kho").isActive(true).build();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new CustomUserDetails(UserPrincipal.from(user)), null, List.of()));
+    }
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testReceiptNote_500Lines_UsesBoundedNumberOfStatements() {
+        statementCounter.reset();
+        receiptNoteService.createGoodReceipt(receipt());
+
+        assertEquals(LINES, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM good_receipt_detail", Integer.class));
+        assertEquals(LINES, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory_transaction", Integer.class));
+        assertEquals(LINES, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory", Integer.class));
+        assertBatched("insert into good_receipt_detail", HIBERNATE_BATCH_SIZE);
+        assertBatched("insert into inventory_transaction", HIBERNATE_BATCH_SIZE);
+        assertBatched("insert into inventory ", JDBC_BATCH_SIZE);
+        assertBatched("insert into inventory_balance", JDBC_BATCH_SIZE);
+        assertTrue(statementCounter.total() <= MAX_STATEMENTS_PER_NOTE,
+                "Phiếu nhập " + LINES + " dòng gửi " + statementCounter.total() + " lệnh xuống CSDL");
+    }
+
+    @Test
+    void testIssueNote_500Lines_UsesBoundedNumberOfStatements() {
+        receiptNoteService.createGoodReceipt(receipt());
+
+        statementCounter.reset();
+        issueNoteService.createGoodIssue(issue());
+
+        assertEquals(LINES, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM good_issue_details", Integer.class));
+        assertEquals(2 * LINES, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory_transaction", Integer.class));
+        assertEquals(0.0, jdbcTemplate.queryForObject("SELECT SUM(quantity) FROM inventory", Double.class), 1e-6);
+        assertBatched("insert into good_issue_details", HIBERNATE_BATCH_SIZE);
+        assertBatched("insert into inventory_transaction", HIBERNATE_BATCH_SIZE);
+        assertBatched("update inventory ", JDBC_BATCH_SIZE);
+        assertBatched("insert into inventory_balance", JDBC_BATCH_SIZE);
+        assertTrue(statementCounter.total() <= MAX_STATEMENTS_PER_NOTE,
+                "Phiếu xuất " + LINES + " dòng gửi " + statementCounter.total() + " lệnh xuống CSDL");
+    }
+
+    // LINES dòng của một bảng phải đi trong LINES / batchSize lệnh, không phải mỗi dòng một lệnh
+    private void assertBatched(String prefix, int batchSize) {
+        long statements = statementCounter.count(prefix);
+        assertTrue(statements >= 1 && statements <= LINES / batchSize,
+                "'" + prefix + "' chạy " + statements + " lệnh cho " + LINES + " dòng");
+    }
+
+    private ReceiptNoteDTO receipt() {
+        List<ReceiptNoteDetailDTO> details = new ArrayList<>();
+        for (Long materialId : materialIds) {
+            ReceiptNoteDetailDTO detail = new ReceiptNoteDetailDTO();
+            detail.setWarehouseId(warehouseId);
+            detail.setMaterialId(materialId);
+            detail.setQuantity(2.0);
+            details.add(detail);
+        }
+        ReceiptNoteDTO dto = new ReceiptNoteDTO();
+        dto.setGrnCode("NK00001");
+        dto.setCategory("Vật tư mua bán");
+        dto.setReceiptDate(LocalDateTime.now());
+        dto.setDetails(details);
+        return dto;
+    }
+
+    private IssueNoteDTO issue() {
+        List<IssueNoteDetailDTO> details = new ArrayList<>();
+        for (Long materialId : materialIds) {
+            IssueNoteDetailDTO detail = new IssueNoteDetailDTO();
+            detail.setWarehouseId(warehouseId);
+            detail.setMaterialId(materialId);
+            detail.setQuantity(2.0);
+            details.add(detail);
+        }
+        IssueNoteDTO dto = new IssueNoteDTO();
+        dto.setGinCode("XK00001");
+        dto.setCategory("Xuất kho khác");
+        dto.setIssueDate(LocalDateTime.now());
+        dto.setDetails(details);
+        return dto;
+    }
+}
@@ -0,0 +1,245 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteDTO;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteDetailDTO;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteMapper;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteService;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.ReceiveOutsourceMapper;
+import vn.unistock.unistockmanagementsystem.features.user.issueNote.ReceiveOutsourceMaterialMapper;
+import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderService;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDTO;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDetailDTO;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDetailViewMapper;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteMapper;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteService;
+import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersService;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflict;
+import vn.unistock.unistockmanagementsystem.utils.RetryOnConflictAspect;
+import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hàng trăm phiếu nhập/xuất chạy song song trên cùng một mã hàng, đi qua đúng đường ghi kho thật
+ * (IssueNoteService/ReceiptNoteService -> InventoryDeltaEngine -> inventory, inventory_balance, thẻ kho) trên H2 chế độ MySQL.
+ * Song song với đó là các lần điều chỉnh ghi qua entity {@link Inventory} có @Version, luôn đọc phải bản cũ
+ * vì các phiếu tăng version bằng JDBC, nên chỉ thành công nhờ @RetryOnConflict chạy lại.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:hot_sku;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        // Mỗi phiếu giữ một connection và mượn thêm một cái khi lấy khối ID từ id_generator
+        "spring.datasource.hikari.maximum-pool-size=" + (2 * InventoryPostingConcurrencyTest.THREADS),
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({IssueNoteService.class, ReceiptNoteService.class, InventoryDeltaEngine.class, InventoryUpsertRepository.class,
+        InventoryBalanceService.class, RetryOnConflictAspect.class, InventoryPostingConcurrencyTest.Config.class})
+public class InventoryPostingConcurrencyTest {
+    static final int THREADS = 8;
+    private static final int NOTES = 400;
+    private static final int ADJUSTMENTS = 20;
+    private static final double INITIAL = 10_000.0;
+    private static final double RECEIPT_QUANTITY = 5.0;
+    private static final double ISSUE_QUANTITY = 3.0;
+    private static final double ADJUSTMENT_QUANTITY = 1.0;
+
+    @TestConfiguration
+    @EnableAspectJAutoProxy
+    static class Config {
+        @Bean
+        StockAdjuster stockAdjuster(InventoryRepository inventoryRepository) {
+            return new StockAdjuster(inventoryRepository);
+        }
+    }
+
+    // Điều chỉnh tồn kiểu đọc entity - sửa - ghi: xung đột với phiếu chạy song song bị @Version chặn lại
+    public static class StockAdjuster {
+        private final InventoryRepository inventoryRepository;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        StockAdjuster(InventoryRepository inventoryRepository) {
+            this.inventoryRepository = inventoryRepository;
+        }
+
+        @RetryOnConflict(maxAttempts = 100, backoffMillis = 2)
+        @Transactional
+        public void adjust(Long inventoryId, double delta) {
+            attempts.incrementAndGet();
+            Inventory inventory = inventoryRepository.findById(inventoryId).orElseThrow();
+            inventory.setQuantity(inventory.getQuantity() + delta);
+        }
+
+        public int getAttempts() {
+            return attempts.get();
+        }
+    }
+
+    @MockBean private AzureBlobService azureBlobService;
+    @MockBean private ReservationService reservationService;
+    @MockBean private IssueNoteMapper issueNoteMapper;
+    @MockBean private ReceiveOutsourceMapper receiveOutsourceMapper;
+    @MockBean private ReceiveOutsourceMaterialMapper receiveOutsourceMaterialMapper;
+    @MockBean private ReceiptNoteMapper receiptNoteMapper;
+    @MockBean private ReceiptNoteDetailViewMapper receiptNoteDetailViewMapper;
+    @MockBean private PurchaseOrderService purchaseOrderService;
+    @MockBean private SaleOrdersService saleOrdersService;
+    @MockBean private InventoryClosingBalanceService inventoryClosingBalanceService;
+
+    @Autowired private IssueNoteService issueNoteService;
+    @Autowired private ReceiptNoteService receiptNoteService;
+    @Autowired private StockAdjuster stockAdjuster;
+    @Autowired private InventoryUpsertRepository inventoryUpsertRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private long userId;
+    private long warehouseId;
+    private long materialId;
+
+    @BeforeEach
+    void seed() {
+        // Trên MySQL khóa uk_inventory_row do InventoryUniqueKeyInitializer tạo; H2 dựng lại bằng cú pháp của nó
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS material_key BIGINT GENERATED ALWAYS AS (COALESCE(material_id, 0))");
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS product_key BIGINT GENERATED ALWAYS AS (COALESCE(product_id, 0))");
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS order_key BIGINT GENERATED ALWAYS AS (COALESCE(order_id, 0))");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + InventoryUniqueKeyInitializer.UNIQUE_KEY
+                + " ON inventory (warehouse_id, material_key, product_key, status, order_key)");
+
+        jdbcTemplate.update("INSERT INTO users (password, email, username, is_active) VALUES ('x', 'kho@unistock.vn', 'kho', TRUE)");
+        userId = jdbcTemplate.queryForObject("SELECT user_id FROM users WHERE email = 'kho@unistock.vn'", Long.class);
+        jdbcTemplate.update("INSERT INTO units (unit_name, status) VALUES ('Cái', TRUE)");
+        Long unitId = jdbcTemplate.queryForObject("SELECT unit_id FROM units", Long.class);
+        jdbcTemplate.update("INSERT INTO material_types (type_name, is_using_active) VALUES ('Vải', TRUE)");
+        Long typeId = jdbcTemplate.queryForObject("SELECT material_type_id FROM material_types", Long.class);
+        jdbcTemplate.update("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active)"
+                + " VALUES ('NVL00001', 'Vải cotton', ?, ?, TRUE)", unitId, typeId);
+        materialId = jdbcTemplate.queryForObject("SELECT material_id FROM materials", Long.class);
+        jdbcTemplate.update("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO01', 'Kho vật tư', TRUE)");
+        warehouseId = jdbcTemplate.queryForObject("SELECT warehouse_id FROM warehouse", Long.class);
+
+        transactionTemplate.executeWithoutResult(status -> inventoryUpsertRepository.addQuantities(List.of(
+                new InventoryUpsertRepository.Delta(warehouseId, materialId, null, Inventory.InventoryStatus.AVAILABLE,
+                        null, INITIAL, LocalDateTime.now()))));
+    }
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testParallelNotesOnHotSku_FinalBalanceIsExact() throws Exception {
+        Long inventoryId = jdbcTemplate.queryForObject("SELECT inventory_id FROM inventory", Long.class);
+        User user = User.builder().userId(userId).email("kho@unistock.vn").username("kho").isActive(true).build();
+        CustomUserDetails principal = new CustomUserDetails(UserPrincipal.from(user));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < NOTES; i++) {
+                int note = i;
+                futures.add(pool.submit(() -> {
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+                    start.await();
+                    // Phiếu chẵn là phiếu nhập, phiếu lẻ là phiếu xuất
+                    if (note % 2 == 0) {
+                        receiptNoteService.createGoodReceipt(receipt(note));
+                    } else {
+                        issueNoteService.createGoodIssue(issue(note));
+                    }
+                    SecurityContextHolder.clearContext();
+                    return null;
+                }));
+            }
+            for (int i = 0; i < ADJUSTMENTS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    stockAdjuster.adjust(inventoryId, ADJUSTMENT_QUANTITY);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double expected = INITIAL + (NOTES / 2) * RECEIPT_QUANTITY - (NOTES / 2) * ISSUE_QUANTITY
+                + ADJUSTMENTS * ADJUSTMENT_QUANTITY;
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory", Integer.class));
+        assertEquals(expected, jdbcTemplate.queryForObject("SELECT quantity FROM inventory", Double.class), 1e-6);
+        assertEquals(expected, jdbcTemplate.queryForObject(
+                "SELECT quantity FROM inventory_balance WHERE item_type = 'MATERIAL' AND item_id = ? AND status = 'AVAILABLE'",
+                Double.class, materialId), 1e-6);
+        assertEquals(NOTES, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM inventory_transaction", Integer.class));
+
+        // Mỗi phiếu và mỗi lần điều chỉnh thành công tăng version đúng một lần, kể cả khi ghi bằng JDBC
+        assertEquals(NOTES + ADJUSTMENTS, jdbcTemplate.queryForObject("SELECT version FROM inventory", Long.class));
+        assertTrue(stockAdjuster.getAttempts() > ADJUSTMENTS, "Ghi entity bản cũ phải bị @Version chặn và được chạy lại");
+    }
+
+    private ReceiptNoteDTO receipt(int note) {
+        ReceiptNoteDetailDTO detail = new ReceiptNoteDetailDTO();
+        detail.setWarehouseId(warehouseId);
+        detail.setMaterialId(materialId);
+        detail.setQuantity(RECEIPT_QUANTITY);
+
+        ReceiptNoteDTO dto = new ReceiptNoteDTO();
+        dto.setGrnCode(String.format("NK%05d", note));
+        dto.setCategory("Vật tư mua bán");
+        dto.setReceiptDate(LocalDateTime.now());
+        dto.setDetails(List.of(detail));
+        return dto;
+    }
+
+    private IssueNoteDTO issue(int note) {
+        IssueNoteDetailDTO detail = new IssueNoteDetailDTO();
+        detail.setWarehouseId(warehouseId);
+        detail.setMaterialId(materialId);
+        detail.setQuantity(ISSUE_QUANTITY);
+
+        IssueNoteDTO dto = new IssueNoteDTO();
+        dto.setGinCode(String.format("XK%05d", note));
+        dto.setCategory("Xuất kho khác");
+        dto.setIssueDate(LocalDateTime.now());
+        dto.setDetails(List.of(detail));
+        return dto;
+    }
+}
@@ -0,0 +1,154 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chạy câu SQL báo cáo tồn kho thật trên H2 chế độ MySQL: bộ lọc WHERE/HAVING, COUNT trên kết quả đã nhóm,
+ * thứ tự và LIMIT/OFFSET.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:inventory_report;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(InventoryReportQueryRepository.class)
+public class InventoryReportQueryRepositoryTest {
+    @Autowired private InventoryReportQueryRepository repository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private long warehouse1;
+    private long warehouse2;
+    private long fabricTypeId;
+    private long threadTypeId;
+    private long shirtTypeId;
+
+    // 5 dòng báo cáo: NVL001@KHO01, NVL001@KHO02, NVL002@KHO01, NVL003@KHO01, SP001@KHO01
+    @BeforeEach
+    void seed() {
+        long unitId = insert("INSERT INTO units (unit_name, status) VALUES ('Cái', TRUE)", "SELECT MAX(unit_id) FROM units");
+        fabricTypeId = insert("INSERT INTO material_types (type_name, is_using_active) VALUES ('Vải', TRUE)",
+                "SELECT MAX(material_type_id) FROM material_types");
+        threadTypeId = insert("INSERT INTO material_types (type_name, is_using_active) VALUES ('Chỉ', TRUE)",
+                "SELECT MAX(material_type_id) FROM material_types");
+        shirtTypeId = insert("INSERT INTO product_types (type_name, status) VALUES ('Áo', TRUE)",
+                "SELECT MAX(type_id) FROM product_types");
+        warehouse1 = insert("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO01', 'Kho vật tư', TRUE)",
+                "SELECT MAX(warehouse_id) FROM warehouse");
+        warehouse2 = insert("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO02', 'Kho thành phẩm', TRUE)",
+                "SELECT MAX(warehouse_id) FROM warehouse");
+
+        long cotton = material("NVL001", "Vải 100% cotton", unitId, fabricTypeId, true);
+        long thread = material("NVL002", "Chỉ may", unitId, threadTypeId, true);
+        long lining = material("NVL003", "Vải_lót", unitId, fabricTypeId, false);
+        long shirt = insert("INSERT INTO products (product_code, product_name, unit_id, type_id, is_production_active)"
+                + " VALUES ('SP001', 'Áo sơ mi', " + unitId + ", " + shirtTypeId + ", TRUE)", "SELECT MAX(product_id) FROM products");
+
+        inventory(warehouse1, cotton, null, "AVAILABLE", 10);
+        inventory(warehouse1, cotton, null, "RESERVED", 4);
+        inventory(warehouse2, cotton, null, "AVAILABLE", 3);
+        inventory(warehouse1, thread, null, "AVAILABLE", 7);
+        inventory(warehouse1, lining, null, "AVAILABLE", 1);
+        inventory(warehouse1, null, shirt, "AVAILABLE", 5);
+        inventory(warehouse1, null, shirt, "RESERVED", 5);
+    }
+
+    @Test
+    void testNoFilter_GroupsAndPagesByCodeThenWarehouse() {
+        Page<InventoryReportDTO> first = repository.findReport(new InventoryReportFilter(), PageRequest.of(0, 2));
+        assertEquals(5, first.getTotalElements());
+        assertEquals(List.of("NVL001@KHO01", "NVL001@KHO02"), keys(first));
+
+        InventoryReportDTO cotton = first.getContent().get(0);
+        assertEquals(10.0, cotton.getAvailableQuantity());
+        assertEquals(4.0, cotton.getReservedQuantity());
+        assertEquals(14.0, cotton.getTotalQuantity());
+        assertEquals("MATERIAL", cotton.getItemType());
+        assertEquals(fabricTypeId, cotton.getMaterialTypeId());
+        assertEquals("Cái", cotton.getUnitName());
+        assertTrue(cotton.getIsActive());
+
+        Page<InventoryReportDTO> last = repository.findReport(new InventoryReportFilter(), PageRequest.of(2, 2));
+        assertEquals(List.of("SP001@KHO01"), keys(last));
+        assertEquals("PRODUCT", last.getContent().get(0).getItemType());
+        assertEquals(shirtTypeId, last.getContent().get(0).getProductTypeId());
+
+        Page<InventoryReportDTO> beyond = repository.findReport(new InventoryReportFilter(), PageRequest.of(3, 2));
+        assertTrue(beyond.getContent().isEmpty());
+        assertEquals(5, beyond.getTotalElements());
+    }
+
+    @Test
+    void testSearch_IsCaseInsensitiveAndTreatsWildcardsLiterally() {
+        assertEquals(List.of("NVL001@KHO01", "NVL001@KHO02", "NVL003@KHO01"), keys(report(filter().search("VẢI"))));
+        assertEquals(List.of("NVL001@KHO01", "NVL001@KHO02"), keys(report(filter().search("100%"))));
+        // Không thoát thì '_' khớp mọi ký tự và trả về cả 5 dòng
+        assertEquals(List.of("NVL003@KHO01"), keys(report(filter().search("_"))));
+        assertEquals(List.of("SP001@KHO01"), keys(report(filter().search("sp0"))));
+    }
+
+    @Test
+    void testWhereFilters() {
+        assertEquals(List.of("NVL001@KHO02"), keys(report(filter().warehouseIds(List.of(warehouse2)))));
+        assertEquals(List.of("SP001@KHO01"), keys(report(filter().itemType("PRODUCT"))));
+        assertEquals(4, report(filter().itemType("MATERIAL")).getTotalElements());
+        assertEquals(List.of("NVL003@KHO01"), keys(report(filter().statuses(List.of(false)))));
+        // Lọc loại vật tư không loại bỏ sản phẩm, và ngược lại
+        assertEquals(List.of("NVL002@KHO01", "SP001@KHO01"), keys(report(filter().materialTypeIds(List.of(threadTypeId)))));
+        assertEquals(4, report(filter().productTypeIds(List.of(-1L))).getTotalElements());
+    }
+
+    @Test
+    void testHavingRanges_AreAppliedToGroupedTotalsAndCounted() {
+        Page<InventoryReportDTO> reserved = report(filter().minReserved(1.0));
+        assertEquals(List.of("NVL001@KHO01", "SP001@KHO01"), keys(reserved));
+        assertEquals(2, reserved.getTotalElements());
+
+        assertEquals(List.of("NVL002@KHO01", "SP001@KHO01"), keys(report(filter().minTotal(5.0).maxTotal(10.0))));
+        assertEquals(List.of("NVL001@KHO02", "NVL003@KHO01"), keys(report(filter().maxAvailable(3.0).itemType("MATERIAL"))));
+    }
+
+    private InventoryReportFilter.InventoryReportFilterBuilder filter() {
+        return InventoryReportFilter.builder();
+    }
+
+    private Page<InventoryReportDTO> report(InventoryReportFilter.InventoryReportFilterBuilder filter) {
+        return repository.findReport(filter.build(), PageRequest.of(0, 20));
+    }
+
+    private static List<String> keys(Page<InventoryReportDTO> page) {
+        return page.getContent().stream().map(r -> r.getItemCode() + "@" + r.getWarehouseCode()).toList();
+    }
+
+    private long insert(String sql, String idQuery) {
+        jdbcTemplate.update(sql);
+        return jdbcTemplate.queryForObject(idQuery, Long.class);
+    }
+
+    private long material(String code, String name, long unitId, long typeId, boolean active) {
+        jdbcTemplate.update("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active) VALUES (?, ?, ?, ?, ?)",
+                code, name, unitId, typeId, active);
+        return jdbcTemplate.queryForObject("SELECT material_id FROM materials WHERE material_code = ?", Long.class, code);
+    }
+
+    private void inventory(long warehouseId, Long materialId, Long productId, String status, double quantity) {
+        jdbcTemplate.update("INSERT INTO inventory (warehouse_id, material_id, product_id, status, quantity) VALUES (?, ?, ?, ?, ?)",
+                warehouseId, materialId, productId, status, quantity);
+    }
+}
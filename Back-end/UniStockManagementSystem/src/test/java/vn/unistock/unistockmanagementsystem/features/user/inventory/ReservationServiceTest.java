@@ -0,0 +1,258 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Nhả hàng giữ trên H2 chế độ MySQL: chỉ các dòng RESERVED của đúng đơn hàng bị xóa, số lượng được cộng dồn vào
+ * dòng AVAILABLE cùng kho (hoặc dòng mới) và inventory_balance khớp với bảng inventory sau đó.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservation;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import({ReservationService.class, InventoryBalanceService.class, InventoryUpsertRepository.class, ReservationServiceTest.Config.class})
+public class ReservationServiceTest {
+    // Câu MERGE tương đương upsert của InventoryUpsertRepository, so khớp NULL bằng IS NOT DISTINCT FROM như uk_inventory_row
+    private static final String H2_UPSERT_SQL = """
+            MERGE INTO inventory t
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS VARCHAR),
+                           CAST(? AS BIGINT), CAST(? AS DOUBLE PRECISION), CAST(? AS TIMESTAMP)))
+                  s (warehouse_id, material_id, product_id, status, order_id, quantity, last_updated)
+            ON t.warehouse_id = s.warehouse_id AND t.material_id IS NOT DISTINCT FROM s.material_id
+               AND t.product_id IS NOT DISTINCT FROM s.product_id AND t.status = s.status
+               AND t.order_id IS NOT DISTINCT FROM s.order_id
+            WHEN MATCHED THEN UPDATE SET quantity = t.quantity + s.quantity, last_updated = s.last_updated
+            WHEN NOT MATCHED THEN INSERT (warehouse_id, material_id, product_id, status, order_id, quantity, last_updated)
+                VALUES (s.warehouse_id, s.material_id, s.product_id, s.status, s.order_id, s.quantity, s.last_updated)
+            """;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        static BeanPostProcessor h2InventoryUpsert() {
+            return new H2InventoryUpsert();
+        }
+    }
+
+    // H2 xử lý ON DUPLICATE KEY UPDATE bằng cách so các cột của khóa có mặt trong câu INSERT, bỏ qua cột sinh
+    // material_key/product_key/order_key nên cộng nhầm vào dòng khác cùng kho và trạng thái; MySQL không bị vậy.
+    static class H2InventoryUpsert implements BeanPostProcessor {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                return ProxyDataSourceBuilder.create(dataSource)
+                        .queryTransformer(info -> isInventoryUpsert(info.getQuery()) ? H2_UPSERT_SQL : info.getQuery())
+                        .build();
+            }
+            return bean;
+        }
+
+        private static boolean isInventoryUpsert(String sql) {
+            return sql.stripLeading().startsWith("INSERT INTO inventory (") && sql.contains("ON DUPLICATE KEY UPDATE");
+        }
+    }
+
+    @Autowired private ReservationService reservationService;
+    @Autowired private InventoryBalanceService inventoryBalanceService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private long kho1;
+    private long kho2;
+    private long fabricId;
+    private long threadId;
+    private long shirtId;
+    private long order1;
+    private long order2;
+
+    // Đơn 1 giữ: vải 4 (KHO01) + 2 (KHO02), chỉ 5, áo 6; đơn 2 giữ vải 3 (KHO01)
+    @BeforeEach
+    void seed() {
+        // Trên MySQL khóa uk_inventory_row do InventoryUniqueKeyInitializer tạo; H2 dựng lại bằng cú pháp của nó
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS material_key BIGINT GENERATED ALWAYS AS (COALESCE(material_id, 0))");
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS product_key BIGINT GENERATED ALWAYS AS (COALESCE(product_id, 0))");
+        jdbcTemplate.execute("ALTER TABLE inventory ADD COLUMN IF NOT EXISTS order_key BIGINT GENERATED ALWAYS AS (COALESCE(order_id, 0))");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + InventoryUniqueKeyInitializer.UNIQUE_KEY
+                + " ON inventory (warehouse_id, material_key, product_key, status, order_key)");
+
+        jdbcTemplate.update("INSERT INTO users (password, email, username, is_active) VALUES ('x', 'kho@unistock.vn', 'kho', TRUE)");
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM users", Long.class);
+        jdbcTemplate.update("INSERT INTO partners (partner_name, address, phone) VALUES ('Công ty A', 'Hà Nội', '0900000000')");
+        Long partnerId = jdbcTemplate.queryForObject("SELECT partner_id FROM partners", Long.class);
+        jdbcTemplate.update("INSERT INTO units (unit_name, status) VALUES ('Cái', TRUE)");
+        Long unitId = jdbcTemplate.queryForObject("SELECT unit_id FROM units", Long.class);
+        jdbcTemplate.update("INSERT INTO material_types (type_name, is_using_active) VALUES ('Vải', TRUE)");
+        Long materialTypeId = jdbcTemplate.queryForObject("SELECT material_type_id FROM material_types", Long.class);
+        jdbcTemplate.update("INSERT INTO product_types (type_name, status) VALUES ('Áo', TRUE)");
+        Long productTypeId = jdbcTemplate.queryForObject("SELECT type_id FROM product_types", Long.class);
+
+        kho1 = insert("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO01', 'Kho vật tư', TRUE)",
+                "SELECT MAX(warehouse_id) FROM warehouse");
+        kho2 = insert("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO02', 'Kho phụ', TRUE)",
+                "SELECT MAX(warehouse_id) FROM warehouse");
+        fabricId = insert("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active)"
+                + " VALUES ('NVL001', 'Vải cotton', " + unitId + ", " + materialTypeId + ", TRUE)", "SELECT MAX(material_id) FROM materials");
+        threadId = insert("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active)"
+                + " VALUES ('NVL002', 'Chỉ may', " + unitId + ", " + materialTypeId + ", TRUE)", "SELECT MAX(material_id) FROM materials");
+        shirtId = insert("INSERT INTO products (product_code, product_name, unit_id, type_id, is_production_active)"
+                + " VALUES ('SP001', 'Áo sơ mi', " + unitId + ", " + productTypeId + ", TRUE)", "SELECT MAX(product_id) FROM products");
+        order1 = insert("INSERT INTO sales_orders (order_code, partner_id, order_date, created_by, status)"
+                + " VALUES ('DH001', " + partnerId + ", CURRENT_DATE, " + userId + ", 'PROCESSING')", "SELECT MAX(order_id) FROM sales_orders");
+        order2 = insert("INSERT INTO sales_orders (order_code, partner_id, order_date, created_by, status)"
+                + " VALUES ('DH002', " + partnerId + ", CURRENT_DATE, " + userId + ", 'PROCESSING')", "SELECT MAX(order_id) FROM sales_orders");
+
+        inventory(kho1, fabricId, null, "AVAILABLE", null, 10);
+        inventory(kho1, fabricId, null, "RESERVED", order1, 4);
+        inventory(kho1, fabricId, null, "RESERVED", order2, 3);
+        inventory(kho2, fabricId, null, "RESERVED", order1, 2);
+        inventory(kho1, threadId, null, "AVAILABLE", null, 1);
+        inventory(kho1, threadId, null, "RESERVED", order1, 5);
+        inventory(kho1, null, shirtId, "AVAILABLE", null, 2);
+        inventory(kho1, null, shirtId, "RESERVED", order1, 6);
+
+        // Dựng inventory_balance từ dữ liệu mẫu như job đối chiếu
+        inventoryBalanceService.reconcile();
+    }
+
+    @Test
+    void testReleaseAll_MergesOnlyThisOrderIntoAvailable() {
+        reservationService.releaseAll(order1);
+
+        assertEquals(Map.of(
+                "KHO01 NVL001 AVAILABLE -", 14.0,
+                "KHO01 NVL001 RESERVED DH002", 3.0,
+                "KHO02 NVL001 AVAILABLE -", 2.0,
+                "KHO01 NVL002 AVAILABLE -", 6.0,
+                "KHO01 SP001 AVAILABLE -", 8.0), rows());
+        assertEquals(0, inventoryBalanceService.reconcile());
+    }
+
+    @Test
+    void testReleaseProducts_LeavesReservedMaterials() {
+        reservationService.releaseProducts(order1);
+
+        Map<String, Double> rows = rows();
+        assertEquals(8.0, rows.get("KHO01 SP001 AVAILABLE -"));
+        assertFalse(rows.containsKey("KHO01 SP001 RESERVED DH001"));
+        assertEquals(4.0, rows.get("KHO01 NVL001 RESERVED DH001"));
+        assertEquals(2.0, rows.get("KHO02 NVL001 RESERVED DH001"));
+        assertEquals(5.0, rows.get("KHO01 NVL002 RESERVED DH001"));
+        assertEquals(10.0, rows.get("KHO01 NVL001 AVAILABLE -"));
+        assertEquals(0, inventoryBalanceService.reconcile());
+    }
+
+    @Test
+    void testReleaseMaterials_OnlyListedMaterials() {
+        reservationService.releaseMaterials(order1, List.of(threadId));
+
+        Map<String, Double> rows = rows();
+        assertEquals(6.0, rows.get("KHO01 NVL002 AVAILABLE -"));
+        assertFalse(rows.containsKey("KHO01 NVL002 RESERVED DH001"));
+        assertEquals(4.0, rows.get("KHO01 NVL001 RESERVED DH001"));
+        assertEquals(6.0, rows.get("KHO01 SP001 RESERVED DH001"));
+
+        // null = mọi vật tư của đơn; hàng giữ cho đơn 2 vẫn còn nguyên
+        reservationService.releaseMaterials(order1, null);
+        rows = rows();
+        assertEquals(14.0, rows.get("KHO01 NVL001 AVAILABLE -"));
+        assertEquals(2.0, rows.get("KHO02 NVL001 AVAILABLE -"));
+        assertEquals(3.0, rows.get("KHO01 NVL001 RESERVED DH002"));
+        assertEquals(6.0, rows.get("KHO01 SP001 RESERVED DH001"));
+        assertEquals(0, inventoryBalanceService.reconcile());
+    }
+
+    @Test
+    void testReserve_TakesFromAvailableIntoThisOrder() {
+        ReservationService.ReserveLine fabric = new ReservationService.ReserveLine(null, fabricId, null, 11);
+        ReservationService.ReserveLine shirt = new ReservationService.ReserveLine(kho1, null, shirtId, 5);
+        reservationService.reserve(order2, List.of(fabric, shirt));
+
+        // Vải chỉ có 10 AVAILABLE nên thiếu 1; áo chỉ lấy ở KHO01 và thiếu 3
+        assertEquals(10.0, fabric.getReservedQuantity());
+        assertEquals(1.0, fabric.getShortfall());
+        assertEquals(2.0, shirt.getReservedQuantity());
+        assertEquals(3.0, shirt.getShortfall());
+
+        Map<String, Double> rows = rows();
+        assertEquals(0.0, rows.get("KHO01 NVL001 AVAILABLE -"));
+        assertEquals(13.0, rows.get("KHO01 NVL001 RESERVED DH002"));
+        assertEquals(4.0, rows.get("KHO01 NVL001 RESERVED DH001"));
+        assertEquals(0.0, rows.get("KHO01 SP001 AVAILABLE -"));
+        assertEquals(2.0, rows.get("KHO01 SP001 RESERVED DH002"));
+        assertEquals(6.0, rows.get("KHO01 SP001 RESERVED DH001"));
+        assertEquals(0, inventoryBalanceService.reconcile());
+
+        // Nhả lại đơn 2 trả về đúng số đã giữ, hàng giữ cho đơn 1 không đổi
+        reservationService.releaseAll(order2);
+        rows = rows();
+        assertEquals(13.0, rows.get("KHO01 NVL001 AVAILABLE -"));
+        assertEquals(2.0, rows.get("KHO01 SP001 AVAILABLE -"));
+        assertEquals(4.0, rows.get("KHO01 NVL001 RESERVED DH001"));
+        assertEquals(0, inventoryBalanceService.reconcile());
+    }
+
+    @Test
+    void testRelease_OrderWithoutReservations_ChangesNothing() {
+        Map<String, Double> before = rows();
+        reservationService.releaseAll(-1L);
+        reservationService.releaseMaterials(order1, List.of());
+        assertEquals(before, rows());
+    }
+
+    // "kho mã-hàng trạng-thái đơn" -> số lượng
+    private Map<String, Double> rows() {
+        Map<String, Double> rows = new TreeMap<>();
+        jdbcTemplate.query("""
+                SELECT w.warehouse_code, COALESCE(m.material_code, p.product_code) AS item_code, i.status,
+                       COALESCE(o.order_code, '-') AS order_code, i.quantity
+                FROM inventory i
+                JOIN warehouse w ON w.warehouse_id = i.warehouse_id
+                LEFT JOIN materials m ON m.material_id = i.material_id
+                LEFT JOIN products p ON p.product_id = i.product_id
+                LEFT JOIN sales_orders o ON o.order_id = i.order_id
+                """, rs -> {
+            String key = rs.getString("warehouse_code") + " " + rs.getString("item_code") + " "
+                    + rs.getString("status") + " " + rs.getString("order_code");
+            assertNull(rows.put(key, rs.getDouble("quantity")), "Trùng dòng " + key);
+        });
+        return rows;
+    }
+
+    private long insert(String sql, String idQuery) {
+        jdbcTemplate.update(sql);
+        return jdbcTemplate.queryForObject(idQuery, Long.class);
+    }
+
+    private void inventory(long warehouseId, Long materialId, Long productId, String status, Long orderId, double quantity) {
+        jdbcTemplate.update("INSERT INTO inventory (warehouse_id, material_id, product_id, status, order_id, quantity)"
+                + " VALUES (?, ?, ?, ?, ?, ?)", warehouseId, materialId, productId, status, orderId, quantity);
+    }
+}
@@ -0,0 +1,178 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chạy câu SQL báo cáo xuất nhập tồn thật trên H2 chế độ MySQL: tồn đầu kỳ từ snapshot và giao dịch sau đó,
+ * các bộ lọc và LIMIT/OFFSET.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock_movement;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import({StockMovementReportQueryRepository.class, InventoryClosingBalanceService.class})
+public class StockMovementReportQueryRepositoryTest {
+    private static final LocalDateTime MARCH_START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime MARCH_END = LocalDateTime.of(2024, 3, 31, 23, 59, 59);
+
+    @Autowired private StockMovementReportQueryRepository repository;
+    @Autowired private InventoryClosingBalanceService closingBalanceService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private long warehouseId;
+    private long cottonId;
+    private long threadId;
+    private long shirtId;
+    private long nextTransactionId;
+
+    // Tháng 3/2024: SP001 đầu 0 nhập 8 cuối 8; NVL001 đầu 70 nhập 20 xuất 5 cuối 85; NVL002 đầu 10, không phát sinh
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO units (unit_name, status) VALUES ('Cái', TRUE)");
+        Long unitId = jdbcTemplate.queryForObject("SELECT unit_id FROM units", Long.class);
+        jdbcTemplate.update("INSERT INTO material_types (type_name, is_using_active) VALUES ('Vải', TRUE)");
+        Long materialTypeId = jdbcTemplate.queryForObject("SELECT material_type_id FROM material_types", Long.class);
+        jdbcTemplate.update("INSERT INTO product_types (type_name, status) VALUES ('Áo', TRUE)");
+        Long productTypeId = jdbcTemplate.queryForObject("SELECT type_id FROM product_types", Long.class);
+        cottonId = material("NVL001", "Vải cotton", unitId, materialTypeId);
+        threadId = material("NVL002", "Chỉ may 50% polyester", unitId, materialTypeId);
+        jdbcTemplate.update("INSERT INTO products (product_code, product_name, unit_id, type_id, is_production_active)"
+                + " VALUES ('SP001', 'Áo sơ mi', ?, ?, TRUE)", unitId, productTypeId);
+        shirtId = jdbcTemplate.queryForObject("SELECT product_id FROM products", Long.class);
+        jdbcTemplate.update("INSERT INTO warehouse (warehouse_code, warehouse_name, is_active) VALUES ('KHO01', 'Kho vật tư', TRUE)");
+        warehouseId = jdbcTemplate.queryForObject("SELECT warehouse_id FROM warehouse", Long.class);
+
+        transaction(cottonId, null, "IMPORT", 100, LocalDateTime.of(2024, 1, 10, 9, 0));
+        transaction(cottonId, null, "EXPORT", 30, LocalDateTime.of(2024, 2, 5, 9, 0));
+        transaction(cottonId, null, "IMPORT", 20, LocalDateTime.of(2024, 3, 10, 9, 0));
+        transaction(cottonId, null, "EXPORT", 5, LocalDateTime.of(2024, 3, 20, 9, 0));
+        transaction(threadId, null, "IMPORT", 10, LocalDateTime.of(2024, 1, 15, 9, 0));
+        transaction(null, shirtId, "IMPORT", 8, LocalDateTime.of(2024, 3, 12, 9, 0));
+        // Sau kỳ báo cáo, không được tính vào phát sinh
+        transaction(cottonId, null, "EXPORT", 1, LocalDateTime.of(2024, 4, 2, 9, 0));
+    }
+
+    @Test
+    void testOpeningBalance_WithoutSnapshot_SumsHistory() {
+        Page<StockMovementReportDTO> page = report(march());
+        assertEquals(List.of("SP001", "NVL001", "NVL002"), codes(page));
+        assertRow(page.getContent().get(0), "PRODUCT", 0, 8, 0, 8);
+        assertRow(page.getContent().get(1), "MATERIAL", 70, 20, 5, 85);
+        assertRow(page.getContent().get(2), "MATERIAL", 10, 0, 0, 10);
+        assertEquals("Cái", page.getContent().get(1).getItemUnit());
+    }
+
+    @Test
+    void testOpeningBalance_UsesNearestSnapshotPlusLaterTransactions() {
+        closingBalanceService.buildMissingSnapshots();
+        assertRow(report(march()).getContent().get(1), "MATERIAL", 70, 20, 5, 85);
+
+        // Sửa snapshot tháng 2 để thấy tồn đầu kỳ lấy từ snapshot chứ không cộng lại toàn bộ lịch sử
+        jdbcTemplate.update("UPDATE inventory_closing_balance SET quantity = 1000 WHERE period_end = ? AND item_type = 'MATERIAL' AND item_id = ?",
+                Date.valueOf(LocalDate.of(2024, 2, 29)), cottonId);
+        assertRow(report(march()).getContent().get(1), "MATERIAL", 1000, 20, 5, 1015);
+
+        // Kỳ bắt đầu giữa tháng: snapshot tháng 2 cộng giao dịch 01/03 - 14/03
+        StockMovementReportDTO midMonth = report(march().startDate(LocalDateTime.of(2024, 3, 15, 0, 0))).getContent().get(1);
+        assertRow(midMonth, "MATERIAL", 1020, 0, 5, 1015);
+    }
+
+    @Test
+    void testNoStartDate_HasNoOpeningBalance() {
+        Page<StockMovementReportDTO> page = report(StockMovementReportFilter.builder().endDate(MARCH_END));
+        assertRow(page.getContent().get(1), "MATERIAL", 0, 120, 35, 85);
+    }
+
+    @Test
+    void testFilters() {
+        assertEquals(List.of("NVL001", "NVL002"), codes(report(march().itemType("MATERIAL"))));
+        assertEquals(List.of("SP001"), codes(report(march().itemType("PRODUCT"))));
+        assertEquals(List.of("SP001", "NVL001"), codes(report(march().hasMovementOnly(true))));
+        // Không thoát thì '%' khớp mọi chuỗi và trả về cả 3 dòng
+        assertEquals(List.of("NVL002"), codes(report(march().search("%"))));
+        assertEquals(List.of("SP001"), codes(report(march().search("áo"))));
+        assertEquals(List.of("NVL002"), codes(report(march().minBegin(10.0).maxBegin(10.0))));
+        assertEquals(List.of("SP001"), codes(report(march().minIn(1.0).maxIn(10.0))));
+        assertEquals(List.of("NVL001"), codes(report(march().minOut(1.0))));
+        assertEquals(List.of("SP001", "NVL002"), codes(report(march().maxEnd(10.0))));
+        assertEquals(List.of("NVL001"), codes(report(march().minEnd(50.0).itemType("MATERIAL"))));
+    }
+
+    @Test
+    void testPaging_LimitOffsetAndTotal() {
+        Page<StockMovementReportDTO> first = repository.findReport(march().build(), PageRequest.of(0, 2));
+        assertEquals(3, first.getTotalElements());
+        assertEquals(List.of("SP001", "NVL001"), codes(first));
+
+        Page<StockMovementReportDTO> second = repository.findReport(march().build(), PageRequest.of(1, 2));
+        assertEquals(List.of("NVL002"), codes(second));
+        assertEquals(3, second.getTotalElements());
+
+        Page<StockMovementReportDTO> beyond = repository.findReport(march().build(), PageRequest.of(2, 2));
+        assertTrue(beyond.getContent().isEmpty());
+        assertEquals(3, beyond.getTotalElements());
+
+        Page<StockMovementReportDTO> filtered = repository.findReport(march().hasMovementOnly(true).build(), PageRequest.of(0, 1));
+        assertEquals(2, filtered.getTotalElements());
+        assertEquals(List.of("SP001"), codes(filtered));
+    }
+
+    private StockMovementReportFilter.StockMovementReportFilterBuilder march() {
+        return StockMovementReportFilter.builder().startDate(MARCH_START).endDate(MARCH_END);
+    }
+
+    private Page<StockMovementReportDTO> report(StockMovementReportFilter.StockMovementReportFilterBuilder filter) {
+        return repository.findReport(filter.build(), PageRequest.of(0, 20));
+    }
+
+    private static List<String> codes(Page<StockMovementReportDTO> page) {
+        return page.getContent().stream().map(StockMovementReportDTO::getItemCode).toList();
+    }
+
+    private static void assertRow(StockMovementReportDTO row, String itemType, double begin, double in, double out, double end) {
+        assertEquals(itemType, row.getItemType());
+        assertEquals(begin, row.getBeginQuantity());
+        assertEquals(in, row.getInQuantity());
+        assertEquals(out, row.getOutQuantity());
+        assertEquals(end, row.getEndQuantity());
+    }
+
+    private long material(String code, String name, long unitId, long typeId) {
+        jdbcTemplate.update("INSERT INTO materials (material_code, material_name, unit_id, type_id, is_using_active) VALUES (?, ?, ?, ?, TRUE)",
+                code, name, unitId, typeId);
+        return jdbcTemplate.queryForObject("SELECT material_id FROM materials WHERE material_code = ?", Long.class, code);
+    }
+
+    // inventory_transaction lấy ID từ id_generator nên dòng ghi thẳng bằng JDBC phải tự đặt khóa
+    private void transaction(Long material, Long product, String type, double quantity, LocalDateTime date) {
+        jdbcTemplate.update("INSERT INTO inventory_transaction (transaction_id, warehouse_id, material_id, product_id, transaction_type, quantity, transaction_date)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?)", ++nextTransactionId, warehouseId, material, product, type, quantity, Timestamp.valueOf(date));
+    }
+}
@@ -0,0 +1,71 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryChangedEvent;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class LowStockEvaluatorTest {
+
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private LowStockEvaluator evaluator;
+
+    @AfterEach
+    void tearDown() {
+        evaluator.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBurstOfEvents_EachMaterialEvaluatedOnce() {
+        evaluator = new LowStockEvaluator(notificationService, 60_000, 500);
+
+        evaluator.onInventoryChanged(new InventoryChangedEvent(Set.of(1L, 2L)));
+        evaluator.onInventoryChanged(new InventoryChangedEvent(Set.of(2L, 3L)));
+        evaluator.onInventoryChanged(new InventoryChangedEvent(Set.of(1L)));
+        assertEquals(3, evaluator.getPendingCount());
+
+        evaluator.drain();
+
+        ArgumentCaptor<Collection<Long>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(notificationService, times(1)).evaluateLowStock(batch.capture());
+        assertEquals(Set.of(1L, 2L, 3L), new HashSet<>(batch.getValue()));
+        assertEquals(0, evaluator.getPendingCount());
+    }
+
+    @Test
+    void testLargeBurst_SplitIntoBatches() {
+        evaluator = new LowStockEvaluator(notificationService, 60_000, 2);
+        evaluator.onInventoryChanged(new InventoryChangedEvent(Set.of(1L, 2L, 3L, 4L, 5L)));
+
+        evaluator.drain();
+
+        verify(notificationService, times(3)).evaluateLowStock(anyCollection());
+    }
+
+    @Test
+    void testFailedBatch_DoesNotStopLaterBatches() {
+        evaluator = new LowStockEvaluator(notificationService, 60_000, 1);
+        doThrow(new RuntimeException("db down")).doNothing().when(notificationService).evaluateLowStock(anyCollection());
+        evaluator.onInventoryChanged(new InventoryChangedEvent(Set.of(1L, 2L)));
+
+        evaluator.drain();
+
+        verify(notificationService, times(2)).evaluateLowStock(anyCollection());
+    }
+
+    @Test
+    void testScheduledDrainRunsAfterDelay() {
+        evaluator = new LowStockEvaluator(notificationService, 10, 500);
+
+        evaluator.onInventoryChanged(new InventoryChangedEvent(Set.of(7L)));
+
+        verify(notificationService, timeout(2_000)).evaluateLowStock(List.of(7L));
+    }
+}
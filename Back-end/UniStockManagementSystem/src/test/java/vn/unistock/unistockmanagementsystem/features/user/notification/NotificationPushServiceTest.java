@@ -0,0 +1,83 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationPushServiceTest {
+
+    private static final Long USER_ID = 7L;
+
+    private NotificationPushService pushService;
+
+    @BeforeEach
+    void setUp() {
+        // Bộ đệm phát bù chỉ giữ 3 sự kiện
+        pushService = new NotificationPushService(3, 16, 60_000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pushService.shutdown();
+    }
+
+    private List<Long> missedIds(long lastEventId) {
+        List<NotificationPushService.PushEvent> events = pushService.eventsAfter(USER_ID, String.valueOf(lastEventId));
+        return events == null ? null : events.stream()
+                .map(NotificationPushService.PushEvent::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testResume_ReplaysOnlyMissedEvents() {
+        pushService.publish("notification", "a", null);
+        long seen = pushService.currentEventId();
+        pushService.publish("notification", "b", null);
+        pushService.publish("notification", "c", null);
+
+        assertEquals(List.of(seen + 1, seen + 2), missedIds(seen));
+        assertEquals(List.of(), missedIds(seen + 2));
+    }
+
+    @Test
+    void testResume_TooOldOrUnknownIdRequiresResync() {
+        pushService.publish("notification", "a", null);
+        long first = pushService.currentEventId();
+        pushService.publish("notification", "b", null);
+        pushService.publish("notification", "c", null);
+        pushService.publish("notification", "d", null);
+
+        // Còn b, c, d trong bộ đệm nên vẫn phát bù được cho client đã nhận a
+        assertEquals(3, missedIds(first).size());
+        // Client chưa nhận a: a đã rơi khỏi bộ đệm
+        assertNull(missedIds(first - 1));
+        // Id của lần chạy khác hoặc không hợp lệ
+        assertNull(missedIds(first + 100));
+        assertNull(pushService.eventsAfter(USER_ID, "abc"));
+    }
+
+    @Test
+    void testResume_SkipsEventsOfOtherUsers() {
+        long seen = pushService.currentEventId();
+        pushService.publish("notification", "mine", Set.of(USER_ID));
+        pushService.publish("notification", "theirs", Set.of(8L));
+        pushService.publish("notification", "everyone", null);
+
+        assertEquals(List.of(seen + 1, seen + 3), missedIds(seen));
+    }
+
+    @Test
+    void testFreshSubscriber_NoReplay() {
+        pushService.publish("notification", "a", null);
+
+        assertEquals(List.of(), pushService.eventsAfter(USER_ID, null));
+        assertNotNull(pushService.subscribe(USER_ID, null));
+        assertEquals(1, pushService.getConnectionCount());
+    }
+}
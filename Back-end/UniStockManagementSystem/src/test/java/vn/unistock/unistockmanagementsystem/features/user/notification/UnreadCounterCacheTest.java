@@ -0,0 +1,78 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class UnreadCounterCacheTest {
+
+    private final NotificationRecipientRepository recipientRepository = mock(NotificationRecipientRepository.class);
+    private final UnreadCounterCache cache = new UnreadCounterCache(recipientRepository);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testLoadedOnce_ThenUpdatedIncrementally() {
+        when(recipientRepository.countByUserIdAndIsReadFalse(1L)).thenReturn(5L);
+
+        assertEquals(5, cache.get(1L));
+        cache.adjustAfterCommit(Map.of(1L, 2L));
+        cache.adjustAfterCommit(Map.of(1L, -3L));
+
+        assertEquals(4, cache.get(1L));
+        verify(recipientRepository, times(1)).countByUserIdAndIsReadFalse(1L);
+    }
+
+    @Test
+    void testDeltaAppliedOnlyAfterCommit() {
+        when(recipientRepository.countByUserIdAndIsReadFalse(1L)).thenReturn(5L);
+        cache.get(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.adjustAfterCommit(Map.of(1L, 1L));
+        assertEquals(5, cache.get(1L));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertEquals(6, cache.get(1L));
+    }
+
+    @Test
+    void testRolledBackDeltaIgnored() {
+        when(recipientRepository.countByUserIdAndIsReadFalse(1L)).thenReturn(5L);
+        cache.get(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.adjustAfterCommit(Map.of(1L, 1L));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(5, cache.get(1L));
+    }
+
+    @Test
+    void testCountDuringPendingChange_NotCached() {
+        // Thay đổi của user 2 chưa commit: số đếm lúc này có thể đã hoặc chưa gồm thay đổi đó
+        TransactionSynchronizationManager.initSynchronization();
+        cache.adjustAfterCommit(Map.of(2L, 1L));
+        when(recipientRepository.countByUserIdAndIsReadFalse(1L)).thenReturn(3L);
+
+        assertEquals(3, cache.get(1L));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        cache.get(1L);
+
+        verify(recipientRepository, times(2)).countByUserIdAndIsReadFalse(1L);
+    }
+}
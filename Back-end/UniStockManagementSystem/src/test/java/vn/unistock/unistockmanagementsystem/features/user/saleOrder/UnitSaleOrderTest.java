@@ -11,6 +11,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.data.domain.*;
 import vn.unistock.unistockmanagementsystem.entities.*;
 import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.ReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestRepository;
@@ -32,6 +33,7 @@ public class UnitSaleOrderTest {
     @Mock private ProductsRepository productsRepository;
     @Mock private InventoryRepository inventoryRepository;
     @Mock private SalesOrderMaterialRepository salesOrderMaterialRepository;
+    @Mock private ReservationService reservationService;
 
     @BeforeEach
     void setUp() {
@@ -78,11 +80,10 @@ public class UnitSaleOrderTest {
         order.setMaterials(new ArrayList<>());
 
         when(saleOrdersRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(inventoryRepository.findByProductIdAndStatus(anyLong(), any())).thenReturn(new ArrayList<>());
-        when(inventoryRepository.findByMaterialIdAndStatus(anyLong(), any())).thenReturn(new ArrayList<>());
         when(purchaseRequestRepository.findAllBySalesOrder_OrderId(1L)).thenReturn(new ArrayList<>());
 
         assertDoesNotThrow(() -> saleOrdersService.cancelSalesOrder(1L, "Test reason"));
+        verify(reservationService).releaseAll(1L);
     }
 
     @Test
@@ -0,0 +1,58 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chi phí xác thực token cho mỗi request: cách cũ (5 lần parse + kiểm tra chữ ký),
+ * parse một lần, và parse một lần có cache. Chạy bằng main() từ IDE hoặc
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...JwtVerificationBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtVerificationBenchmark {
+    private Jwt jwt;
+    private VerifiedTokenCache cache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwt = new Jwt();
+        ReflectionTestUtils.setField(jwt, "JWT_SECRET_KEY", "YWJjZGVmZ2hpamtsbW5vcHFyc3R1d2V4eXoqc29uZ2hhaWNr");
+        cache = new VerifiedTokenCache(jwt, 10_000);
+        token = jwt.generateToken(1L, "admin@unistock.vn", List.of("ADMIN", "USER"));
+    }
+
+    @Benchmark
+    public Object legacyFiveParses() {
+        String email = jwt.extractEmail(token);
+        Long userId = jwt.extractUserId(token);
+        List<String> roles = jwt.extractRoles(token);
+        boolean valid = jwt.validateToken(token, email);
+        return valid ? new JwtPrincipal(userId, email, null, roles, null, null, 0) : null;
+    }
+
+    @Benchmark
+    public JwtPrincipal singleParse() {
+        return jwt.parse(token);
+    }
+
+    @Benchmark
+    public JwtPrincipal cachedVerify() {
+        return cache.verify(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtVerificationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
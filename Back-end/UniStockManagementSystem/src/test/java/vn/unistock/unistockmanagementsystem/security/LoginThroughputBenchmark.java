@@ -0,0 +1,66 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng so khớp mật khẩu khi 64 luồng (giả lập luồng Tomcat lúc đầu ca) đăng nhập cùng lúc: băm thẳng trên
+ * luồng request so với đi qua PasswordHasher (pool bằng số CPU, hàng đợi giới hạn). Với PasswordHasher, lượt bị từ chối
+ * vì hàng đợi đầy được đếm riêng ở rejected. Chạy bằng main() từ IDE hoặc
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...LoginThroughputBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoginThroughputBenchmark {
+    private BCryptPasswordEncoder encoder;
+    private PasswordHasher hasher;
+    private String encodedPassword;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(10);
+        hasher = new PasswordHasher(encoder, 0, 64, 10_000);
+        encodedPassword = encoder.encode("Unistock@123");
+    }
+
+    @TearDown
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        public long rejected;
+    }
+
+    @Benchmark
+    public boolean onRequestThread() {
+        return encoder.matches("Unistock@123", encodedPassword);
+    }
+
+    @Benchmark
+    public boolean boundedExecutor(Outcome outcome) {
+        try {
+            return hasher.matches("Unistock@123", encodedPassword);
+        } catch (ResponseStatusException e) {
+            outcome.rejected++;
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoginThroughputBenchmark.class.getSimpleName()).build()).run();
+    }
+}
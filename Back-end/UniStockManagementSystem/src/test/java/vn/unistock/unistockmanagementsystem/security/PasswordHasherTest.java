@@ -0,0 +1,72 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PasswordHasherTest {
+
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        if (hasher != null) {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void testEncodeAndMatches_RunOnHasherThreads() throws Exception {
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 2, 8, 5_000);
+
+        String encoded = hasher.encode("Unistock@123");
+
+        assertTrue(hasher.matches("Unistock@123", encoded));
+        assertFalse(hasher.matches("wrong", encoded));
+        assertFalse(hasher.matches(null, encoded));
+        String threadName = hasher.encodeAsync("x").thenApply(v -> Thread.currentThread().getName())
+                .get(5, TimeUnit.SECONDS);
+        assertTrue(threadName.startsWith("password-hasher-") || threadName.equals(Thread.currentThread().getName()));
+    }
+
+    @Test
+    void testFullQueue_RejectsWithServiceUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(anyString())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        hasher = new PasswordHasher(slowEncoder, 1, 1, 5_000);
+
+        CompletableFuture<String> running = hasher.encodeAsync("a");
+        CompletableFuture<String> queued = hasher.encodeAsync("b");
+        CompletableFuture<String> rejected = hasher.encodeAsync("c");
+
+        CompletionException ex = assertThrows(CompletionException.class, rejected::join);
+        ResponseStatusException cause = assertInstanceOf(ResponseStatusException.class, ex.getCause());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, cause.getStatusCode());
+
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCalibrate_StaysWithinBounds() {
+        assertEquals(4, BCryptCostCalibrator.calibrate(0, 4, 6));
+        assertEquals(6, BCryptCostCalibrator.calibrate(60_000, 4, 6));
+    }
+}
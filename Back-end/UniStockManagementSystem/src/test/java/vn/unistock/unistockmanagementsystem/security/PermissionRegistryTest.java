@@ -0,0 +1,89 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+import vn.unistock.unistockmanagementsystem.entities.Role;
+import vn.unistock.unistockmanagementsystem.entities.RolePermission;
+import vn.unistock.unistockmanagementsystem.features.admin.role.RoleRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PermissionRegistryTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @InjectMocks
+    private PermissionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(roleRepository.findAllWithPermissions()).thenReturn(List.of(
+                role(1L, "ADMIN", "GET", "/api/unistock/admin/roles"),
+                role(2L, "USER", "GET", "/api/unistock/user/materials")));
+    }
+
+    private static Role role(Long id, String name, String method, String pattern) {
+        Role role = Role.builder().roleId(id).roleName(name).build();
+        Permission permission = Permission.builder().httpMethod(method).urlPattern(pattern).permissionName(name + "_perm").build();
+        role.setRolePermissions(List.of(RolePermission.builder().role(role).permission(permission).build()));
+        return role;
+    }
+
+    private JwtPrincipal token(String email, String permissionSetId, long version) {
+        return new JwtPrincipal(9L, email, "kho", List.of(), permissionSetId, version, Long.MAX_VALUE);
+    }
+
+    @Test
+    void testResolve_CurrentVersion_BuildsPrincipalWithoutUserLookup() {
+        long version = registry.currentVersion();
+
+        UserPrincipal first = registry.resolve(token("a@unistock.vn", PermissionRegistry.permissionSetId(List.of(2L, 1L)), version));
+        UserPrincipal second = registry.resolve(token("b@unistock.vn", "1.2", version));
+
+        assertNotNull(first);
+        assertEquals(List.of(1L, 2L), first.getRoleIds());
+        assertEquals(2, first.getPermissions().size());
+        assertEquals("kho", first.toUserReference().getUsername());
+        assertSame(first.getPermissions(), second.getPermissions());
+        verify(roleRepository, times(1)).findAllWithPermissions();
+    }
+
+    @Test
+    void testResolve_RoleChange_InvalidatesOlderTokensAndReloads() {
+        long before = registry.currentVersion();
+        assertNotNull(registry.resolve(token("a@unistock.vn", "2", before)));
+
+        registry.onPrincipalChanged(UserPrincipalChangedEvent.all());
+
+        assertNull(registry.resolve(token("a@unistock.vn", "2", before)));
+        assertNotNull(registry.resolve(token("a@unistock.vn", "2", registry.currentVersion())));
+        verify(roleRepository, times(2)).findAllWithPermissions();
+    }
+
+    @Test
+    void testResolve_UserChange_OnlyAffectsThatUser() {
+        long before = registry.currentVersion();
+
+        registry.onPrincipalChanged(UserPrincipalChangedEvent.of("a@unistock.vn"));
+
+        assertNull(registry.resolve(token("a@unistock.vn", "2", before)));
+        assertNotNull(registry.resolve(token("b@unistock.vn", "2", before)));
+        assertNotNull(registry.resolve(token("a@unistock.vn", "2", registry.currentVersion())));
+    }
+
+    @Test
+    void testResolve_LegacyTokenOrDeletedRole_FallsBack() {
+        assertNull(registry.resolve(new JwtPrincipal(9L, "a@unistock.vn", null, List.of(), null, null, Long.MAX_VALUE)));
+        assertNull(registry.resolve(token("a@unistock.vn", "7", registry.currentVersion())));
+    }
+}
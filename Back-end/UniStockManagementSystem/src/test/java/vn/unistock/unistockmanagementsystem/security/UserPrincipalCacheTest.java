@@ -0,0 +1,92 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import vn.unistock.unistockmanagementsystem.entities.*;
+import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserPrincipalCacheTest {
+
+    @Mock
+    private LoginService loginService;
+
+    private UserPrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserPrincipalCache(loginService, 2, 10);
+    }
+
+    private static UserPrincipal principal(String email) {
+        Permission permission = Permission.builder().permissionId(1L).httpMethod("GET")
+                .urlPattern("/api/unistock/user/materials").permissionName("getAllMaterials").build();
+        Role role = Role.builder().roleId(3L).roleName("USER").build();
+        role.setRolePermissions(List.of(
+                RolePermission.builder().role(role).permission(permission).build(),
+                RolePermission.builder().role(role).permission(permission).build()));
+        User user = User.builder().userId(7L).email(email).username("kho").password("$2a$hash").isActive(true).build();
+        user.setRoles(Set.of(role));
+        return UserPrincipal.from(user);
+    }
+
+    @Test
+    void testFrom_KeepsOnlyCompactFields() {
+        UserPrincipal principal = principal("kho@unistock.vn");
+
+        assertEquals(List.of(3L), principal.getRoleIds());
+        assertEquals(List.of("USER"), principal.getRoleNames());
+        assertEquals(1, principal.getPermissions().size());
+        assertNull(principal.toUserReference().getPassword());
+        assertThrows(UnsupportedOperationException.class, () -> principal.getRoleIds().add(9L));
+    }
+
+    @Test
+    void testGet_SecondLookupIsServedFromCache() {
+        when(loginService.loadPrincipalByEmail("kho@unistock.vn")).thenReturn(principal("kho@unistock.vn"));
+
+        UserPrincipal first = cache.get("kho@unistock.vn");
+        UserPrincipal second = cache.get("kho@unistock.vn");
+
+        assertSame(first, second);
+        verify(loginService, times(1)).loadPrincipalByEmail("kho@unistock.vn");
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("hitCount"));
+        assertEquals(1L, stats.get("missCount"));
+    }
+
+    @Test
+    void testOnPrincipalChanged_EvictsOnlyThatUser() {
+        when(loginService.loadPrincipalByEmail(anyString())).thenAnswer(inv -> principal(inv.getArgument(0)));
+        cache.get("a@unistock.vn");
+        cache.get("b@unistock.vn");
+
+        cache.onPrincipalChanged(UserPrincipalChangedEvent.of("a@unistock.vn"));
+        cache.get("a@unistock.vn");
+        cache.get("b@unistock.vn");
+
+        verify(loginService, times(2)).loadPrincipalByEmail("a@unistock.vn");
+        verify(loginService, times(1)).loadPrincipalByEmail("b@unistock.vn");
+        assertEquals(1L, cache.getStats().get("invalidationCount"));
+    }
+
+    @Test
+    void testGet_UnknownUserIsNotCached() {
+        when(loginService.loadPrincipalByEmail("ghost@unistock.vn")).thenReturn(null);
+
+        assertNull(cache.get("ghost@unistock.vn"));
+        assertNull(cache.get("ghost@unistock.vn"));
+
+        verify(loginService, times(2)).loadPrincipalByEmail("ghost@unistock.vn");
+    }
+}
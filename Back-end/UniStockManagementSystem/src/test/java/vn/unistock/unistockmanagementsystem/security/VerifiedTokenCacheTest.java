@@ -0,0 +1,75 @@
+package vn.unistock.unistockmanagementsystem.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class VerifiedTokenCacheTest {
+    private static final String SECRET = "YWJjZGVmZ2hpamtsbW5vcHFyc3R1d2V4eXoqc29uZ2hhaWNr";
+
+    private Jwt jwt;
+
+    @BeforeEach
+    void setUp() {
+        jwt = spy(new Jwt());
+        ReflectionTestUtils.setField(jwt, "JWT_SECRET_KEY", SECRET);
+    }
+
+    @Test
+    void testVerify_RepeatedToken_ParsesOnce() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwt, 100);
+        String token = jwt.generateToken(5L, "kho@unistock.vn", List.of("USER"));
+
+        JwtPrincipal first = cache.verify(token);
+        JwtPrincipal second = cache.verify(token);
+
+        assertSame(first, second);
+        assertEquals(5L, first.getUserId());
+        assertEquals("kho@unistock.vn", first.getEmail());
+        assertEquals(List.of("USER"), first.getRoles());
+        verify(jwt, times(1)).parse(token);
+    }
+
+    @Test
+    void testVerify_ExpiredToken_IsRejected() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwt, 100);
+        String token = Jwts.builder()
+                .claim("email", "kho@unistock.vn")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> cache.verify(token));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testVerify_TamperedToken_IsRejected() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwt, 100);
+        String token = jwt.generateToken(5L, "kho@unistock.vn", List.of("USER"));
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(SignatureException.class, () -> cache.verify(tampered));
+    }
+
+    @Test
+    void testVerify_FullCache_StillVerifiesWithoutGrowing() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwt, 2);
+        for (long userId = 1; userId <= 5; userId++) {
+            String token = jwt.generateToken(userId, "user" + userId + "@unistock.vn", List.of("USER"));
+            assertEquals(userId, cache.verify(token).getUserId());
+        }
+
+        assertEquals(2, cache.size());
+    }
+}
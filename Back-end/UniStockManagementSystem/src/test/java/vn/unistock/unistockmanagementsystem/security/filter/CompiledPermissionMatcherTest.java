@@ -0,0 +1,50 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import org.junit.jupiter.api.Test;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledPermissionMatcherTest {
+
+    private static UserPrincipal.PermissionGrant permission(String method, String pattern) {
+        return new UserPrincipal.PermissionGrant(method, pattern, null);
+    }
+
+    @Test
+    void testMatches_ExactAndTemplatedPaths() {
+        CompiledPermissionMatcher matcher = new CompiledPermissionMatcher(List.of(
+                permission("GET", "/api/unistock/user/materials"),
+                permission("PUT", "/api/unistock/user/materials/{id}"),
+                permission("get", "/api/unistock/user/issues/{id}/details")));
+
+        assertTrue(matcher.matches("GET", "/api/unistock/user/materials"));
+        assertTrue(matcher.matches("PUT", "/api/unistock/user/materials/15"));
+        assertTrue(matcher.matches("GET", "/api/unistock/user/issues/3/details"));
+
+        assertFalse(matcher.matches("POST", "/api/unistock/user/materials"));
+        assertFalse(matcher.matches("PUT", "/api/unistock/user/materials/15/image"));
+        assertFalse(matcher.matches("GET", "/api/unistock/user/products"));
+    }
+
+    @Test
+    void testMatches_AllMethodAndCatchAllPatterns() {
+        CompiledPermissionMatcher matcher = new CompiledPermissionMatcher(List.of(
+                permission("ALL", "/api/unistock/admin/**"),
+                permission("DELETE", "/**")));
+
+        assertTrue(matcher.matches("POST", "/api/unistock/admin/roles"));
+        assertTrue(matcher.matches("GET", "/api/unistock/admin/roles/1/permissions"));
+        assertTrue(matcher.matches("DELETE", "/api/unistock/user/units/2"));
+        assertFalse(matcher.matches("GET", "/api/unistock/user/units/2"));
+    }
+
+    @Test
+    void testMatches_EmptyPermissionsDenyEverything() {
+        CompiledPermissionMatcher matcher = new CompiledPermissionMatcher(List.of());
+
+        assertFalse(matcher.matches("GET", "/api/unistock/user/materials"));
+    }
+}
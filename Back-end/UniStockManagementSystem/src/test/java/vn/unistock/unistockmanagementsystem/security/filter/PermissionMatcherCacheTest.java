@@ -0,0 +1,81 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import org.junit.jupiter.api.Test;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+import vn.unistock.unistockmanagementsystem.entities.Role;
+import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionRepository;
+import vn.unistock.unistockmanagementsystem.security.UserPrincipal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class PermissionMatcherCacheTest {
+    private static final String URI = "/api/unistock/user/materials";
+
+    private final PermissionRepository permissionRepository = mock(PermissionRepository.class);
+    private final PermissionMatcherCache cache = new PermissionMatcherCache(permissionRepository);
+
+    private static CustomUserDetails userWithRoles(Long... roleIds) {
+        Set<Role> roles = new HashSet<>();
+        for (Long roleId : roleIds) {
+            roles.add(Role.builder().roleId(roleId).roleName("ROLE_" + roleId).rolePermissions(new ArrayList<>()).build());
+        }
+        return new CustomUserDetails(UserPrincipal.from(User.builder().roles(roles).build()));
+    }
+
+    private static List<Permission> canGetMaterials() {
+        return List.of(Permission.builder().httpMethod("GET").urlPattern(URI).build());
+    }
+
+    @Test
+    void testMatcherFor_SharesMatcherBetweenUsersWithSameRoles() {
+        when(permissionRepository.findByRoleIds(List.of(1L, 2L))).thenReturn(canGetMaterials());
+
+        CompiledPermissionMatcher first = cache.matcherFor(userWithRoles(2L, 1L));
+        CompiledPermissionMatcher second = cache.matcherFor(userWithRoles(1L, 2L));
+
+        assertSame(first, second);
+        assertTrue(first.matches("GET", URI));
+        verify(permissionRepository, times(1)).findByRoleIds(anyCollection());
+    }
+
+    @Test
+    void testMatcherFor_RecompilesFromDatabaseAfterInvalidate() {
+        when(permissionRepository.findByRoleIds(List.of(1L))).thenReturn(canGetMaterials(), List.of());
+
+        assertTrue(cache.matcherFor(userWithRoles(1L)).matches("GET", URI));
+        cache.invalidateAll();
+
+        assertFalse(cache.matcherFor(userWithRoles(1L)).matches("GET", URI));
+    }
+
+    @Test
+    void testMatcherFor_DoesNotKeepMatcherLoadedBeforeConcurrentInvalidate() {
+        // Lần nạp đầu đọc quyền cũ, rồi role bị sửa và cache bị xóa trước khi matcher kịp được lưu
+        when(permissionRepository.findByRoleIds(List.of(1L)))
+                .thenAnswer(invocation -> {
+                    cache.invalidateAll();
+                    return canGetMaterials();
+                })
+                .thenReturn(List.of());
+
+        assertTrue(cache.matcherFor(userWithRoles(1L)).matches("GET", URI));
+
+        assertFalse(cache.matcherFor(userWithRoles(1L)).matches("GET", URI));
+        assertFalse(cache.matcherFor(userWithRoles(1L)).matches("GET", URI));
+        verify(permissionRepository, times(2)).findByRoleIds(anyCollection());
+    }
+
+    @Test
+    void testMatcherFor_NoRolesDeniesWithoutQuery() {
+        assertFalse(cache.matcherFor(userWithRoles()).matches("GET", URI));
+        verify(permissionRepository, never()).findByRoleIds(anyCollection());
+    }
+}
@@ -0,0 +1,98 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setBuckets(Map.of(
+                "api", bucket(50, 0),
+                "auth", bucket(3, 0.2)));
+
+        RateLimitProperties.Rule forgot = new RateLimitProperties.Rule();
+        forgot.setPattern("/api/unistock/auth/forgot-password");
+        forgot.setBucket("auth");
+        RateLimitProperties.Rule report = new RateLimitProperties.Rule();
+        report.setPattern("/api/unistock/user/*/report");
+        report.setMethod("GET");
+        report.setCost(25);
+        properties.setRules(List.of(forgot, report));
+
+        filter = new RateLimitFilter(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static RateLimitProperties.BucketConfig bucket(long capacity, double refillPerSecond) {
+        RateLimitProperties.BucketConfig config = new RateLimitProperties.BucketConfig();
+        config.setCapacity(capacity);
+        config.setRefillPerSecond(refillPerSecond);
+        return config;
+    }
+
+    private MockHttpServletResponse call(String method, String uri, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void testAuthEndpoint_LimitedPerIpWithRetryAfter() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, call("POST", "/api/unistock/auth/forgot-password", "10.0.0.1").getStatus());
+        }
+
+        MockHttpServletResponse limited = call("POST", "/api/unistock/auth/forgot-password", "10.0.0.1");
+        assertEquals(429, limited.getStatus());
+        assertEquals("5", limited.getHeader("Retry-After"));
+
+        // IP khác có bucket riêng
+        assertEquals(200, call("POST", "/api/unistock/auth/forgot-password", "10.0.0.2").getStatus());
+    }
+
+    @Test
+    void testReportCostsMoreThanList() throws Exception {
+        assertEquals(200, call("GET", "/api/unistock/user/inventory/report", "10.0.0.1").getStatus());
+        assertEquals(200, call("GET", "/api/unistock/user/stockmovement/report", "10.0.0.1").getStatus());
+        assertEquals(429, call("GET", "/api/unistock/user/inventory/report", "10.0.0.1").getStatus());
+
+        // Hai báo cáo đã dùng hết 50 token của bucket api, danh sách rẻ cũng bị chặn
+        assertEquals(429, call("GET", "/api/unistock/user/materials", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void testOptionsRequestsAreNotCounted() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, call("OPTIONS", "/api/unistock/auth/forgot-password", "10.0.0.1").getStatus());
+        }
+    }
+
+    @Test
+    void testTokenBucket_RefillsOverTime() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+
+        assertEquals(0, bucket.tryConsume(2, 0));
+        assertEquals(1_000_000_000L, bucket.tryConsume(1, 0));
+        assertEquals(0, bucket.tryConsume(1, 1_000_000_000L));
+    }
+}
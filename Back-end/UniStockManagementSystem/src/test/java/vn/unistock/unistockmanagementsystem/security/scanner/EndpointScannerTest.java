@@ -0,0 +1,118 @@
+package vn.unistock.unistockmanagementsystem.security.scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionRepository;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EndpointScannerTest {
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private PermissionRepository permissionRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RequestMappingHandlerMapping handlerMapping;
+
+    @InjectMocks
+    private EndpointScanner endpointScanner;
+
+    @SuppressWarnings("unused")
+    static class SampleController {
+        public void getMaterials() {}
+        public void createMaterial() {}
+        public void getWarehouses() {}
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new SampleController(), SampleController.class.getMethod(name));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRun_LoadsOnceAndWritesOnlyDifferences() throws Exception {
+        Map<RequestMappingInfo, HandlerMethod> handlers = new LinkedHashMap<>();
+        handlers.put(RequestMappingInfo.paths("/api/materials").methods(RequestMethod.GET).build(), handler("getMaterials"));
+        handlers.put(RequestMappingInfo.paths("/api/materials").methods(RequestMethod.POST).build(), handler("createMaterial"));
+        handlers.put(RequestMappingInfo.paths("/api/warehouses").methods(RequestMethod.GET).build(), handler("getWarehouses"));
+        when(applicationContext.getBean(RequestMappingHandlerMapping.class)).thenReturn(handlerMapping);
+        when(handlerMapping.getHandlerMethods()).thenReturn(handlers);
+        when(permissionRepository.findAll()).thenReturn(List.of(
+                Permission.builder().permissionId(1L).httpMethod("GET").urlPattern("/api/materials").permissionName("getMaterials").build(),
+                Permission.builder().permissionId(2L).httpMethod("POST").urlPattern("/api/materials").permissionName("oldName").build()));
+
+        endpointScanner.run(null);
+
+        ArgumentCaptor<Collection<Permission>> inserts = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Collection<Permission>> renames = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT"), inserts.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE"), renames.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+
+        Permission inserted = inserts.getValue().iterator().next();
+        assertEquals(1, inserts.getValue().size());
+        assertEquals("/api/warehouses", inserted.getUrlPattern());
+        assertEquals("getWarehouses", inserted.getPermissionName());
+
+        Permission renamed = renames.getValue().iterator().next();
+        assertEquals(1, renames.getValue().size());
+        assertEquals(2L, renamed.getPermissionId());
+        assertEquals("createMaterial", renamed.getPermissionName());
+
+        verify(permissionRepository, times(1)).findAll();
+        verify(permissionRepository, never()).findByHttpMethodAndUrlPattern(anyString(), anyString());
+        verify(permissionRepository, never()).save(any());
+    }
+
+    @Test
+    void testRun_NothingChanged_NoWrites() throws Exception {
+        Map<RequestMappingInfo, HandlerMethod> handlers = Map.of(
+                RequestMappingInfo.paths("/api/materials").build(), handler("getMaterials"));
+        when(applicationContext.getBean(RequestMappingHandlerMapping.class)).thenReturn(handlerMapping);
+        when(handlerMapping.getHandlerMethods()).thenReturn(handlers);
+        when(permissionRepository.findAll()).thenReturn(List.of(
+                Permission.builder().permissionId(1L).httpMethod("ALL").urlPattern("/api/materials").permissionName("getMaterials").build()));
+
+        endpointScanner.run(null);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testRun_SkipsStoredRowsWithoutMethodOrPattern() throws Exception {
+        Map<RequestMappingInfo, HandlerMethod> handlers = Map.of(
+                RequestMappingInfo.paths("/api/materials").methods(RequestMethod.GET).build(), handler("getMaterials"));
+        when(applicationContext.getBean(RequestMappingHandlerMapping.class)).thenReturn(handlerMapping);
+        when(handlerMapping.getHandlerMethods()).thenReturn(handlers);
+        when(permissionRepository.findAll()).thenReturn(List.of(
+                Permission.builder().permissionId(1L).httpMethod(null).urlPattern("/api/materials").permissionName("legacy").build(),
+                Permission.builder().permissionId(2L).httpMethod("GET").urlPattern(null).permissionName("legacy").build(),
+                Permission.builder().permissionId(3L).httpMethod("GET").urlPattern("/api/materials").permissionName("getMaterials").build()));
+
+        endpointScanner.run(null);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,73 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+import org.hibernate.StaleObjectStateException;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryOnConflictAspectTest {
+    // Ghi đồng thời thật trên inventory (@Version + JDBC) được kiểm tra ở InventoryPostingConcurrencyTest
+    public static class ConflictingTarget {
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        @RetryOnConflict(maxAttempts = 3, backoffMillis = 1)
+        public void alwaysConflicting() {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Inventory", 1L);
+        }
+
+        // Lỗi Hibernate thô ném ra khi service tự flush, chưa qua lớp dịch lỗi của Spring
+        @RetryOnConflict(maxAttempts = 3, backoffMillis = 1)
+        public void staleEntity() {
+            attempts.incrementAndGet();
+            throw new IllegalStateException(new StaleObjectStateException("Inventory", 1L));
+        }
+
+        @RetryOnConflict
+        public void failing() {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Không đủ tồn kho");
+        }
+    }
+
+    private static ConflictingTarget proxy(ConflictingTarget target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new RetryOnConflictAspect());
+        return factory.getProxy();
+    }
+
+    @Test
+    void testUntranslatedOptimisticLock_IsRetried() {
+        ConflictingTarget target = new ConflictingTarget();
+
+        assertThrows(ResponseStatusException.class, () -> proxy(target).staleEntity());
+
+        assertEquals(3, target.attempts.get());
+    }
+
+    @Test
+    void testPersistentConflict_GivesUpWithConflictStatus() {
+        ConflictingTarget target = new ConflictingTarget();
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> proxy(target).alwaysConflicting());
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        assertEquals(3, target.attempts.get());
+    }
+
+    @Test
+    void testBusinessError_IsNotRetried() {
+        ConflictingTarget target = new ConflictingTarget();
+
+        assertThrows(IllegalStateException.class, () -> proxy(target).failing());
+
+        assertEquals(1, target.attempts.get());
+    }
+}
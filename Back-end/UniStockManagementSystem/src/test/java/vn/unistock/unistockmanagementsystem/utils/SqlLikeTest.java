@@ -0,0 +1,17 @@
+package vn.unistock.unistockmanagementsystem.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlLikeTest {
+    @Test
+    void testContains_EscapesWildcards() {
+        assertEquals("%50!%!_off!!%", SqlLike.contains("50%_off!"));
+    }
+
+    @Test
+    void testContains_PlainTermUnchanged() {
+        assertEquals("%thep tam%", SqlLike.contains("thep tam"));
+    }
+}
@@ -0,0 +1,101 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * So sánh đọc file import 100k dòng bằng XSSFWorkbook (DOM, cách cũ) và ExcelRowReader (SAX). Chạy kèm
+ * {@code -prof gc} để xem lượng cấp phát; với -Xmx512m nhánh DOM thường hết heap còn nhánh SAX vẫn chạy.
+ * Chạy bằng main() từ IDE hoặc
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...ExcelImportBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ExcelImportBenchmark {
+    private static final int ROWS = 100_000;
+    private static final int COLUMNS = 6;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("import-benchmark-", ".xlsx").toFile();
+        // SXSSF chỉ giữ một cửa sổ dòng trong bộ nhớ khi ghi
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(200); OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Materials");
+            Row header = sheet.createRow(0);
+            String[] titles = {"Mã vật tư", "Tên vật tư", "Đơn vị", "Danh mục", "Tên nhà cung cấp", "Mô tả"};
+            for (int c = 0; c < COLUMNS; c++) {
+                header.createCell(c).setCellValue(titles[c]);
+            }
+            for (int r = 1; r <= ROWS; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("VT" + r);
+                row.createCell(1).setCellValue("Vật tư số " + r);
+                row.createCell(2).setCellValue(r % 2 == 0 ? "Kg" : "Cái");
+                row.createCell(3).setCellValue("Danh mục " + (r % 20));
+                row.createCell(4).setCellValue("Nhà cung cấp " + (r % 50));
+                row.createCell(5).setCellValue(r);
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public long domWorkbook() throws IOException {
+        long chars = 0;
+        DataFormatter formatter = new DataFormatter();
+        try (Workbook workbook = new XSSFWorkbook(file)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                if (row == null) continue;
+                for (int c = 0; c < COLUMNS; c++) {
+                    chars += formatter.formatCellValue(row.getCell(c)).length();
+                }
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public long streamingReader() throws IOException {
+        AtomicLong chars = new AtomicLong();
+        ExcelRowReader.read(file, COLUMNS, (rowNum, cells) -> {
+            for (String cell : cells) {
+                if (cell != null) chars.addAndGet(cell.length());
+            }
+        });
+        return chars.get();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExcelImportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,67 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExcelRowReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File write(Workbook workbook) throws IOException {
+        File file = tempDir.resolve("import.xlsx").toFile();
+        try (workbook; OutputStream out = new FileOutputStream(file)) {
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    @Test
+    void testRowsAfterHeader_WithGapsAndNumbers() throws IOException {
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("Materials");
+        sheet.createRow(0).createCell(0).setCellValue("Mã vật tư");
+        Row first = sheet.createRow(1);
+        first.createCell(0).setCellValue("  VT001 ");
+        first.createCell(1).setCellValue("Thép tấm");
+        first.createCell(2).setCellValue(123);
+        // Dòng 3 bỏ trống hoàn toàn; dòng 4 chỉ có cột C và một cột ngoài phạm vi
+        Row fourth = sheet.createRow(3);
+        fourth.createCell(2).setCellValue("Kg");
+        fourth.createCell(8).setCellValue("bỏ qua");
+
+        List<Integer> rowNums = new ArrayList<>();
+        List<String[]> rows = new ArrayList<>();
+        ExcelRowReader.read(write(workbook), 3, (rowNum, cells) -> {
+            rowNums.add(rowNum);
+            rows.add(cells);
+        });
+
+        assertEquals(List.of(1, 3), rowNums);
+        assertArrayEquals(new String[]{"VT001", "Thép tấm", "123"}, rows.get(0));
+        assertArrayEquals(new String[]{null, null, "Kg"}, rows.get(1));
+    }
+
+    @Test
+    void testInvalidFile_ThrowsIOException() throws IOException {
+        File file = tempDir.resolve("broken.xlsx").toFile();
+        Files.writeString(file.toPath(), "không phải file excel");
+
+        assertThrows(IOException.class, () -> ExcelRowReader.read(file, 3, (rowNum, cells) -> { }));
+    }
+}
@@ -0,0 +1,49 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import org.junit.jupiter.api.Test;
+import vn.unistock.unistockmanagementsystem.entities.Partner;
+import vn.unistock.unistockmanagementsystem.entities.Unit;
+
+import java.text.Normalizer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportLookupContextTest {
+
+    private static Unit unit(String name) {
+        Unit unit = new Unit();
+        unit.setUnitName(name);
+        return unit;
+    }
+
+    private static Partner supplier(Long id, String name) {
+        Partner partner = new Partner();
+        partner.setPartnerId(id);
+        partner.setPartnerName(name);
+        return partner;
+    }
+
+    @Test
+    void testLookupIgnoresCaseWhitespaceAndUnicodeForm() {
+        // "Công ty Hòa Phát" gõ kiểu tổ hợp (NFD) trong DB, kiểu dựng sẵn (NFC) trong file
+        String decomposed = Normalizer.normalize("Công ty Hòa Phát", Normalizer.Form.NFD);
+        ImportLookupContext lookups = new ImportLookupContext(List.of("VT001"), List.of(unit("Kg")),
+                List.of(), List.of(), List.of(supplier(1L, decomposed)));
+
+        assertTrue(lookups.findUnit("  kg ").isPresent());
+        assertEquals(1L, lookups.findSupplier("CÔNG TY HÒA PHÁT").get().getPartnerId());
+        assertTrue(lookups.codeExists(" vt001"));
+        assertFalse(lookups.codeExists("VT002"));
+        assertTrue(lookups.findMaterialType("Thép").isEmpty());
+        assertTrue(lookups.findUnit(null).isEmpty());
+    }
+
+    @Test
+    void testDuplicateNames_FirstWins() {
+        ImportLookupContext lookups = new ImportLookupContext(List.of(), List.of(), List.of(), List.of(),
+                List.of(supplier(1L, "Nhà cung cấp A"), supplier(2L, "nhà cung cấp a")));
+
+        assertEquals(1L, lookups.findSupplier("Nhà cung cấp A").get().getPartnerId());
+    }
+}
@@ -0,0 +1,116 @@
+package vn.unistock.unistockmanagementsystem.utils.mail;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMTP sink tối giản chạy trên localhost cho test: nhận mọi email (trừ người nhận bị từ chối) và giữ lại trong bộ nhớ.
+ * Đếm số kết nối để kiểm tra việc gửi theo lô trên một kết nối.
+ */
+public class FakeSmtpServer implements Closeable {
+
+    public static class ReceivedMail {
+        public final List<String> recipients;
+        public final String data;
+
+        ReceivedMail(List<String> recipients, String data) {
+            this.recipients = recipients;
+            this.data = data;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final List<ReceivedMail> received = new CopyOnWriteArrayList<>();
+    private final Set<String> rejectedRecipients = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public FakeSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        acceptThread = new Thread(this::acceptLoop, "fake-smtp");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<ReceivedMail> getReceived() {
+        return received;
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public void rejectRecipient(String email) {
+        rejectedRecipients.add(email.toLowerCase());
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                handle(socket);
+            } catch (IOException e) {
+                // server đã đóng hoặc client ngắt kết nối
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        reply(out, "220 fake-smtp ready");
+
+        List<String> recipients = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.toUpperCase();
+            if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                reply(out, "250 fake-smtp");
+            } else if (command.startsWith("MAIL FROM")) {
+                recipients = new ArrayList<>();
+                reply(out, "250 OK");
+            } else if (command.startsWith("RCPT TO")) {
+                String recipient = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                if (rejectedRecipients.contains(recipient.toLowerCase())) {
+                    reply(out, "550 mailbox unavailable");
+                } else {
+                    recipients.add(recipient);
+                    reply(out, "250 OK");
+                }
+            } else if (command.equals("DATA")) {
+                reply(out, "354 end with <CRLF>.<CRLF>");
+                StringBuilder data = new StringBuilder();
+                while ((line = in.readLine()) != null && !line.equals(".")) {
+                    data.append(line).append("\n");
+                }
+                received.add(new ReceivedMail(List.copyOf(recipients), data.toString()));
+                reply(out, "250 queued");
+            } else if (command.equals("QUIT")) {
+                reply(out, "221 bye");
+                return;
+            } else {
+                // RSET, NOOP, ...
+                reply(out, "250 OK");
+            }
+        }
+    }
+
+    private static void reply(Writer out, String response) throws IOException {
+        out.write(response + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,70 @@
+package vn.unistock.unistockmanagementsystem.utils.mail;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import vn.unistock.unistockmanagementsystem.entities.OutboundMail;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailBatchSenderTest {
+
+    private FakeSmtpServer smtpServer;
+    private MailBatchSender mailBatchSender;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtpServer = new FakeSmtpServer();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getPort());
+        mailBatchSender = new MailBatchSender(mailSender, "noreply@unistock.vn");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        smtpServer.close();
+    }
+
+    private static OutboundMail mail(long id, String to) {
+        return OutboundMail.builder().mailId(id).toEmail(to).subject("OTP for Password Reset")
+                .body("<h3>Your OTP code is: 123456</h3>").build();
+    }
+
+    @Test
+    void testSend_WholeBatchOnOneConnection() {
+        Map<Long, Exception> failures = mailBatchSender.send(List.of(
+                mail(1L, "a@unistock.vn"), mail(2L, "b@unistock.vn"), mail(3L, "c@unistock.vn")));
+
+        assertTrue(failures.isEmpty());
+        assertEquals(3, smtpServer.getReceived().size());
+        assertEquals(1, smtpServer.getConnectionCount());
+        assertEquals(List.of("a@unistock.vn"), smtpServer.getReceived().get(0).recipients);
+        assertTrue(smtpServer.getReceived().get(0).data.contains("OTP for Password Reset"));
+    }
+
+    @Test
+    void testSend_RejectedRecipient_OnlyThatMailFails() {
+        smtpServer.rejectRecipient("bad@unistock.vn");
+
+        Map<Long, Exception> failures = mailBatchSender.send(List.of(
+                mail(1L, "a@unistock.vn"), mail(2L, "bad@unistock.vn"), mail(3L, "c@unistock.vn")));
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.containsKey(2L));
+        assertEquals(2, smtpServer.getReceived().size());
+    }
+
+    @Test
+    void testSend_ServerDown_EveryMailFails() throws Exception {
+        smtpServer.close();
+
+        Map<Long, Exception> failures = mailBatchSender.send(List.of(mail(1L, "a@unistock.vn"), mail(2L, "b@unistock.vn")));
+
+        assertEquals(2, failures.size());
+    }
+}
@@ -21,6 +21,31 @@ export const fetchUnreadNotifications = async () => {
     }
 };
 
+// Lấy một trang inbox (mới nhất trước); truyền nextCursor của trang trước để lấy trang sau
+export const fetchInbox = async ({ cursor, size = 20, unreadOnly = true } = {}) => {
+    try {
+        const response = await axios.get(`${API_URL}/inbox`, {
+            headers: authHeader(),
+            params: { cursor, size, unreadOnly },
+        });
+        return response.data;
+    } catch (error) {
+        console.error("❌ Lỗi khi lấy inbox thông báo:", error.response?.data || error.message);
+        throw error;
+    }
+};
+
+// Đánh dấu tất cả thông báo là đã đọc
+export const markAllNotificationsAsRead = async () => {
+    try {
+        const response = await axios.post(`${API_URL}/read-all`, {}, { headers: authHeader() });
+        return response.data;
+    } catch (error) {
+        console.error("❌ Lỗi khi đánh dấu tất cả đã đọc:", error.response?.data || error.message);
+        throw error;
+    }
+};
+
 // Đánh dấu thông báo là đã đọc
 export const markNotificationAsRead = async (notificationId) => {
     try {
@@ -50,3 +75,63 @@ export const deleteNotification = async (notificationId) => {
         throw error;
     }
 };
+
+// Mở luồng SSE nhận thay đổi thông báo. Dùng fetch thay cho EventSource vì cần gửi header Authorization.
+// Tự kết nối lại kèm Last-Event-ID để server phát bù các sự kiện bị lỡ. Trả về hàm đóng luồng.
+export const subscribeNotifications = ({ onNotification, onResync }) => {
+    const controller = new AbortController();
+    let lastEventId = null;
+    let retryDelay = 1000;
+
+    const dispatch = (block) => {
+        let id = null;
+        let event = "message";
+        const data = [];
+        for (const line of block.split("\n")) {
+            if (line.startsWith(":")) continue; // comment giữ kết nối
+            const sep = line.indexOf(":");
+            const field = sep < 0 ? line : line.slice(0, sep);
+            const value = sep < 0 ? "" : line.slice(sep + 1).replace(/^ /, "");
+            if (field === "id") id = value;
+            else if (field === "event") event = value;
+            else if (field === "data") data.push(value);
+        }
+        if (id !== null) lastEventId = id;
+        if (event === "notification" && data.length) onNotification(JSON.parse(data.join("\n")));
+        else if (event === "resync") onResync();
+    };
+
+    const connect = async () => {
+        while (!controller.signal.aborted) {
+            try {
+                const headers = { ...authHeader(), Accept: "text/event-stream" };
+                if (lastEventId) headers["Last-Event-ID"] = lastEventId;
+                const response = await fetch(`${API_URL}/stream`, { headers, signal: controller.signal });
+                if (!response.ok || !response.body) throw new Error(`HTTP ${response.status}`);
+                retryDelay = 1000;
+
+                const reader = response.body.getReader();
+                const decoder = new TextDecoder();
+                let buffer = "";
+                for (;;) {
+                    const { value, done } = await reader.read();
+                    if (done) break;
+                    buffer += decoder.decode(value, { stream: true }).replace(/\r\n?/g, "\n");
+                    let end;
+                    while ((end = buffer.indexOf("\n\n")) >= 0) {
+                        dispatch(buffer.slice(0, end));
+                        buffer = buffer.slice(end + 2);
+                    }
+                }
+            } catch (error) {
+                if (controller.signal.aborted) return;
+                console.error("❌ Mất kết nối luồng thông báo:", error.message);
+            }
+            await new Promise((resolve) => setTimeout(resolve, retryDelay));
+            retryDelay = Math.min(retryDelay * 2, 30000);
+        }
+    };
+
+    connect();
+    return () => controller.abort();
+};
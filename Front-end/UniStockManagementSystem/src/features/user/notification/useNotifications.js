@@ -1,19 +1,23 @@
 import { useState, useEffect } from "react";
-import { fetchUnreadNotifications, markNotificationAsRead } from "../notification/notificationService";
+import {
+    fetchInbox,
+    markNotificationAsRead,
+    markAllNotificationsAsRead,
+    subscribeNotifications,
+} from "../notification/notificationService";
 import { useAuth } from "@/context/AuthContext";
 
 export const useNotifications = () => {
-    const [notifications, setNotifications] = useState([]);
+    // Danh sách và số chưa đọc được cập nhật cùng nhau để sự kiện SSE không bị đếm hai lần
+    const [inbox, setInbox] = useState({ items: [], unreadCount: 0, nextCursor: null });
     const [loading, setLoading] = useState(false);
     const { user } = useAuth();
 
     const fetchNotifications = async () => {
-        console.log("🔄 Fetching notifications...");
         setLoading(true);
         try {
-            const data = await fetchUnreadNotifications();
-            console.log("✅ Data fetched:", data);
-            setNotifications(data);
+            const data = await fetchInbox();
+            setInbox(data);
         } catch (err) {
             console.error("Failed to fetch notifications", err);
         } finally {
@@ -21,26 +25,77 @@ export const useNotifications = () => {
         }
     };
 
+    // Tải trang tiếp theo của inbox
+    const loadMore = async () => {
+        if (!inbox.nextCursor) return;
+        setLoading(true);
+        try {
+            const data = await fetchInbox({ cursor: inbox.nextCursor });
+            setInbox((prev) => ({ ...data, items: [...prev.items, ...data.items] }));
+        } catch (err) {
+            console.error("Failed to load more notifications", err);
+        } finally {
+            setLoading(false);
+        }
+    };
 
     const markAsRead = async (notificationId) => {
         try {
             await markNotificationAsRead(notificationId);
-            setNotifications((prev) => prev.filter((n) => n.notificationId !== notificationId));
+            applyChange({ notificationId, isRead: true });
         } catch (err) {
             console.error("Failed to mark as read", err);
         }
     };
 
+    const markAllAsRead = async () => {
+        try {
+            await markAllNotificationsAsRead();
+            setInbox({ items: [], unreadCount: 0, nextCursor: null });
+        } catch (err) {
+            console.error("Failed to mark all as read", err);
+        }
+    };
+
+    // Áp một thông báo mới/cập nhật/đã đọc vào danh sách đang hiển thị
+    const applyChange = (notification) => {
+        setInbox((prev) => {
+            const existed = prev.items.some((n) => n.notificationId === notification.notificationId);
+            const rest = prev.items.filter((n) => n.notificationId !== notification.notificationId);
+            if (notification.isRead) {
+                return existed
+                    ? { ...prev, items: rest, unreadCount: Math.max(0, prev.unreadCount - 1) }
+                    : prev;
+            }
+            return {
+                ...prev,
+                items: [notification, ...rest],
+                unreadCount: existed ? prev.unreadCount : prev.unreadCount + 1,
+            };
+        });
+    };
+
     useEffect(() => {
-        console.log("🔍 Fetching notifications (no token dep)...");
         fetchNotifications();
     }, []);
 
+    // Nhận thông báo mới/đã đọc qua SSE thay vì tải lại cả danh sách
+    useEffect(() => {
+        if (!user) return undefined;
+        return subscribeNotifications({
+            onNotification: applyChange,
+            onResync: fetchNotifications,
+        });
+    }, [user]);
+
     return {
-        notifications,
-        unreadCount: notifications.length,
+        notifications: inbox.items,
+        unreadCount: inbox.unreadCount,
         loading,
+        hasMore: inbox.nextCursor !== null,
         fetchNotifications,
+        loadMore,
         markAsRead,
+        markAllAsRead,
     };
 };